@@ -0,0 +1,31 @@
+#!/usr/bin/env bash
+# Compares two JMH JSON result files (e.g. target/jmh-result.json saved from two commits)
+# and prints the change of each score. Lower is better for average time, higher for throughput.
+# Usage: scripts/benchmark/compare-jmh.sh baseline.json candidate.json
+set -euo pipefail
+
+if [ $# -ne 2 ]; then
+  echo "Usage: $0 baseline.json candidate.json" >&2
+  exit 1
+fi
+
+command -v jq >/dev/null || { echo "jq is required" >&2; exit 1; }
+
+scores() {
+  jq -r '.[] | [
+      (.benchmark | sub("^com\\.awesomepizza\\.slice\\.benchmark\\."; "")) + ((.params // {}) | to_entries | map("[" + .key + "=" + .value + "]") | join("")),
+      .mode,
+      .primaryMetric.score,
+      .primaryMetric.scoreError,
+      .primaryMetric.scoreUnit
+    ] | @tsv' "$1" | sort
+}
+
+join -t $'\t' <(scores "$1") <(scores "$2") \
+  | awk -F '\t' '
+      BEGIN { printf "%-70s %5s %14s %14s %10s  %s\n", "Benchmark", "Mode", "Baseline", "Candidate", "Change", "Unit" }
+      # Joined columns: name, mode, score, error, unit, mode, score, error, unit
+      {
+        change = $3 == 0 ? 0 : ($7 - $3) / $3 * 100
+        printf "%-70s %5s %14.3f %14.3f %+9.1f%%  %s\n", $1, $2, $3, $7, change, $5
+      }'
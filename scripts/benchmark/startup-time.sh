@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+# Measures the startup time and the latency of the first request of the application on the dev H2 profile,
+# started as a plain jar, from the extracted application with the CDS archive, and with the CDS archive and AOT code.
+# Each mode is started several times and the median is reported. Startup time is the time from launch to the
+# "Started SliceApplication" log line; the first request is an order creation sent right after it.
+# Requires the aot build on the dev profile (./mvnw -Paot -Daot.profiles=dev -DskipTests clean package), Java 21 and curl.
+# Usage: scripts/benchmark/startup-time.sh [runs per mode]
+set -euo pipefail
+
+ROOT_DIR="$(cd "$(dirname "$0")/../.." && pwd)"
+JAR="$(ls "$ROOT_DIR"/target/slice-*.jar | grep -v plain | head -n 1)"
+APP_DIR="$ROOT_DIR/target/application"
+RUNS="${1:-5}"
+PORT=3000
+RESULTS_DIR="$ROOT_DIR/target/startup"
+mkdir -p "$RESULTS_DIR"
+
+[ -f "$APP_DIR/application.jsa" ] || { echo "No CDS archive in $APP_DIR, build with -Paot -Daot.profiles=dev" >&2; exit 1; }
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print (NR % 2) ? values[(NR + 1) / 2] : (values[NR / 2] + values[NR / 2 + 1]) / 2 }'
+}
+
+run_once() {
+    local mode="$1"
+    local log="$RESULTS_DIR/$mode-app.log"
+    local command=(java -jar "$JAR")
+
+    case "$mode" in
+        cds) command=(java -XX:SharedArchiveFile=application.jsa -jar "$(basename "$JAR")") ;;
+        cds-aot) command=(java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$(basename "$JAR")") ;;
+    esac
+
+    local start
+    start=$(now_ms)
+    (cd "$APP_DIR" && exec "${command[@]}" --spring.profiles.active=dev --slice.admission.enabled=false) > "$log" 2>&1 &
+    local pid=$!
+
+    until grep -q "Started SliceApplication" "$log"; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "$mode: the application did not start, see $log" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    local started
+    started=$(now_ms)
+
+    # First request on a cold JVM: validation, Hibernate and Jackson on their first use
+    local first_request
+    first_request=$(curl -s -o /dev/null -w '%{time_total}' -X POST "http://localhost:$PORT/api/orders" \
+        -H 'Content-Type: application/json' -d '{"pizzaType":"Margherita","quantity":1}')
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+
+    echo "$((started - start)) $(awk -v seconds="$first_request" 'BEGIN { printf "%.1f", seconds * 1000 }')"
+}
+
+for mode in jar cds cds-aot; do
+    rm -f "$RESULTS_DIR/$mode.txt"
+    for run in $(seq 1 "$RUNS"); do
+        run_once "$mode" >> "$RESULTS_DIR/$mode.txt"
+    done
+
+    startup=$(cut -d' ' -f1 "$RESULTS_DIR/$mode.txt" | median)
+    first_request=$(cut -d' ' -f2 "$RESULTS_DIR/$mode.txt" | median)
+    echo "$mode: startup ${startup} ms, first request ${first_request} ms (median of $RUNS runs)"
+done
@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Compares the kitchen p99 latency before and during an order intake flood, with the admission control on and off,
+# on the dev H2 profile. Requires a packaged jar (./mvnw package -DskipTests), Java 21, k6 and jq on the PATH.
+# Usage: scripts/load/compare-admission.sh [flood requests per second]
+set -euo pipefail
+
+ROOT_DIR="$(cd "$(dirname "$0")/../.." && pwd)"
+JAR="$(ls "$ROOT_DIR"/target/slice-*.jar | grep -v plain | head -n 1)"
+FLOOD_RATE="${1:-3000}"
+PORT=3000
+RESULTS_DIR="$ROOT_DIR/target/load"
+mkdir -p "$RESULTS_DIR"
+
+run_mode() {
+    local mode="$1"
+    local enabled="true"
+    if [ "$mode" = "unprotected" ]; then
+        enabled="false"
+    fi
+
+    echo "== admission control $mode"
+    java -Xmx512m -jar "$JAR" --spring.profiles.active=dev --slice.admission.enabled="$enabled" \
+        > "$RESULTS_DIR/admission-$mode-app.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" RETURN
+
+    until curl -sf "http://localhost:$PORT/api/orders/queue" > /dev/null; do
+        sleep 0.5
+    done
+
+    k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e FLOOD_RATE="$FLOOD_RATE" \
+        --summary-export "$RESULTS_DIR/admission-$mode-summary.json" "$ROOT_DIR/scripts/load/intake-flood.js" || true
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+run_mode protected
+run_mode unprotected
+
+for mode in protected unprotected; do
+    summary="$RESULTS_DIR/admission-$mode-summary.json"
+    baseline=$(jq '.metrics["http_req_duration{scenario:kitchen_baseline}"]["p(99)"]' "$summary")
+    flood=$(jq '.metrics["http_req_duration{scenario:kitchen_flood}"]["p(99)"]' "$summary")
+    shed=$(jq '.metrics["http_reqs{scenario:flood,status:429}"].count' "$summary")
+    echo "$mode: kitchen p99 ${baseline} ms before the flood, ${flood} ms during it; ${shed} intake requests shed"
+done
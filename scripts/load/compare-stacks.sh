@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Compares throughput and memory of the servlet stack and the reactive (WebFlux + R2DBC) stack on the dev H2 profile,
+# with 10k concurrent server-sent event connections held open during the measurement.
+# Requires a packaged jar (./mvnw package -DskipTests), Java 21, k6 and jq on the PATH.
+# Usage: scripts/load/compare-stacks.sh [concurrent connections]
+set -euo pipefail
+
+ROOT_DIR="$(cd "$(dirname "$0")/../.." && pwd)"
+JAR="$(ls "$ROOT_DIR"/target/slice-*.jar | grep -v plain | head -n 1)"
+CONNECTIONS="${1:-10000}"
+PORT=3000
+RESULTS_DIR="$ROOT_DIR/target/load"
+mkdir -p "$RESULTS_DIR"
+
+ulimit -n 65536 || echo "Could not raise the open files limit, the connections may fail"
+
+run_stack() {
+    local stack="$1"
+    local profiles="dev"
+    if [ "$stack" = "reactive" ]; then
+        profiles="dev,reactive"
+    fi
+
+    echo "== $stack stack (profiles: $profiles)"
+    # Every stream held by the servlet stack takes about 100 KiB of heap: 10k of them do not fit in 512 MiB
+    java -Xmx2g -jar "$JAR" --spring.profiles.active="$profiles" --slice.admission.enabled=false > "$RESULTS_DIR/$stack-app.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" RETURN
+
+    until curl -sf "http://localhost:$PORT/api/orders/queue" > /dev/null; do
+        sleep 0.5
+    done
+
+    # Sample the resident set size while the load test runs and keep the peak
+    (
+        while kill -0 "$pid" 2>/dev/null; do
+            ps -o rss= -p "$pid" >> "$RESULTS_DIR/$stack-rss.txt" || true
+            sleep 1
+        done
+    ) &
+    local sampler=$!
+
+    k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e CONNECTIONS="$CONNECTIONS" \
+        --summary-export "$RESULTS_DIR/$stack-summary.json" "$ROOT_DIR/scripts/load/concurrent-connections.js" || true
+
+    kill "$sampler" 2>/dev/null || true
+    local threads
+    threads=$(ls "/proc/$pid/task" 2>/dev/null | wc -l || echo "n/a")
+    echo "$stack: live OS threads ${threads}"
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+rm -f "$RESULTS_DIR"/*-rss.txt
+run_stack servlet
+run_stack reactive
+
+for stack in servlet reactive; do
+    summary="$RESULTS_DIR/$stack-summary.json"
+    throughput=$(jq '.metrics["http_reqs{scenario:throughput}"].rate' "$summary")
+    p99=$(jq '.metrics["http_req_duration{scenario:throughput}"]["p(99)"]' "$summary")
+    peak_rss=$(sort -n "$RESULTS_DIR/$stack-rss.txt" | tail -n 1)
+    per_10k=$((peak_rss * 10000 / CONNECTIONS))
+    echo "$stack: ${throughput} req/s, p99 ${p99} ms, peak RSS ${peak_rss} KiB (${per_10k} KiB per 10k connections)"
+done
@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Compares p99 latency and memory of the platform-thread and virtual-thread modes on the dev H2 profile.
+# Requires a packaged jar (./mvnw package -DskipTests), Java 21, k6 and jq on the PATH.
+# Usage: scripts/load/compare-thread-modes.sh [peak requests per second]
+set -euo pipefail
+
+ROOT_DIR="$(cd "$(dirname "$0")/../.." && pwd)"
+JAR="$(ls "$ROOT_DIR"/target/slice-*.jar | grep -v plain | head -n 1)"
+PEAK_RATE="${1:-2000}"
+PORT=3000
+RESULTS_DIR="$ROOT_DIR/target/load"
+mkdir -p "$RESULTS_DIR"
+
+run_mode() {
+    local mode="$1"
+    local profiles="dev"
+    if [ "$mode" = "virtual" ]; then
+        profiles="dev,virtual"
+    fi
+
+    echo "== $mode threads (profiles: $profiles)"
+    java -Xmx512m -jar "$JAR" --spring.profiles.active="$profiles" --slice.admission.enabled=false > "$RESULTS_DIR/$mode-app.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" RETURN
+
+    until curl -sf "http://localhost:$PORT/api/orders/queue" > /dev/null; do
+        sleep 0.5
+    done
+
+    # Sample the resident set size while the load test runs and keep the peak
+    (
+        while kill -0 "$pid" 2>/dev/null; do
+            ps -o rss= -p "$pid" >> "$RESULTS_DIR/$mode-rss.txt" || true
+            sleep 1
+        done
+    ) &
+    local sampler=$!
+
+    k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e PEAK_RATE="$PEAK_RATE" \
+        --summary-export "$RESULTS_DIR/$mode-summary.json" "$ROOT_DIR/scripts/load/create-orders.js"
+
+    kill "$sampler" 2>/dev/null || true
+    local peak_rss
+    peak_rss=$(sort -n "$RESULTS_DIR/$mode-rss.txt" | tail -n 1)
+    local threads
+    threads=$(ls "/proc/$pid/task" 2>/dev/null | wc -l || echo "n/a")
+
+    echo "$mode: peak RSS ${peak_rss} KiB, live OS threads ${threads}"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+rm -f "$RESULTS_DIR"/*-rss.txt
+run_mode platform
+run_mode virtual
+
+for mode in platform virtual; do
+    p99=$(jq '.metrics.http_req_duration["p(99)"]' "$RESULTS_DIR/$mode-summary.json")
+    echo "$mode: http_req_duration p99 ${p99} ms"
+done
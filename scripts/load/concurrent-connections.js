@@ -0,0 +1,66 @@
+// k6 load test: CONNECTIONS idle server-sent event subscribers held open while a fixed pool of clients
+// creates orders and polls their status as fast as the server answers
+// Usage: k6 run -e BASE_URL=http://localhost:3000 -e CONNECTIONS=10000 scripts/load/concurrent-connections.js
+// Holding 10k connections needs a raised open files limit on both sides (ulimit -n 65536)
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:3000';
+const CONNECTIONS = parseInt(__ENV.CONNECTIONS || '10000');
+const HOLD = __ENV.HOLD || '90s';
+
+export const options = {
+    scenarios: {
+        connections: {
+            executor: 'per-vu-iterations',
+            vus: CONNECTIONS,
+            iterations: 1,
+            maxDuration: '120s',
+            exec: 'holdConnection',
+        },
+        throughput: {
+            executor: 'constant-vus',
+            vus: 200,
+            startTime: '20s',
+            duration: '60s',
+            exec: 'createAndPoll',
+        },
+    },
+    // Thresholds that always pass, declared to get the per-scenario metrics in the summary export
+    thresholds: {
+        'http_reqs{scenario:throughput}': ['count>=0'],
+        'http_req_duration{scenario:throughput}': ['p(99)>=0'],
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const PIZZAS = ['Margherita', 'Capricciosa', 'Diavola', 'Marinara'];
+
+// The queue event stream never ends: the request is held until the timeout, then counted as timed out
+export function holdConnection() {
+    http.get(`${BASE_URL}/api/orders/queue/events`, {
+        headers: { Accept: 'text/event-stream' },
+        timeout: HOLD,
+        tags: { name: 'events' },
+    });
+}
+
+export function createAndPoll() {
+    const payload = JSON.stringify({
+        pizzaType: PIZZAS[Math.floor(Math.random() * PIZZAS.length)],
+        quantity: 1 + Math.floor(Math.random() * 3),
+    });
+
+    const created = http.post(`${BASE_URL}/api/orders`, payload, {
+        headers: { 'Content-Type': 'application/json' },
+        tags: { name: 'create' },
+    });
+    check(created, { 'created': (r) => r.status === 201 });
+
+    if (created.status === 201) {
+        const status = http.get(`${BASE_URL}/api/orders/${created.json('orderCode')}/status`, {
+            tags: { name: 'status' },
+        });
+        check(status, { 'status found': (r) => r.status === 200 });
+    }
+}
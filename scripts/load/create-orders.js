@@ -0,0 +1,48 @@
+// k6 load test: spike of order creations followed by status lookups
+// Usage: k6 run -e BASE_URL=http://localhost:3000 -e PEAK_RATE=2000 scripts/load/create-orders.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:3000';
+const PEAK_RATE = parseInt(__ENV.PEAK_RATE || '2000');
+
+export const options = {
+    scenarios: {
+        spike: {
+            executor: 'ramping-arrival-rate',
+            startRate: 50,
+            timeUnit: '1s',
+            preAllocatedVUs: 500,
+            maxVUs: 5000,
+            stages: [
+                { target: 50, duration: '10s' },
+                { target: PEAK_RATE, duration: '10s' },
+                { target: PEAK_RATE, duration: '40s' },
+                { target: 50, duration: '10s' },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const PIZZAS = ['Margherita', 'Capricciosa', 'Diavola', 'Marinara'];
+
+export default function () {
+    const payload = JSON.stringify({
+        pizzaType: PIZZAS[Math.floor(Math.random() * PIZZAS.length)],
+        quantity: 1 + Math.floor(Math.random() * 3),
+    });
+
+    const created = http.post(`${BASE_URL}/api/orders`, payload, {
+        headers: { 'Content-Type': 'application/json' },
+        tags: { name: 'create' },
+    });
+    check(created, { 'created': (r) => r.status === 201 });
+
+    if (created.status === 201) {
+        const status = http.get(`${BASE_URL}/api/orders/${created.json('orderCode')}/status`, {
+            tags: { name: 'status' },
+        });
+        check(status, { 'status found': (r) => r.status === 200 });
+    }
+}
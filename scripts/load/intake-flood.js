@@ -0,0 +1,76 @@
+// k6 load test: kitchen traffic at a steady rate, with a flood of order creations in the middle of the run
+// Usage: k6 run -e BASE_URL=http://localhost:3000 -e FLOOD_RATE=3000 -e CLIENTS=50 scripts/load/intake-flood.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:3000';
+const FLOOD_RATE = parseInt(__ENV.FLOOD_RATE || '3000');
+const CLIENTS = parseInt(__ENV.CLIENTS || '50');
+
+const kitchen = {
+    executor: 'constant-arrival-rate',
+    exec: 'kitchen',
+    rate: 20,
+    timeUnit: '1s',
+    preAllocatedVUs: 20,
+    maxVUs: 200,
+};
+
+export const options = {
+    scenarios: {
+        // The same kitchen load before and during the flood, so their latencies can be compared
+        kitchen_baseline: { ...kitchen, duration: '30s' },
+        kitchen_flood: { ...kitchen, duration: '60s', startTime: '30s' },
+        flood: {
+            executor: 'ramping-arrival-rate',
+            exec: 'flood',
+            startTime: '30s',
+            startRate: 100,
+            timeUnit: '1s',
+            preAllocatedVUs: 500,
+            maxVUs: 5000,
+            stages: [
+                { target: FLOOD_RATE, duration: '10s' },
+                { target: FLOOD_RATE, duration: '50s' },
+            ],
+        },
+    },
+    // One threshold per scenario, so that the summary reports each of them on its own
+    thresholds: {
+        'http_req_duration{scenario:kitchen_baseline}': ['p(99)>=0'],
+        'http_req_duration{scenario:kitchen_flood}': ['p(99)>=0'],
+        'http_req_duration{scenario:flood}': ['p(99)>=0'],
+        'http_reqs{scenario:flood,status:429}': ['count>=0'],
+        'http_reqs{scenario:flood,status:201}': ['count>=0'],
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const PIZZAS = ['Margherita', 'Capricciosa', 'Diavola', 'Marinara'];
+
+export function kitchen() {
+    const station = `station-${__VU % 4}`;
+
+    const next = http.get(`${BASE_URL}/api/orders/next?station=${station}`, { tags: { name: 'next' } });
+    check(next, { 'next served': (r) => r.status === 200 });
+
+    if (next.status === 200 && next.body) {
+        const ready = http.patch(`${BASE_URL}/api/orders/${next.json('orderCode')}/status?status=READY`, null, {
+            tags: { name: 'ready' },
+        });
+        check(ready, { 'ready': (r) => r.status === 200 || r.status === 409 });
+    }
+}
+
+export function flood() {
+    const payload = JSON.stringify({
+        pizzaType: PIZZAS[Math.floor(Math.random() * PIZZAS.length)],
+        quantity: 1,
+    });
+
+    const created = http.post(`${BASE_URL}/api/orders`, payload, {
+        headers: { 'Content-Type': 'application/json', 'X-Client-Id': `client-${__VU % CLIENTS}` },
+        tags: { name: 'create' },
+    });
+    check(created, { 'created or shed': (r) => r.status === 201 || r.status === 429 });
+}
@@ -0,0 +1,75 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.SliceApplication;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.repository.OrderRepository;
+import com.awesomepizza.slice.service.OrderQueue;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts the application without the web layer on the dev profile (H2 in memory) for the benchmarks.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(SliceApplication.class)
+                .profiles("dev")
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.com.awesomepizza=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    // Inserts RECEIVED orders straight through the repository, much faster than creating them one by one
+    static void fillQueue(ConfigurableApplicationContext context, int orders) {
+        insertOrders(context, orders, LocalDateTime.now().minusDays(1), null);
+    }
+
+    // Inserts RECEIVED pre-orders for tomorrow, not due to the kitchen until then
+    static void fillPreOrders(ConfigurableApplicationContext context, int orders) {
+        insertOrders(context, orders, LocalDateTime.now(), LocalDateTime.now().plusDays(1));
+    }
+
+    private static void insertOrders(ConfigurableApplicationContext context, int orders, LocalDateTime insertTimestamp,
+                                     LocalDateTime pickupTime) {
+        OrderRepository orderRepository = context.getBean(OrderRepository.class);
+        List<PizzaOrder> batch = new ArrayList<>();
+
+        for (int i = 0; i < orders; i++) {
+            PizzaOrder order = new PizzaOrder();
+            order.setOrderCode(UUID.randomUUID().toString());
+            order.setPizzaType("Margherita");
+            order.setQuantity(1);
+            order.setStatus(OrderStatus.RECEIVED);
+            order.setInsertTimestamp(insertTimestamp.plusNanos(i * 1000L));
+            order.setUpdateTimestamp(order.getInsertTimestamp());
+
+            if (pickupTime == null) {
+                order.setDispatchAt(order.getInsertTimestamp());
+            } else {
+                order.setPickupTime(pickupTime.plusSeconds(i));
+                order.setDispatchAt(order.getPickupTime().minusMinutes(20));
+            }
+
+            batch.add(order);
+
+            if (batch.size() == 1000 || i == orders - 1) {
+                orderRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+
+        context.getBean(OrderQueue.class).rebuild();
+    }
+}
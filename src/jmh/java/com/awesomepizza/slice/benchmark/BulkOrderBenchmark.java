@@ -0,0 +1,67 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating a 100-item submission with one bulk call against 100 single calls, against H2.
+ * Each operation creates the 100 orders, so the throughputs compare directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkOrderBenchmark {
+
+    private static final int ITEMS = 100;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private BulkOrderRequest bulkRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+
+        List<CreateOrderRequest> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            CreateOrderRequest item = new CreateOrderRequest();
+            item.setPizzaType(i % 2 == 0 ? "Margherita" : "Capricciosa");
+            item.setQuantity(1 + i % 3);
+            items.add(item);
+        }
+
+        bulkRequest = new BulkOrderRequest();
+        bulkRequest.setReference("BENCHMARK");
+        bulkRequest.setItems(items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BulkOrderResponse bulkCall() {
+        return orderService.createOrders(bulkRequest);
+    }
+
+    @Benchmark
+    public void singleCalls(Blackhole blackhole) {
+        for (CreateOrderRequest item : bulkRequest.getItems()) {
+            blackhole.consume(orderService.createOrder(item));
+        }
+    }
+}
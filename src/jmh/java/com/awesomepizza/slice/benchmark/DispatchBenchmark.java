@@ -0,0 +1,59 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.service.OrderQueue;
+import com.awesomepizza.slice.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim of the next order with 1000 orders due and preOrders pre-orders scheduled for tomorrow: the claim and the
+ * release of the due pre-orders should cost the same whatever the number of pre-orders waiting.
+ * The claim sends the order back to the queue after each invocation, so the queue stays the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"0", "10000", "200000"})
+    public int preOrders;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private OrderQueue orderQueue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        orderQueue = context.getBean(OrderQueue.class);
+        BenchmarkApplication.fillQueue(context, 1000);
+        BenchmarkApplication.fillPreOrders(context, preOrders);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderDto claimNextOrder() {
+        OrderDto next = orderService.getNextOrder(OrderService.DEFAULT_STATION);
+        orderService.updateOrderStatus(next.orderCode(), OrderStatus.RECEIVED);
+        return next;
+    }
+
+    // Nothing is due yet: only the head of the pre-orders is looked at
+    @Benchmark
+    public int releaseDue() {
+        orderQueue.releaseDue();
+        return orderQueue.size();
+    }
+}
@@ -0,0 +1,52 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.service.OrderEtaEstimator;
+import com.awesomepizza.slice.service.OrderQueue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimated ready time of a random RECEIVED order, as attached to every status call:
+ * it must stay in the microseconds whatever the size of the queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EtaBenchmark {
+
+    @Param({"100", "100000"})
+    public int queueSize;
+
+    private ConfigurableApplicationContext context;
+    private OrderEtaEstimator orderEtaEstimator;
+    private List<OrderDto> queuedOrders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.fillQueue(context, queueSize);
+        orderEtaEstimator = context.getBean(OrderEtaEstimator.class);
+        queuedOrders = context.getBean(OrderQueue.class).snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public LocalDateTime estimateReadyTime() {
+        OrderDto order = queuedOrders.get(ThreadLocalRandom.current().nextInt(queuedOrders.size()));
+        return orderEtaEstimator.estimateReadyTime(order.orderCode(), OrderStatus.RECEIVED);
+    }
+}
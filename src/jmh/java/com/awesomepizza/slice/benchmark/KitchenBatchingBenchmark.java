@@ -0,0 +1,175 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.service.BatchPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulation of a shift of the kitchen, comparing single-order claims with oven batches (see BatchPolicy).
+ * Orders arrive at random with a fixed seed, so every run serves the same shift; each oven claims the first due order,
+ * plus in batch mode the orders of the same type that join it as in OrderService.getNextBatch, and bakes the load.
+ * The time of a run is not the point: the orders served per hour and their average wait are reported as counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class KitchenBatchingBenchmark {
+
+    private static final LocalDateTime SHIFT_START = LocalDateTime.of(2026, 1, 1, 16, 0);
+    private static final Duration SHIFT = Duration.ofHours(8);
+    private static final int OVENS = 2;
+    // An oven load bakes in the same time whatever the number of pizzas, which are topped one after the other before it
+    private static final Duration BAKE_TIME = Duration.ofMinutes(6);
+    private static final Duration TOPPING_TIME = Duration.ofSeconds(20);
+    private static final String[] PIZZA_TYPES = {"Margherita", "Diavola", "Capricciosa", "Quattro Formaggi"};
+    private static final int[] PIZZA_TYPE_WEIGHTS = {45, 25, 20, 10};
+
+    @Param({"single", "batch"})
+    public String mode;
+
+    // Orders received per hour
+    @Param({"15", "30", "60"})
+    public int arrivalRate;
+
+    private final BatchPolicy batchPolicy = new BatchPolicy(6, 8, Duration.ofMinutes(5));
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ShiftResult {
+        public double ordersPerHour;
+        public double averageWaitMinutes;
+    }
+
+    @Benchmark
+    public void simulateShift(ShiftResult result) {
+        List<SimulatedOrder> arrivals = arrivals(new Random(42));
+        List<SimulatedOrder> queue = new ArrayList<>();
+        LocalDateTime shiftEnd = SHIFT_START.plus(SHIFT);
+        LocalDateTime[] ovenFreeAt = new LocalDateTime[OVENS];
+        Arrays.fill(ovenFreeAt, SHIFT_START);
+
+        int nextArrival = 0;
+        int served = 0;
+        long waitSeconds = 0;
+
+        while (true) {
+            int oven = firstFreeOven(ovenFreeAt);
+            LocalDateTime now = ovenFreeAt[oven];
+
+            if (!now.isBefore(shiftEnd)) {
+                break;
+            }
+
+            while (nextArrival < arrivals.size() && !arrivals.get(nextArrival).receivedAt().isAfter(now)) {
+                queue.add(arrivals.get(nextArrival++));
+            }
+
+            // Nothing to claim: the oven waits for the next order
+            if (queue.isEmpty()) {
+                ovenFreeAt[oven] = nextArrival < arrivals.size() ? arrivals.get(nextArrival).receivedAt() : shiftEnd;
+                continue;
+            }
+
+            List<SimulatedOrder> load = "batch".equals(mode) ? claimBatch(queue, now) : List.of(queue.remove(0));
+            int pizzas = load.stream().mapToInt(SimulatedOrder::quantity).sum();
+            LocalDateTime readyAt = now.plus(TOPPING_TIME.multipliedBy(pizzas)).plus(BAKE_TIME);
+
+            // Only the orders ready within the shift are served
+            if (!readyAt.isAfter(shiftEnd)) {
+                for (SimulatedOrder order : load) {
+                    served++;
+                    waitSeconds += Duration.between(order.receivedAt(), now).toSeconds();
+                }
+            }
+
+            ovenFreeAt[oven] = readyAt;
+        }
+
+        result.ordersPerHour = (double) served / SHIFT.toHours();
+        result.averageWaitMinutes = served == 0 ? 0 : waitSeconds / 60.0 / served;
+    }
+
+    // Same selection as OrderService.getNextBatch: the first order, then the following ones of its type that fit
+    private List<SimulatedOrder> claimBatch(List<SimulatedOrder> queue, LocalDateTime now) {
+        SimulatedOrder first = queue.remove(0);
+        List<SimulatedOrder> batch = new ArrayList<>();
+        batch.add(first);
+
+        LocalDateTime joinUntil = batchPolicy.joinUntil(first.receivedAt(), now);
+        int pizzas = first.quantity();
+
+        Iterator<SimulatedOrder> candidates = queue.iterator();
+        while (candidates.hasNext() && batch.size() < batchPolicy.getMaxOrders() && pizzas < batchPolicy.getMaxPizzas()) {
+            SimulatedOrder candidate = candidates.next();
+
+            if (candidate.receivedAt().isAfter(joinUntil)) {
+                break;
+            }
+
+            if (candidate.pizzaType().equals(first.pizzaType()) && pizzas + candidate.quantity() <= batchPolicy.getMaxPizzas()) {
+                batch.add(candidate);
+                pizzas += candidate.quantity();
+                candidates.remove();
+            }
+        }
+
+        return batch;
+    }
+
+    // Poisson arrivals over the shift, each of a weighted pizza type and from 1 to 3 pizzas
+    private List<SimulatedOrder> arrivals(Random random) {
+        List<SimulatedOrder> arrivals = new ArrayList<>();
+        double meanGapSeconds = 3600.0 / arrivalRate;
+        LocalDateTime receivedAt = SHIFT_START;
+
+        while (true) {
+            long gapSeconds = Math.round(-Math.log(1 - random.nextDouble()) * meanGapSeconds);
+            receivedAt = receivedAt.plusSeconds(gapSeconds);
+
+            if (!receivedAt.isBefore(SHIFT_START.plus(SHIFT))) {
+                return arrivals;
+            }
+
+            arrivals.add(new SimulatedOrder(randomPizzaType(random), 1 + random.nextInt(3), receivedAt));
+        }
+    }
+
+    private static String randomPizzaType(Random random) {
+        int pick = random.nextInt(100);
+
+        for (int i = 0; i < PIZZA_TYPES.length; i++) {
+            pick -= PIZZA_TYPE_WEIGHTS[i];
+            if (pick < 0) {
+                return PIZZA_TYPES[i];
+            }
+        }
+
+        return PIZZA_TYPES[0];
+    }
+
+    private static int firstFreeOven(LocalDateTime[] ovenFreeAt) {
+        int oven = 0;
+
+        for (int i = 1; i < ovenFreeAt.length; i++) {
+            if (ovenFreeAt[i].isBefore(ovenFreeAt[oven])) {
+                oven = i;
+            }
+        }
+
+        return oven;
+    }
+
+    private record SimulatedOrder(String pizzaType, int quantity, LocalDateTime receivedAt) {
+    }
+}
@@ -0,0 +1,105 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import lombok.Data;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.BeanUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO conversions for a single order and for whole queues: the OrderMapper used by the service,
+ * the reflective BeanUtils copy it replaced, and the conversions of the status event used by the in-memory queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"1", "10000"})
+    public int queueSize;
+
+    private List<PizzaOrder> orders;
+    private OrderStatusChangedEvent event;
+
+    @Setup
+    public void setUp() {
+        orders = new ArrayList<>(queueSize);
+        for (int i = 0; i < queueSize; i++) {
+            PizzaOrder order = new PizzaOrder();
+            order.setId((long) i);
+            order.setOrderCode(String.format("0BKQ3ZJ5M%04d", i));
+            order.setPizzaType("Margherita");
+            order.setQuantity(2);
+            order.setStatus(OrderStatus.PREPARING);
+            order.setAssignedStation("oven-1");
+            order.setInsertTimestamp(LocalDateTime.now());
+            order.setUpdateTimestamp(LocalDateTime.now());
+            order.setDispatchAt(order.getInsertTimestamp());
+            orders.add(order);
+        }
+
+        event = OrderStatusChangedEvent.of(orders.get(0), OrderStatus.RECEIVED);
+    }
+
+    @Benchmark
+    public List<OrderDto> toOrderDto() {
+        List<OrderDto> queue = new ArrayList<>(orders.size());
+        for (PizzaOrder order : orders) {
+            queue.add(OrderMapper.toOrderDto(order));
+        }
+        return queue;
+    }
+
+    // Baseline: the reflective copy into a mutable DTO that OrderService used before OrderMapper
+    @Benchmark
+    public List<LegacyOrderDto> toOrderDtoWithBeanUtils() {
+        List<LegacyOrderDto> queue = new ArrayList<>(orders.size());
+        for (PizzaOrder order : orders) {
+            LegacyOrderDto orderDto = new LegacyOrderDto();
+            BeanUtils.copyProperties(order, orderDto);
+            queue.add(orderDto);
+        }
+        return queue;
+    }
+
+    @Benchmark
+    public List<OrderStatusResponse> toOrderStatusResponse() {
+        List<OrderStatusResponse> responses = new ArrayList<>(orders.size());
+        for (PizzaOrder order : orders) {
+            responses.add(OrderMapper.toOrderStatusResponse(order));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public OrderDto eventToOrderDto() {
+        return event.toOrderDto();
+    }
+
+    @Benchmark
+    public OrderStatusChangedEvent entityToEvent() {
+        return OrderStatusChangedEvent.of(orders.get(0), OrderStatus.RECEIVED);
+    }
+
+    @Data
+    public static class LegacyOrderDto {
+        private String orderCode;
+        private String pizzaType;
+        private int quantity;
+        private OrderStatus status;
+        private String assignedStation;
+        private LocalDateTime insertTimestamp;
+    }
+}
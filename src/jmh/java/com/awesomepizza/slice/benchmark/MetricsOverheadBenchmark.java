@@ -0,0 +1,60 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the @Timed instrumentation on the cheapest service operations, where it weighs the most:
+ * status lookups served by the near cache and queue reads served by the in-memory snapshot.
+ * Compare the scores of the two values of timedEnabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"true", "false"})
+    public boolean timedEnabled;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private String orderCode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("slice.metrics.timed.enabled=" + timedEnabled);
+        orderService = context.getBean(OrderService.class);
+
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setPizzaType("Margherita");
+        request.setQuantity(1);
+        for (int i = 0; i < 100; i++) {
+            orderCode = orderService.createOrder(request).orderCode();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderStatusResponse getOrderStatus() {
+        return orderService.getOrderStatus(orderCode);
+    }
+
+    @Benchmark
+    public List<OrderDto> getOrderQueue() {
+        return orderService.getOrderQueue();
+    }
+}
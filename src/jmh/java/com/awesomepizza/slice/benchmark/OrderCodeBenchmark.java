@@ -0,0 +1,41 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.service.OrderCodeGenerator;
+import com.awesomepizza.slice.service.RandomOrderCodeGenerator;
+import com.awesomepizza.slice.service.SnowflakeOrderCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order code generation, single-threaded and under contention on a shared generator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderCodeBenchmark {
+
+    @Param({"snowflake", "random"})
+    public String strategy;
+
+    private OrderCodeGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = strategy.equals("snowflake") ? new SnowflakeOrderCodeGenerator(1, true, 1000) : new RandomOrderCodeGenerator();
+    }
+
+    @Benchmark
+    public String nextCode() {
+        return generator.nextCode();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextCodeContended() {
+        return generator.nextCode();
+    }
+}
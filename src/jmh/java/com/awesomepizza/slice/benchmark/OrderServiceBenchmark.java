@@ -0,0 +1,99 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderService operations end to end against H2, with queueDepth RECEIVED orders waiting.
+ * The claim sends the order back to the queue after each invocation, so the depth stays constant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderServiceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int queueDepth;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private CreateOrderRequest request;
+    private String orderCode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        BenchmarkApplication.fillQueue(context, queueDepth);
+
+        request = new CreateOrderRequest();
+        request.setPizzaType("Margherita");
+        request.setQuantity(1);
+        orderCode = orderService.createOrder(request).orderCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Latency of a lone creation, including the wait of the ingestion pipeline for a batch to fill up
+    @Benchmark
+    public OrderStatusResponse createOrder() {
+        return orderService.createOrder(request);
+    }
+
+    // Throughput of creations from 1, 10 and 100 concurrent clients, which the ingestion pipeline groups into batches
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public OrderStatusResponse createOrderThroughput1Client() {
+        return orderService.createOrder(request);
+    }
+
+    @Benchmark
+    @Threads(10)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public OrderStatusResponse createOrderThroughput10Clients() {
+        return orderService.createOrder(request);
+    }
+
+    @Benchmark
+    @Threads(100)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public OrderStatusResponse createOrderThroughput100Clients() {
+        return orderService.createOrder(request);
+    }
+
+    @Benchmark
+    public OrderStatusResponse getOrderStatus() {
+        return orderService.getOrderStatus(orderCode);
+    }
+
+    @Benchmark
+    public List<OrderDto> getOrderQueue() {
+        return orderService.getOrderQueue();
+    }
+
+    // A claim and a status update: the order goes back to the queue, as PREPARING can only be entered by a claim
+    @Benchmark
+    public OrderDto claimNextOrder() {
+        OrderDto next = orderService.getNextOrder(OrderService.DEFAULT_STATION);
+        orderService.updateOrderStatus(next.orderCode(), OrderStatus.RECEIVED);
+        return next;
+    }
+}
@@ -0,0 +1,65 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.dto.QueuedOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.repository.OrderRepository;
+import com.awesomepizza.slice.service.OrderQueue;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the RECEIVED orders from H2, as done by the queue rebuild: entities mapped to DTOs
+ * against the JPQL constructor projection, which skips entity hydration and persistence context tracking.
+ * Both are compared with a read of the in-memory queue, which serves the queue between two rebuilds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueLoadBenchmark {
+
+    @Param({"1", "1000", "10000"})
+    public int queueSize;
+
+    private ConfigurableApplicationContext context;
+    private OrderRepository orderRepository;
+    private OrderQueue orderQueue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderRepository = context.getBean(OrderRepository.class);
+        orderQueue = context.getBean(OrderQueue.class);
+        BenchmarkApplication.fillQueue(context, queueSize);
+        orderQueue.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<OrderDto> loadEntities() {
+        return orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED).stream()
+                .map(OrderMapper::toOrderDto)
+                .toList();
+    }
+
+    @Benchmark
+    public List<QueuedOrder> loadProjection() {
+        return orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED);
+    }
+
+    @Benchmark
+    public List<OrderDto> readInMemoryQueue() {
+        return orderQueue.snapshot();
+    }
+}
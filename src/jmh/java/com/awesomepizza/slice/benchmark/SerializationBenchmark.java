@@ -0,0 +1,52 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the queue returned by GET /api/orders/queue, configured like the Spring Boot ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int queueSize;
+
+    private ObjectWriter writer;
+    private List<OrderDto> queue;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, OrderDto.class));
+
+        queue = new ArrayList<>(queueSize);
+        for (int i = 0; i < queueSize; i++) {
+            queue.add(new OrderDto(String.format("0BKQ3ZJ5M%04d", i), "Margherita", 1 + i % 3,
+                    OrderStatus.RECEIVED, null, LocalDateTime.now()));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeQueue() throws JsonProcessingException {
+        return writer.writeValueAsBytes(queue);
+    }
+}
@@ -0,0 +1,58 @@
+package com.awesomepizza.slice.benchmark;
+
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean validation of the order creation request, as done by @Valid on POST /api/orders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private CreateOrderRequest validRequest;
+    private CreateOrderRequest invalidRequest;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        validRequest = new CreateOrderRequest();
+        validRequest.setPizzaType("Margherita");
+        validRequest.setQuantity(2);
+
+        invalidRequest = new CreateOrderRequest();
+        invalidRequest.setPizzaType(" ");
+        invalidRequest.setQuantity(-1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateOrderRequest>> validRequest() {
+        return validator.validate(validRequest);
+    }
+
+    // Building the violations and interpolating their messages is the expensive part of a rejection
+    @Benchmark
+    public Set<ConstraintViolation<CreateOrderRequest>> invalidRequest() {
+        return validator.validate(invalidRequest);
+    }
+}
@@ -0,0 +1,106 @@
+package com.awesomepizza.slice.admission;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the requests in flight with a limit adapted to the latency of the database (AIMD):
+ * at the end of every window, if the average latency of the OrderRepository calls went over the threshold the limit
+ * is cut by a factor, otherwise it grows by one if the requests actually used it. The kitchen requests are admitted
+ * up to the limit, while the customer requests are only admitted up to customer-share of it, so the rest of the limit
+ * stays reserved to the kitchen when the customers saturate it.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final long windowNanos;
+    private final double customerShare;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final LongAccumulator windowPeakInFlight = new LongAccumulator(Math::max, 0);
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold,
+                                      Duration window, double customerShare) {
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.windowNanos = window.toNanos();
+        this.customerShare = customerShare;
+    }
+
+    //region public methods
+
+    // A successful acquire must be followed by a release
+    public boolean tryAcquire(boolean kitchen) {
+        int max = kitchen ? limit : Math.max((int) (limit * customerShare), 1);
+
+        while (true) {
+            int current = inFlight.get();
+
+            if (current >= max) {
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                windowPeakInFlight.accumulate(current + 1);
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public void onLatency(long latencyNanos) {
+        windowLatencyNanos.add(latencyNanos);
+        windowSamples.increment();
+
+        long now = System.nanoTime();
+        long start = windowStart.get();
+
+        // Only the thread that closes the window adjusts the limit
+        if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+            adjust(windowLatencyNanos.sumThenReset(), windowSamples.sumThenReset(), windowPeakInFlight.getThenReset());
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    //endregion
+
+    //region private methods
+
+    private void adjust(long latencyNanos, long samples, long peakInFlight) {
+        if (samples == 0) {
+            return;
+        }
+
+        if (latencyNanos / samples > latencyThresholdNanos) {
+            limit = Math.max((int) (limit * DECREASE_FACTOR), minLimit);
+        } else if (peakInFlight >= limit * customerShare) {
+            limit = Math.min(limit + 1, maxLimit);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,154 @@
+package com.awesomepizza.slice.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control of the order API, in front of OrderController.
+ * Order intake (POST /api/orders and /api/orders/bulk) goes through the token bucket of its client first (see ClientIdentity).
+ * Intake and status lookups are then admitted by the concurrency limiter with the customer priority,
+ * and the kitchen endpoints (next order, queue, status updates) with the kitchen priority.
+ * Shed requests get an immediate 429 with Retry-After, without reaching the service.
+ * The event streams are not limited: they hold no database connection while open.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+    private final static Logger LOGGER = LogManager.getLogger(AdmissionFilter.class);
+
+    private static final String ORDERS_PATH = "/api/orders";
+
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ObjectMapper objectMapper;
+    private final ClientIdentity clientIdentity;
+
+    private final Counter rateLimited;
+    private final Counter customerShed;
+    private final Counter kitchenShed;
+
+    public AdmissionFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           ObjectMapper objectMapper, MeterRegistry registry, ClientIdentity clientIdentity) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.objectMapper = objectMapper;
+        this.clientIdentity = clientIdentity;
+
+        this.rateLimited = rejectedCounter(registry, "rate_limit", "customer");
+        this.customerShed = rejectedCounter(registry, "concurrency", "customer");
+        this.kitchenShed = rejectedCounter(registry, "concurrency", "kitchen");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestClass requestClass = classify(request);
+
+        if (requestClass == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (requestClass == RequestClass.INTAKE) {
+            long waitNanos = rateLimiter.tryAcquire(clientIdentity.of(request));
+
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                reject(response, waitNanos, "Too many orders from this client, retry later");
+                return;
+            }
+        }
+
+        boolean kitchen = requestClass == RequestClass.KITCHEN;
+
+        if (!concurrencyLimiter.tryAcquire(kitchen)) {
+            (kitchen ? kitchenShed : customerShed).increment();
+            reject(response, TimeUnit.SECONDS.toNanos(1), "The service is overloaded, retry later");
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            concurrencyLimiter.release();
+        }
+    }
+
+    //region private methods
+
+    private RequestClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+
+        if (!path.startsWith(ORDERS_PATH)) {
+            return null;
+        }
+
+        String subPath = path.substring(ORDERS_PATH.length());
+
+        if (HttpMethod.POST.matches(method) && (subPath.isEmpty() || subPath.equals("/") || subPath.equals("/bulk"))) {
+            return RequestClass.INTAKE;
+        }
+
+        if (HttpMethod.PATCH.matches(method) && subPath.endsWith("/status")) {
+            return RequestClass.KITCHEN;
+        }
+
+        if (HttpMethod.POST.matches(method) && subPath.equals("/ready")) {
+            return RequestClass.KITCHEN;
+        }
+
+        if (HttpMethod.GET.matches(method)) {
+            if (subPath.equals("/next") || subPath.equals("/next/batch") || subPath.equals("/queue") || subPath.equals("/queue/page")) {
+                return RequestClass.KITCHEN;
+            }
+            if (subPath.endsWith("/status")) {
+                return RequestClass.CUSTOMER;
+            }
+        }
+
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos, String error) throws IOException {
+        long retryAfterSeconds = Math.max(TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1), 1);
+
+        LOGGER.debug("Request rejected: {}, retry after {}s", error, retryAfterSeconds);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("errors", List.of(error)));
+    }
+
+    private static Counter rejectedCounter(MeterRegistry registry, String reason, String priority) {
+        return Counter.builder("slice.admission.rejected")
+                .description("Requests rejected by the admission control")
+                .tag("reason", reason)
+                .tag("priority", priority)
+                .register(registry);
+    }
+
+    //endregion
+
+    private enum RequestClass {
+        INTAKE,
+        CUSTOMER,
+        KITCHEN
+    }
+}
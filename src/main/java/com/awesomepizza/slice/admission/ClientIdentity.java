@@ -0,0 +1,43 @@
+package com.awesomepizza.slice.admission;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Identifies the client of a request: a trusted proxy names the client with the configured header, any other request
+ * is identified by its remote address. Shared by the rate limiter of the admission control and the idempotency keys,
+ * so a client can neither leave its own bucket nor reach the bucket or the keys of another client.
+ */
+@Component
+@Profile("!reactive")
+public class ClientIdentity {
+    private final String clientHeader;
+    private final Set<String> trustedProxies;
+
+    public ClientIdentity(
+            @Value("${slice.admission.client-header:X-Client-Id}") String clientHeader,
+            @Value("${slice.admission.trusted-proxies:}") Set<String> trustedProxies
+    ) {
+        this.clientHeader = clientHeader;
+        this.trustedProxies = trustedProxies;
+    }
+
+    //region public methods
+
+    public String of(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+
+        if (!trustedProxies.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+
+        String clientId = request.getHeader(clientHeader);
+        return clientId == null || clientId.isBlank() ? remoteAddress : clientId;
+    }
+
+    //endregion
+}
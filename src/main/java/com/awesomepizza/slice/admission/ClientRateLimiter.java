@@ -0,0 +1,61 @@
+package com.awesomepizza.slice.admission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-client token buckets implemented with the generic cell rate algorithm (GCRA): each bucket is a single long,
+ * the theoretical arrival time of the next request, updated with a compare-and-set, so admission never locks.
+ * Clients are hashed onto a fixed array of buckets: memory does not grow with the number of clients, at the cost of
+ * the rare clients sharing a stripe also sharing its rate.
+ */
+public class ClientRateLimiter {
+
+    private final AtomicLongArray theoreticalArrivalTimes;
+    private final int mask;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final long origin = System.nanoTime();
+
+    // stripes is rounded up to a power of two
+    public ClientRateLimiter(double ratePerSecond, int burst, int stripes) {
+        int size = Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1;
+        this.theoreticalArrivalTimes = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.emissionIntervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(burst - 1, 0);
+    }
+
+    //region public methods
+
+    // Returns 0 if the request is admitted, otherwise how long the client should wait before retrying, in nanoseconds
+    public long tryAcquire(String clientKey) {
+        int stripe = spread(clientKey.hashCode()) & mask;
+        // Relative to the creation of the limiter, so that an empty bucket (0) is always in the past
+        long now = System.nanoTime() - origin;
+
+        while (true) {
+            long stored = theoreticalArrivalTimes.get(stripe);
+            long theoreticalArrivalTime = Math.max(stored, now);
+            long waitNanos = theoreticalArrivalTime - burstToleranceNanos - now;
+
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+
+            if (theoreticalArrivalTimes.compareAndSet(stripe, stored, theoreticalArrivalTime + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    //endregion
+
+    //region private methods
+
+    // Mixes the high bits of the hash into the low ones used as index, as HashMap does
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    //endregion
+}
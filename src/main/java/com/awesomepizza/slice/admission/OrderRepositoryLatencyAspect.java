@@ -0,0 +1,27 @@
+package com.awesomepizza.slice.admission;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+// Feeds the latency of every OrderRepository call, whichever thread makes it, to the concurrency limiter
+@Aspect
+public class OrderRepositoryLatencyAspect {
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    public OrderRepositoryLatencyAspect(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    @Around("this(com.awesomepizza.slice.repository.OrderRepository)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+
+        try {
+            return joinPoint.proceed();
+        } finally {
+            concurrencyLimiter.onLatency(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.awesomepizza.slice.cache;
+
+import com.awesomepizza.slice.exception.IdempotencyKeyInProgressException;
+import com.awesomepizza.slice.exception.IdempotencyKeyMismatchException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs an action at most once per idempotency key and returns its result to the repeats of the request.
+ * Keys are scoped by the client that sent them: two clients choosing the same key never see each other's results.
+ * Keys are claimed atomically in a bounded in-process map with a TTL, where the result is a future: concurrent
+ * duplicates on a node wait for the first request instead of running the action again.
+ * With the optional Redis tier the key is also claimed with SET NX, so duplicates reaching other nodes wait
+ * for the stored result too. The fingerprint of the request is stored with the key: a different request reusing
+ * the key is rejected. An action that fails releases the key, so the client can retry it.
+ * While the action runs, the Redis claim only lives for the in-flight TTL: a claim left behind by a crashed node,
+ * or not released during a Redis outage, expires soon instead of rejecting the retries for the whole TTL.
+ */
+public class IdempotencyStore<V> {
+    private final static Logger LOGGER = LogManager.getLogger(IdempotencyStore.class);
+
+    private static final long REMOTE_BACKOFF_NANOS = Duration.ofSeconds(5).toNanos();
+    private static final long REMOTE_POLL_NANOS = Duration.ofMillis(20).toNanos();
+
+    private final String name;
+    private final String keyPrefix;
+    private final Cache<String, Entry<V>> local;
+    private final RedisTemplate<String, StoredResult<V>> remote;
+    private final Duration ttl;
+    private final Duration inFlightTtl;
+    private final Duration waitTimeout;
+
+    private volatile long remoteDisabledUntil;
+
+    public IdempotencyStore(String name, long localMaxSize, Duration ttl, Duration inFlightTtl, Duration waitTimeout,
+                            RedisTemplate<String, StoredResult<V>> remote) {
+        this.name = name;
+        this.keyPrefix = "slice:idempotency:" + name + ":";
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.remote = remote;
+        this.ttl = ttl;
+        this.inFlightTtl = inFlightTtl;
+        this.waitTimeout = waitTimeout;
+        this.remoteDisabledUntil = System.nanoTime();
+    }
+
+    //region public methods
+
+    public Outcome<V> execute(String client, String key, String fingerprint, Supplier<V> action) {
+        // Length-prefixed, so that no pair of client and key maps to the storage key of another pair
+        String storageKey = client.length() + ":" + client + ":" + key;
+        Entry<V> entry = new Entry<>(fingerprint, new CompletableFuture<>());
+        Entry<V> existing = local.asMap().putIfAbsent(storageKey, entry);
+
+        if (existing != null) {
+            checkFingerprint(key, fingerprint, existing.fingerprint());
+            return new Outcome<>(await(key, existing.result()), true);
+        }
+
+        try {
+            Outcome<V> outcome = executeOnce(storageKey, key, fingerprint, action);
+            entry.result().complete(outcome.value());
+            return outcome;
+        } catch (RuntimeException e) {
+            local.asMap().remove(storageKey, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //endregion
+
+    //region private methods
+
+    private Outcome<V> executeOnce(String storageKey, String key, String fingerprint, Supplier<V> action) {
+        if (!isRemoteAvailable()) {
+            return new Outcome<>(action.get(), false);
+        }
+
+        Boolean claimed;
+        try {
+            // The full TTL is only set with the result
+            claimed = remote.opsForValue().setIfAbsent(keyPrefix + storageKey, new StoredResult<>(fingerprint, null), inFlightTtl);
+        } catch (DataAccessException e) {
+            // Without Redis the key is only deduplicated on this node
+            onRemoteError(e);
+            return new Outcome<>(action.get(), false);
+        }
+
+        if (Boolean.FALSE.equals(claimed)) {
+            return new Outcome<>(awaitRemote(storageKey, key, fingerprint), true);
+        }
+
+        V value;
+        try {
+            value = action.get();
+        } catch (RuntimeException e) {
+            releaseRemote(storageKey);
+            throw e;
+        }
+
+        try {
+            remote.opsForValue().set(keyPrefix + storageKey, new StoredResult<>(fingerprint, value), ttl);
+        } catch (DataAccessException e) {
+            onRemoteError(e);
+        }
+
+        return new Outcome<>(value, false);
+    }
+
+    // Waits for the request that claimed the key on this node
+    private V await(String key, CompletableFuture<V> result) {
+        try {
+            return result.get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key);
+        } catch (TimeoutException | ExecutionException e) {
+            // Still running, or failed and released: the client retries later
+            throw new IdempotencyKeyInProgressException(key);
+        }
+    }
+
+    // Waits for the request that claimed the key on another node to store its result
+    private V awaitRemote(String storageKey, String key, String fingerprint) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (true) {
+            StoredResult<V> stored;
+            try {
+                stored = remote.opsForValue().get(keyPrefix + storageKey);
+            } catch (DataAccessException e) {
+                onRemoteError(e);
+                throw new IdempotencyKeyInProgressException(key);
+            }
+
+            // Released by a failed request, or expired
+            if (stored == null) {
+                throw new IdempotencyKeyInProgressException(key);
+            }
+
+            checkFingerprint(key, fingerprint, stored.fingerprint());
+
+            if (stored.value() != null) {
+                return stored.value();
+            }
+
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IdempotencyKeyInProgressException(key);
+            }
+
+            LockSupport.parkNanos(REMOTE_POLL_NANOS);
+        }
+    }
+
+    private void releaseRemote(String storageKey) {
+        try {
+            remote.delete(keyPrefix + storageKey);
+        } catch (DataAccessException e) {
+            onRemoteError(e);
+        }
+    }
+
+    private void checkFingerprint(String key, String fingerprint, String storedFingerprint) {
+        if (!storedFingerprint.equals(fingerprint)) {
+            LOGGER.warn("Idempotency key {} of {} reused for a different request", key, name);
+            throw new IdempotencyKeyMismatchException(key);
+        }
+    }
+
+    private boolean isRemoteAvailable() {
+        return remote != null && System.nanoTime() - remoteDisabledUntil >= 0;
+    }
+
+    private void onRemoteError(DataAccessException e) {
+        remoteDisabledUntil = System.nanoTime() + REMOTE_BACKOFF_NANOS;
+        LOGGER.warn("Redis tier of idempotency store {} unavailable, skipping it for a while: {}", name, e.getMessage());
+    }
+
+    //endregion
+
+    // Result of execute: replayed is true when the value comes from an earlier request with the same key
+    public record Outcome<V>(V value, boolean replayed) {
+    }
+
+    // Value kept in Redis for a key: null until the request that claimed it completes
+    public record StoredResult<V>(String fingerprint, V value) {
+    }
+
+    private record Entry<V>(String fingerprint, CompletableFuture<V> result) {
+    }
+}
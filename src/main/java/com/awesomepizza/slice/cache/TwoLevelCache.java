@@ -0,0 +1,208 @@
+package com.awesomepizza.slice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through cache with a bounded in-process near cache in front of an optional shared Redis tier.
+ * The near cache has a short TTL, which bounds how long a node can serve a value overwritten by another node.
+ * Every value carries the version of its source: Redis stores it next to the value and a write only replaces an older
+ * version, checked and applied by a script on the server, so a late put or a load read before a change never
+ * overwrites a newer value, whatever the order in which the nodes reach Redis.
+ * Redis failures never fail the caller: the tier is skipped for a short back-off and values are loaded from the source.
+ */
+public class TwoLevelCache<V> {
+    private final static Logger LOGGER = LogManager.getLogger(TwoLevelCache.class);
+
+    private static final long REMOTE_BACKOFF_NANOS = Duration.ofSeconds(5).toNanos();
+
+    private static final byte[] VERSION_FIELD = "version".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE_FIELD = "value".getBytes(StandardCharsets.UTF_8);
+
+    // Compare-and-set on the version: KEYS[1] the entry, ARGV[1] the version, ARGV[2] the value, ARGV[3] the TTL in ms
+    private static final byte[] PUT_IF_NEWER_SCRIPT = ("""
+            local current = redis.call('HGET', KEYS[1], 'version')
+            if current and tonumber(current) >= tonumber(ARGV[1]) then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'version', ARGV[1], 'value', ARGV[2])
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return 1
+            """).getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+    private final String keyPrefix;
+    private final Cache<String, Versioned<V>> local;
+    private final RedisTemplate<String, V> remote;
+    private final RedisSerializer<V> valueSerializer;
+    private final Duration remoteTtl;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder remoteErrors = new LongAdder();
+
+    private volatile long remoteDisabledUntil;
+
+    public TwoLevelCache(String name, long localMaxSize, Duration localTtl, Duration remoteTtl, RedisTemplate<String, V> remote) {
+        this.name = name;
+        this.keyPrefix = "slice:" + name + ":";
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        this.remote = remote;
+        this.valueSerializer = remote != null ? valueSerializer(remote) : null;
+        this.remoteTtl = remoteTtl;
+        this.remoteDisabledUntil = System.nanoTime();
+    }
+
+    //region public methods
+
+    // Returns the cached value or loads it; null values are not cached
+    public V get(String key, Function<String, Versioned<V>> loader) {
+        Versioned<V> cached = local.getIfPresent(key);
+
+        if (cached != null) {
+            localHits.increment();
+            return cached.value();
+        }
+
+        // Concurrent misses on the same key wait for a single load
+        Versioned<V> loaded = local.get(key, k -> loadThrough(k, loader));
+        return loaded != null ? loaded.value() : null;
+    }
+
+    // Writes the value through both tiers, unless they already hold the same or a newer version
+    public void put(String key, V value, long version) {
+        local.asMap().merge(key, new Versioned<>(value, version), TwoLevelCache::newer);
+
+        if (isRemoteAvailable()) {
+            try {
+                putIfNewer(key, value, version);
+            } catch (DataAccessException e) {
+                onRemoteError(e);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    public long getRemoteHits() {
+        return remoteHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRemoteErrors() {
+        return remoteErrors.sum();
+    }
+
+    public long getLocalSize() {
+        return local.estimatedSize();
+    }
+
+    //endregion
+
+    //region private methods
+
+    private Versioned<V> loadThrough(String key, Function<String, Versioned<V>> loader) {
+        if (isRemoteAvailable()) {
+            try {
+                Versioned<V> cached = getRemote(key);
+                if (cached != null) {
+                    remoteHits.increment();
+                    return cached;
+                }
+            } catch (DataAccessException e) {
+                onRemoteError(e);
+            }
+        }
+
+        misses.increment();
+        Versioned<V> loaded = loader.apply(key);
+
+        // A put made while the value was loading holds a newer version, which this one, read before it, does not replace
+        if (loaded != null && isRemoteAvailable()) {
+            try {
+                putIfNewer(key, loaded.value(), loaded.version());
+            } catch (DataAccessException e) {
+                onRemoteError(e);
+            }
+        }
+
+        return loaded;
+    }
+
+    private Versioned<V> getRemote(String key) {
+        List<byte[]> fields = remote.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hashCommands().hMGet(rawKey(key), VERSION_FIELD, VALUE_FIELD));
+
+        if (fields == null || fields.get(0) == null || fields.get(1) == null) {
+            return null;
+        }
+
+        long version = Long.parseLong(new String(fields.get(0), StandardCharsets.UTF_8));
+        return new Versioned<>(valueSerializer.deserialize(fields.get(1)), version);
+    }
+
+    private void putIfNewer(String key, V value, long version) {
+        byte[] rawVersion = Long.toString(version).getBytes(StandardCharsets.UTF_8);
+        byte[] rawTtl = Long.toString(remoteTtl.toMillis()).getBytes(StandardCharsets.UTF_8);
+
+        remote.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                .eval(PUT_IF_NEWER_SCRIPT, ReturnType.INTEGER, 1, rawKey(key), rawVersion, valueSerializer.serialize(value), rawTtl));
+    }
+
+    private byte[] rawKey(String key) {
+        return (keyPrefix + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean isRemoteAvailable() {
+        return remote != null && System.nanoTime() - remoteDisabledUntil >= 0;
+    }
+
+    private void onRemoteError(DataAccessException e) {
+        remoteErrors.increment();
+        remoteDisabledUntil = System.nanoTime() + REMOTE_BACKOFF_NANOS;
+        LOGGER.warn("Redis tier of cache {} unavailable, skipping it for a while: {}", name, e.getMessage());
+    }
+
+    private static <V> Versioned<V> newer(Versioned<V> current, Versioned<V> candidate) {
+        return candidate.version() > current.version() ? candidate : current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> RedisSerializer<V> valueSerializer(RedisTemplate<String, V> remote) {
+        return (RedisSerializer<V>) remote.getValueSerializer();
+    }
+
+    //endregion
+
+    /**
+     * A value with the version of its source, e.g. the JPA version of an entity: higher versions are newer.
+     */
+    public record Versioned<V>(V value, long version) {
+    }
+}
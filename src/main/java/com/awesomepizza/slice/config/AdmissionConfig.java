@@ -0,0 +1,79 @@
+package com.awesomepizza.slice.config;
+
+import com.awesomepizza.slice.admission.AdaptiveConcurrencyLimiter;
+import com.awesomepizza.slice.admission.AdmissionFilter;
+import com.awesomepizza.slice.admission.ClientIdentity;
+import com.awesomepizza.slice.admission.ClientRateLimiter;
+import com.awesomepizza.slice.admission.OrderRepositoryLatencyAspect;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+// Admission control of the servlet stack, switched on with slice.admission.enabled=true
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "slice.admission.enabled", havingValue = "true")
+public class AdmissionConfig {
+
+    @Bean
+    public ClientRateLimiter clientRateLimiter(
+            @Value("${slice.admission.client-rate:5}") double ratePerSecond,
+            @Value("${slice.admission.client-burst:20}") int burst,
+            @Value("${slice.admission.client-stripes:65536}") int stripes
+    ) {
+        return new ClientRateLimiter(ratePerSecond, burst, stripes);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(
+            MeterRegistry registry,
+            @Value("${slice.admission.initial-limit:40}") int initialLimit,
+            @Value("${slice.admission.min-limit:4}") int minLimit,
+            @Value("${slice.admission.max-limit:400}") int maxLimit,
+            @Value("${slice.admission.latency-threshold:PT0.05S}") Duration latencyThreshold,
+            @Value("${slice.admission.window:PT1S}") Duration window,
+            @Value("${slice.admission.customer-share:0.8}") double customerShare
+    ) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                latencyThreshold, window, customerShare);
+
+        Gauge.builder("slice.admission.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current limit of the requests in flight")
+                .register(registry);
+        Gauge.builder("slice.admission.in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Requests in flight under admission control")
+                .register(registry);
+
+        return limiter;
+    }
+
+    @Bean
+    public OrderRepositoryLatencyAspect orderRepositoryLatencyAspect(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        return new OrderRepositoryLatencyAspect(concurrencyLimiter);
+    }
+
+    // Runs before the other filters, so shed requests cost as little as possible
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(
+            ClientRateLimiter clientRateLimiter,
+            AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter,
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            ClientIdentity clientIdentity
+    ) {
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionFilter(clientRateLimiter, adaptiveConcurrencyLimiter, objectMapper, registry, clientIdentity));
+        registration.addUrlPatterns("/api/orders/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
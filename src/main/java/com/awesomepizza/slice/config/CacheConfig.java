@@ -0,0 +1,71 @@
+package com.awesomepizza.slice.config;
+
+import com.awesomepizza.slice.cache.IdempotencyStore;
+import com.awesomepizza.slice.cache.TwoLevelCache;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    // The Redis tier follows spring.cache.type: with any other cache type the cache is local to the node
+    @Bean
+    public TwoLevelCache<OrderStatusResponse> orderStatusTwoLevelCache(
+            ObjectProvider<RedisConnectionFactory> redisConnectionFactory,
+            ObjectMapper objectMapper,
+            @Value("${spring.cache.type:simple}") String cacheType,
+            @Value("${slice.cache.order-status.local-max-size:100000}") long localMaxSize,
+            @Value("${slice.cache.order-status.local-ttl:PT2S}") Duration localTtl,
+            @Value("${slice.cache.order-status.remote-ttl:PT60S}") Duration remoteTtl
+    ) {
+        RedisTemplate<String, OrderStatusResponse> remote = null;
+
+        if ("redis".equalsIgnoreCase(cacheType)) {
+            remote = new RedisTemplate<>();
+            remote.setConnectionFactory(redisConnectionFactory.getObject());
+            remote.setKeySerializer(StringRedisSerializer.UTF_8);
+            remote.setValueSerializer(new Jackson2JsonRedisSerializer<>(objectMapper, OrderStatusResponse.class));
+            remote.afterPropertiesSet();
+        }
+
+        return new TwoLevelCache<>("order-status", localMaxSize, localTtl, remoteTtl, remote);
+    }
+
+    // Idempotency keys of the order creations, shared among the nodes through Redis like the status cache
+    @Bean
+    public IdempotencyStore<OrderStatusResponse> orderIdempotencyStore(
+            ObjectProvider<RedisConnectionFactory> redisConnectionFactory,
+            ObjectMapper objectMapper,
+            @Value("${spring.cache.type:simple}") String cacheType,
+            @Value("${slice.idempotency.local-max-size:100000}") long localMaxSize,
+            @Value("${slice.idempotency.ttl:PT24H}") Duration ttl,
+            @Value("${slice.idempotency.in-flight-ttl:PT30S}") Duration inFlightTtl,
+            @Value("${slice.idempotency.wait-timeout:PT10S}") Duration waitTimeout
+    ) {
+        RedisTemplate<String, IdempotencyStore.StoredResult<OrderStatusResponse>> remote = null;
+
+        if ("redis".equalsIgnoreCase(cacheType)) {
+            JavaType storedType = objectMapper.getTypeFactory()
+                    .constructParametricType(IdempotencyStore.StoredResult.class, OrderStatusResponse.class);
+
+            remote = new RedisTemplate<>();
+            remote.setConnectionFactory(redisConnectionFactory.getObject());
+            remote.setKeySerializer(StringRedisSerializer.UTF_8);
+            remote.setValueSerializer(new Jackson2JsonRedisSerializer<>(objectMapper, storedType));
+            remote.afterPropertiesSet();
+        }
+
+        return new IdempotencyStore<>("order-create", localMaxSize, ttl, inFlightTtl, waitTimeout, remote);
+    }
+}
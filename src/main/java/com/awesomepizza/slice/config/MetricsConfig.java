@@ -0,0 +1,18 @@
+package com.awesomepizza.slice.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Enables @Timed on the services; switched off with slice.metrics.timed.enabled=false to measure its overhead
+    @Bean
+    @ConditionalOnProperty(name = "slice.metrics.timed.enabled", havingValue = "true", matchIfMissing = true)
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
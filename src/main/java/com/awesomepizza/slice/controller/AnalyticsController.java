@@ -0,0 +1,22 @@
+package com.awesomepizza.slice.controller;
+
+import com.awesomepizza.slice.dto.KitchenStats;
+import com.awesomepizza.slice.service.KitchenAnalytics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Served from memory, so it is available with both the servlet and the reactive stack
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+    @Autowired
+    private KitchenAnalytics kitchenAnalytics;
+
+    @GetMapping("/kitchen")
+    public ResponseEntity<KitchenStats> getKitchenStats() {
+        return ResponseEntity.ok(kitchenAnalytics.getStats());
+    }
+}
@@ -0,0 +1,35 @@
+package com.awesomepizza.slice.controller;
+
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.dto.UpdatePizzaTypeRequest;
+import com.awesomepizza.slice.service.MenuCatalog;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Changes to the menu go through JPA, so they are made with the servlet stack; a reactive node picks them up at its next refresh
+@RestController
+@RequestMapping("/api/menu")
+@Profile("!reactive")
+public class MenuController {
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @GetMapping
+    public ResponseEntity<List<PizzaTypeDto>> getMenu() {
+        return ResponseEntity.ok(menuCatalog.getMenu());
+    }
+
+    // Adds the pizza type to the menu, or updates its availability and capacity
+    @PutMapping("/{name}")
+    public ResponseEntity<PizzaTypeDto> updatePizzaType(
+            @PathVariable String name,
+            @Valid @RequestBody UpdatePizzaTypeRequest request
+    ) {
+        return ResponseEntity.ok(menuCatalog.update(name, request));
+    }
+}
@@ -1,29 +1,85 @@
 package com.awesomepizza.slice.controller;
 
+import com.awesomepizza.slice.admission.ClientIdentity;
+import com.awesomepizza.slice.cache.IdempotencyStore;
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
 import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
 import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderPage;
 import com.awesomepizza.slice.dto.OrderStatusResponse;
 import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.service.OrderEventBroadcaster;
 import com.awesomepizza.slice.service.OrderService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
+@Profile("!reactive")
 public class OrderController {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private OrderEventBroadcaster orderEventBroadcaster;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClientIdentity clientIdentity;
+
+    // With an Idempotency-Key header, retries of the request return the order created by the first one.
+    // The keys are scoped by client, identified as by the admission control
     @PostMapping
-    public ResponseEntity<OrderStatusResponse> createOrder(@Valid @RequestBody CreateOrderRequest request) {
-        return new ResponseEntity<>(orderService.createOrder(request), HttpStatus.CREATED);
+    public ResponseEntity<OrderStatusResponse> createOrder(
+            @Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            HttpServletRequest httpRequest
+    ) {
+        if (idempotencyKey == null) {
+            return new ResponseEntity<>(orderService.createOrder(request), HttpStatus.CREATED);
+        }
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " should not be blank nor longer than " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        IdempotencyStore.Outcome<OrderStatusResponse> outcome = orderService.createOrder(request, clientIdentity.of(httpRequest), idempotencyKey);
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+                .body(outcome.value());
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkOrderResponse> createOrders(@Valid @RequestBody BulkOrderRequest request) {
+        return new ResponseEntity<>(orderService.createOrders(request), HttpStatus.CREATED);
     }
 
     @GetMapping("/{orderCode}/status")
@@ -37,6 +93,17 @@ public class OrderController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping(path = "/{orderCode}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOrderStatus(@PathVariable String orderCode) {
+        OrderStatusResponse response = orderService.getOrderStatus(orderCode);
+
+        if (response == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return ResponseEntity.ok(orderEventBroadcaster.subscribeToOrder(orderCode, response));
+    }
+
     //region consumer
 
     @PatchMapping("/{orderCode}/status")
@@ -58,15 +125,66 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getOrderQueue());
     }
 
+    @GetMapping("/queue/page")
+    public ResponseEntity<OrderPage> getOrderQueuePage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+        return ResponseEntity.ok(orderService.getOrderQueuePage(cursor, size));
+    }
+
+    // Writes the JSON array while the orders are read from the database, without holding the queue in memory
+    @GetMapping(path = "/queue/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamOrderQueueJson() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                orderService.streamOrderQueue(order -> {
+                    try {
+                        generator.writeObject(order);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping(path = "/queue/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderQueue() {
+        return orderEventBroadcaster.subscribeToQueue();
+    }
+
     @GetMapping("/next")
-    public ResponseEntity<OrderDto> getNextOrder() {
-        return ResponseEntity.ok(orderService.getNextOrder());
+    public ResponseEntity<OrderDto> getNextOrder(
+            @RequestParam(defaultValue = OrderService.DEFAULT_STATION) String station
+    ) {
+        return ResponseEntity.ok(orderService.getNextOrder(station));
     }
 
-    /*
-    TODO instead of using patch to update status of order, we can add another endpoint "/ready"
-    which will update the currently PREPARING order to READY
-    */
+    @GetMapping("/next/batch")
+    public ResponseEntity<OrderBatch> getNextBatch(
+            @RequestParam(defaultValue = OrderService.DEFAULT_STATION) String station
+    ) {
+        return ResponseEntity.ok(orderService.getNextBatch(station));
+    }
+
+    // Moves the orders currently PREPARING at the station, a single order or a whole batch, to READY
+    @PostMapping("/ready")
+    public ResponseEntity<List<OrderStatusResponse>> markStationReady(
+            @RequestParam(defaultValue = OrderService.DEFAULT_STATION) String station
+    ) {
+        List<OrderStatusResponse> responses = orderService.markStationReady(station);
+
+        if (responses.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return ResponseEntity.ok(responses);
+    }
 
     //endregion
 }
@@ -0,0 +1,39 @@
+package com.awesomepizza.slice.controller;
+
+import com.awesomepizza.slice.dto.OutboxEventDto;
+import com.awesomepizza.slice.service.OrderOutbox;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+// Reads the outbox through JPA, so it is not exposed on the event loop of the reactive stack
+@RestController
+@RequestMapping("/api/outbox")
+@Profile("!reactive")
+public class OutboxController {
+    @Autowired
+    private OrderOutbox orderOutbox;
+
+    @GetMapping("/events")
+    public ResponseEntity<List<OutboxEventDto>> getEvents(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        return ResponseEntity.ok(orderOutbox.getEvents(after, limit));
+    }
+
+    @GetMapping("/consumers")
+    public ResponseEntity<Map<String, Long>> getOffsets() {
+        return ResponseEntity.ok(orderOutbox.getOffsets());
+    }
+
+    @PutMapping("/consumers/{consumer}/offset")
+    public ResponseEntity<Void> setOffset(@PathVariable String consumer, @RequestParam long position) {
+        orderOutbox.setOffset(consumer, position);
+        return ResponseEntity.noContent().build();
+    }
+}
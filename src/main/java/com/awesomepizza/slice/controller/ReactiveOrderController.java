@@ -0,0 +1,133 @@
+package com.awesomepizza.slice.controller;
+
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderPage;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.service.OrderService;
+import com.awesomepizza.slice.service.ReactiveOrderEventStream;
+import com.awesomepizza.slice.service.ReactiveOrderService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Same endpoints as {@link OrderController}, served by WebFlux over R2DBC when the reactive profile is active.
+ */
+@RestController
+@RequestMapping("/api/orders")
+@Profile("reactive")
+public class ReactiveOrderController {
+    @Autowired
+    private ReactiveOrderService orderService;
+
+    @Autowired
+    private ReactiveOrderEventStream orderEventStream;
+
+    @PostMapping
+    public Mono<ResponseEntity<OrderStatusResponse>> createOrder(@Valid @RequestBody CreateOrderRequest request) {
+        return orderService.createOrder(request)
+                .map(response -> new ResponseEntity<>(response, HttpStatus.CREATED));
+    }
+
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BulkOrderResponse>> createOrders(@Valid @RequestBody BulkOrderRequest request) {
+        return orderService.createOrders(request)
+                .map(response -> new ResponseEntity<>(response, HttpStatus.CREATED));
+    }
+
+    @GetMapping("/{orderCode}/status")
+    public Mono<ResponseEntity<OrderStatusResponse>> getOrderStatus(@PathVariable String orderCode) {
+        return orderService.getOrderStatus(orderCode)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping(path = "/{orderCode}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<Object>>>> streamOrderStatus(@PathVariable String orderCode) {
+        return orderService.getOrderStatus(orderCode)
+                .map(response -> ResponseEntity.ok(orderEventStream.subscribeToOrder(orderCode, response)))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    //region consumer
+
+    @PatchMapping("/{orderCode}/status")
+    public Mono<ResponseEntity<OrderStatusResponse>> updateOrderStatus(
+            @PathVariable String orderCode,
+            @RequestParam OrderStatus status
+    ) {
+        return orderService.updateOrderStatus(orderCode, status)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("/queue")
+    public ResponseEntity<List<OrderDto>> getOrderQueue() {
+        return ResponseEntity.ok(orderService.getOrderQueue());
+    }
+
+    @GetMapping("/queue/page")
+    public Mono<ResponseEntity<OrderPage>> getOrderQueuePage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+        return orderService.getOrderQueuePage(cursor, size)
+                .map(ResponseEntity::ok);
+    }
+
+    // The JSON array is encoded element by element while the rows are read, without holding the queue in memory
+    @GetMapping(path = "/queue/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<OrderDto> streamOrderQueueJson() {
+        return orderService.streamOrderQueue();
+    }
+
+    @GetMapping(path = "/queue/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamOrderQueue() {
+        return orderEventStream.subscribeToQueue();
+    }
+
+    @GetMapping("/next")
+    public Mono<ResponseEntity<OrderDto>> getNextOrder(
+            @RequestParam(defaultValue = OrderService.DEFAULT_STATION) String station
+    ) {
+        return orderService.getNextOrder(station)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.ok().build());
+    }
+
+    @GetMapping("/next/batch")
+    public Mono<ResponseEntity<OrderBatch>> getNextBatch(
+            @RequestParam(defaultValue = OrderService.DEFAULT_STATION) String station
+    ) {
+        return orderService.getNextBatch(station)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.ok().build());
+    }
+
+    // Moves the orders currently PREPARING at the station, a single order or a whole batch, to READY
+    @PostMapping("/ready")
+    public Mono<ResponseEntity<List<OrderStatusResponse>>> markStationReady(
+            @RequestParam(defaultValue = OrderService.DEFAULT_STATION) String station
+    ) {
+        return orderService.markStationReady(station)
+                .map(responses -> responses.isEmpty()
+                        ? new ResponseEntity<List<OrderStatusResponse>>(HttpStatus.NOT_FOUND)
+                        : ResponseEntity.ok(responses));
+    }
+
+    //endregion
+}
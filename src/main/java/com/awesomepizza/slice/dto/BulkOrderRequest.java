@@ -0,0 +1,23 @@
+package com.awesomepizza.slice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.List;
+
+@Data
+@Validated
+public class BulkOrderRequest {
+    public static final int MAX_ITEMS = 500;
+
+    // Optional reference of the submitter, e.g. the order id of a delivery aggregator, echoed in the response
+    @Size(max = 100, message = "reference should be at most 100 characters")
+    private String reference;
+
+    @NotEmpty(message = "items should not be empty")
+    @Size(max = MAX_ITEMS, message = "items should be at most " + MAX_ITEMS)
+    private List<@Valid CreateOrderRequest> items;
+}
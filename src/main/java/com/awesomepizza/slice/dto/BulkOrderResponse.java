@@ -0,0 +1,10 @@
+package com.awesomepizza.slice.dto;
+
+import java.util.List;
+
+// The created orders, in the same order as the items of the request
+public record BulkOrderResponse(
+        String reference,
+        List<OrderStatusResponse> orders
+) {
+}
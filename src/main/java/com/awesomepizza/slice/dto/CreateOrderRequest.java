@@ -1,11 +1,14 @@
 package com.awesomepizza.slice.dto;
 
+import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.LocalDateTime;
+
 @Data
 @Validated
 public class CreateOrderRequest {
@@ -15,4 +18,11 @@ public class CreateOrderRequest {
     @Positive(message = "quantity should be positive")
     @NotNull(message = "quantity should not be null")
     private int quantity;
+
+    // Moved ahead of the normal orders received in the last slice.dispatch.express-boost
+    private boolean express;
+
+    // Set for a pre-order: it is dispatched to the kitchen slice.dispatch.pickup-lead-time before this time
+    @Future(message = "pickupTime should be in the future")
+    private LocalDateTime pickupTime;
 }
@@ -0,0 +1,22 @@
+package com.awesomepizza.slice.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kitchen throughput over the rolling windows kept by KitchenAnalytics.
+ * Durations are in milliseconds; queueWait goes from order creation to claim, prepTime from claim to READY.
+ */
+public record KitchenStats(
+        long windowMinutes,
+        DurationStats queueWait,
+        Map<String, DurationStats> prepTimeByPizzaType,
+        List<HourlyThroughput> throughputPerHour
+) {
+    public record DurationStats(long count, long p50Millis, long p95Millis, long maxMillis) {
+    }
+
+    public record HourlyThroughput(LocalDateTime hour, long created, long completed) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.awesomepizza.slice.dto;
+
+import java.util.List;
+
+/**
+ * Orders a station prepares together, e.g. the pizzas of the same type baked in one oven load.
+ * pizzaType is the one of the first order and quantity the total of the pizzas of the batch.
+ */
+public record OrderBatch(
+        String station,
+        String pizzaType,
+        int quantity,
+        List<OrderDto> orders
+) {
+}
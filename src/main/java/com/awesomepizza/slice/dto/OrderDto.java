@@ -1,15 +1,28 @@
 package com.awesomepizza.slice.dto;
 
 import com.awesomepizza.slice.enums.OrderStatus;
-import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.time.LocalDateTime;
 
-@Data
-public class OrderDto {
-    private String orderCode;
-    private String pizzaType;
-    private int quantity;
-    private OrderStatus status;
-    private LocalDateTime insertTimestamp;
+/**
+ * Queued orders are served in dispatchAt order: pickupTime is omitted for the orders to prepare as soon as possible.
+ */
+public record OrderDto(
+        String orderCode,
+        String pizzaType,
+        int quantity,
+        OrderStatus status,
+        String assignedStation,
+        LocalDateTime insertTimestamp,
+        boolean express,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        LocalDateTime pickupTime,
+        LocalDateTime dispatchAt
+) {
+    // A normal order, due as soon as it is received
+    public OrderDto(String orderCode, String pizzaType, int quantity, OrderStatus status, String assignedStation,
+                    LocalDateTime insertTimestamp) {
+        this(orderCode, pizzaType, quantity, status, assignedStation, insertTimestamp, false, null, insertTimestamp);
+    }
 }
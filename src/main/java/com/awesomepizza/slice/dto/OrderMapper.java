@@ -0,0 +1,65 @@
+package com.awesomepizza.slice.dto;
+
+import com.awesomepizza.slice.entity.ArchivedPizzaOrder;
+import com.awesomepizza.slice.entity.OrderOutboxEvent;
+import com.awesomepizza.slice.entity.PizzaOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversions from the order entity to the DTOs, written out field by field:
+ * they run for every order returned by the API, so they avoid any reflection.
+ */
+public final class OrderMapper {
+
+    private OrderMapper() {
+    }
+
+    public static OrderDto toOrderDto(PizzaOrder order) {
+        return new OrderDto(
+                order.getOrderCode(),
+                order.getPizzaType(),
+                order.getQuantity(),
+                order.getStatus(),
+                order.getAssignedStation(),
+                order.getInsertTimestamp(),
+                order.isExpress(),
+                order.getPickupTime(),
+                order.getDispatchAt()
+        );
+    }
+
+    public static OrderBatch toOrderBatch(String station, List<PizzaOrder> orders) {
+        List<OrderDto> orderDtos = new ArrayList<>(orders.size());
+        int quantity = 0;
+
+        for (PizzaOrder order : orders) {
+            orderDtos.add(toOrderDto(order));
+            quantity += order.getQuantity();
+        }
+
+        return new OrderBatch(station, orders.get(0).getPizzaType(), quantity, orderDtos);
+    }
+
+    public static OrderStatusResponse toOrderStatusResponse(PizzaOrder order) {
+        return new OrderStatusResponse(order.getOrderCode(), order.getStatus());
+    }
+
+    public static OrderStatusResponse toOrderStatusResponse(ArchivedPizzaOrder order) {
+        return new OrderStatusResponse(order.getOrderCode(), order.getStatus());
+    }
+
+    public static OutboxEventDto toOutboxEventDto(OrderOutboxEvent event) {
+        return new OutboxEventDto(
+                event.getLogPosition(),
+                event.getOrderCode(),
+                event.getPizzaType(),
+                event.getQuantity(),
+                event.getPreviousStatus(),
+                event.getStatus(),
+                event.getAssignedStation(),
+                event.getOccurredAt()
+        );
+    }
+}
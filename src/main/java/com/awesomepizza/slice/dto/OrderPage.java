@@ -0,0 +1,10 @@
+package com.awesomepizza.slice.dto;
+
+import java.util.List;
+
+// A page of the queue; nextCursor is null on the last page
+public record OrderPage(
+        List<OrderDto> orders,
+        String nextCursor
+) {
+}
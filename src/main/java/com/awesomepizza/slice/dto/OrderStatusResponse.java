@@ -1,10 +1,25 @@
 package com.awesomepizza.slice.dto;
 
 import com.awesomepizza.slice.enums.OrderStatus;
-import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
-@Data
-public class OrderStatusResponse {
-    private String orderCode;
-    private OrderStatus status;
+import java.time.LocalDateTime;
+
+/**
+ * estimatedReadyTime is attached when the status is served and is never cached:
+ * it is omitted for the orders that are READY or whose estimate is not known.
+ */
+public record OrderStatusResponse(
+        String orderCode,
+        OrderStatus status,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        LocalDateTime estimatedReadyTime
+) {
+    public OrderStatusResponse(String orderCode, OrderStatus status) {
+        this(orderCode, status, null);
+    }
+
+    public OrderStatusResponse withEstimatedReadyTime(LocalDateTime estimatedReadyTime) {
+        return new OrderStatusResponse(orderCode, status, estimatedReadyTime);
+    }
 }
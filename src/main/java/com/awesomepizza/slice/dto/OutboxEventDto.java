@@ -0,0 +1,18 @@
+package com.awesomepizza.slice.dto;
+
+import com.awesomepizza.slice.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+
+// previousStatus is null for the creation of the order
+public record OutboxEventDto(
+        long position,
+        String orderCode,
+        String pizzaType,
+        int quantity,
+        OrderStatus previousStatus,
+        OrderStatus status,
+        String assignedStation,
+        LocalDateTime occurredAt
+) {
+}
@@ -0,0 +1,14 @@
+package com.awesomepizza.slice.dto;
+
+import com.awesomepizza.slice.entity.PizzaType;
+
+public record PizzaTypeDto(
+        short id,
+        String name,
+        boolean available,
+        Integer maxPreparing
+) {
+    public static PizzaTypeDto of(PizzaType pizzaType) {
+        return new PizzaTypeDto(pizzaType.getId(), pizzaType.getName(), pizzaType.isAvailable(), pizzaType.getMaxPreparing());
+    }
+}
@@ -0,0 +1,34 @@
+package com.awesomepizza.slice.dto;
+
+import com.awesomepizza.slice.entity.PizzaOrder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of an order in the queue, handed to the clients as an opaque cursor to read the following page.
+ */
+public record QueueCursor(LocalDateTime dispatchAt, Long id) {
+    private static final String SEPARATOR = ",";
+
+    public static QueueCursor of(PizzaOrder order) {
+        return new QueueCursor(order.getDispatchAt(), order.getId());
+    }
+
+    public static QueueCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR);
+            return new QueueCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid queue cursor");
+        }
+    }
+
+    public String encode() {
+        String cursor = dispatchAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+}
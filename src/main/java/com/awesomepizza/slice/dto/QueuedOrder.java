@@ -0,0 +1,16 @@
+package com.awesomepizza.slice.dto;
+
+import com.awesomepizza.slice.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * A queued order with its id, which breaks the ties of the queue order in memory as it does in the claim queries.
+ */
+public record QueuedOrder(Long id, OrderDto order) {
+    // Constructor expression of the JPQL projection, which cannot nest the one of OrderDto
+    public QueuedOrder(Long id, String orderCode, String pizzaType, int quantity, OrderStatus status, String assignedStation,
+                       LocalDateTime insertTimestamp, boolean express, LocalDateTime pickupTime, LocalDateTime dispatchAt) {
+        this(id, new OrderDto(orderCode, pizzaType, quantity, status, assignedStation, insertTimestamp, express, pickupTime, dispatchAt));
+    }
+}
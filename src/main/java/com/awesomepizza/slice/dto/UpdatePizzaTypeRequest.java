@@ -0,0 +1,15 @@
+package com.awesomepizza.slice.dto;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+public class UpdatePizzaTypeRequest {
+    private boolean available = true;
+
+    // Null for no limit
+    @Positive(message = "maxPreparing should be positive")
+    private Integer maxPreparing;
+}
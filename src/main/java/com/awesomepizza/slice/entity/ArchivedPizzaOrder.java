@@ -0,0 +1,43 @@
+package com.awesomepizza.slice.entity;
+
+import com.awesomepizza.slice.enums.OrderStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Completed order moved out of pizza_orders by the archiver, so the live table only holds the orders in progress.
+ * The id is the one the order had in pizza_orders.
+ */
+@Data
+@Entity
+@Table(name = "pizza_orders_archive")
+public class ArchivedPizzaOrder {
+    @Id
+    private Long id;
+
+    @Column(unique = true)
+    private String orderCode;
+
+    @Column(name = "pizza_type_id")
+    @Convert(converter = PizzaTypeConverter.class)
+    private String pizzaType;
+
+    private int quantity;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    private String assignedStation;
+
+    private LocalDateTime insertTimestamp;
+    private LocalDateTime updateTimestamp;
+    private LocalDateTime preparingTimestamp;
+    private LocalDateTime archiveTimestamp;
+
+    @Column(columnDefinition = "boolean default false not null")
+    private boolean express;
+
+    private LocalDateTime pickupTime;
+}
@@ -0,0 +1,26 @@
+package com.awesomepizza.slice.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kitchen station that claimed orders, registered by its first claim. The claims of a station lock its row,
+ * so two concurrent calls from the same station cannot each claim an order.
+ */
+@Data
+@Entity
+@Table(name = "kitchen_stations")
+@NoArgsConstructor
+@AllArgsConstructor
+public class KitchenStation {
+    @Id
+    private String name;
+
+    private LocalDateTime insertTimestamp;
+}
@@ -0,0 +1,77 @@
+package com.awesomepizza.slice.entity;
+
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Append-only record of an order status change, written in the same transaction as the change itself.
+ * logPosition is the position of the event in the log read by the consumers: it is assigned by the outbox relay
+ * once the transaction has committed, so the log has no gaps. Ids come from blocks allocated per node and do not follow
+ * commit order, so the events of an order are sequenced by orderVersion, the version of the order after the change.
+ */
+@Data
+@Entity
+@Table(name = "order_outbox", indexes = {
+        // Supports the reading of the log by position and the selection of the events still to sequence
+        @Index(name = "idx_order_outbox_log_position", columnList = "logPosition", unique = true),
+        // Supports the purge of the log by age
+        @Index(name = "idx_order_outbox_insert_ts", columnList = "insertTimestamp")
+})
+public class OrderOutboxEvent {
+    // Ids handed out by each value of the sequence, also used by the R2DBC repository of the reactive profile
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_seq")
+    @SequenceGenerator(name = "order_outbox_seq", sequenceName = "order_outbox_seq", allocationSize = ID_ALLOCATION_SIZE)
+    private Long id;
+
+    private Long logPosition;
+
+    private Long orderId;
+
+    private Long orderVersion;
+
+    private String orderCode;
+
+    private String pizzaType;
+
+    private int quantity;
+
+    // Null for the creation of the order. Varchar like PizzaOrder.status, as the reactive mode writes the outbox too
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private OrderStatus previousStatus;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private OrderStatus status;
+
+    private String assignedStation;
+
+    // When the change happened, i.e. the update timestamp of the order
+    private LocalDateTime occurredAt;
+
+    private LocalDateTime insertTimestamp;
+
+    public static OrderOutboxEvent of(OrderStatusChangedEvent event, LocalDateTime insertTimestamp) {
+        OrderOutboxEvent outboxEvent = new OrderOutboxEvent();
+        outboxEvent.setOrderId(event.id());
+        outboxEvent.setOrderVersion(event.version());
+        outboxEvent.setOrderCode(event.orderCode());
+        outboxEvent.setPizzaType(event.pizzaType());
+        outboxEvent.setQuantity(event.quantity());
+        outboxEvent.setPreviousStatus(event.previousStatus());
+        outboxEvent.setStatus(event.status());
+        outboxEvent.setAssignedStation(event.assignedStation());
+        outboxEvent.setOccurredAt(event.updateTimestamp());
+        outboxEvent.setInsertTimestamp(insertTimestamp);
+        return outboxEvent;
+    }
+}
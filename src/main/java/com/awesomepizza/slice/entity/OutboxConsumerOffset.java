@@ -0,0 +1,28 @@
+package com.awesomepizza.slice.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position of the last outbox event delivered to a consumer. The relay also keeps here, under its own name,
+ * the last position it assigned, and locks the row of a consumer while delivering to it.
+ */
+@Data
+@Entity
+@Table(name = "order_outbox_offsets")
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxConsumerOffset {
+    @Id
+    private String consumer;
+
+    private long logPosition;
+
+    private LocalDateTime updateTimestamp;
+}
@@ -6,30 +6,70 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "pizza_orders")
+@Table(name = "pizza_orders", indexes = {
+        // Supports the claim of the first due RECEIVED order and the queue listing, including its keyset pagination
+        @Index(name = "idx_pizza_orders_status_dispatch_at", columnList = "status, dispatchAt, id"),
+        // Supports the lookup of the order a station is currently preparing
+        @Index(name = "idx_pizza_orders_status_station", columnList = "status, assignedStation"),
+        // Supports the selection of the completed orders to archive
+        @Index(name = "idx_pizza_orders_status_update_ts", columnList = "status, updateTimestamp")
+})
 public class PizzaOrder {
+    // Ids handed out by each value of the sequence, also used by the R2DBC repository of the reactive profile
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Sequence with a pooled optimizer: ids are allocated in memory 50 at a time, so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pizza_orders_seq")
+    @SequenceGenerator(name = "pizza_orders_seq", sequenceName = "pizza_orders_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(unique = true)
     private String orderCode;
 
+    // Name of a type of the menu, stored as the id of its menu entry
     @NotBlank(message = "pizzaType should not be empty, null or whitespace")
+    @Column(name = "pizza_type_id")
+    @Convert(converter = PizzaTypeConverter.class)
     private String pizzaType;
 
     @Positive(message = "quantity should be positive")
     @NotNull(message = "quantity should not be null")
     private int quantity;
 
+    // A plain varchar on every database: H2 would otherwise create an ENUM column, which R2DBC cannot bind to
     @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
     private OrderStatus status;
 
+    // Kitchen station that claimed the order, set when the order moves to PREPARING
+    private String assignedStation;
+
     private LocalDateTime insertTimestamp;
     private LocalDateTime updateTimestamp;
+
+    @Column(columnDefinition = "boolean default false not null")
+    private boolean express;
+
+    // Requested pickup of a pre-order, null for an order to prepare as soon as possible
+    private LocalDateTime pickupTime;
+
+    // When the order may be claimed by the kitchen: the queue is served in this order, see DispatchPolicy
+    private LocalDateTime dispatchAt;
+
+    // When the order last moved to PREPARING, cleared if it goes back to the queue
+    private LocalDateTime preparingTimestamp;
+
+    // Incremented by every change, so concurrent writes of the same order cannot overwrite each other.
+    // The column default fills it in for the rows created before it existed
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
 }
@@ -0,0 +1,30 @@
+package com.awesomepizza.slice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entry of the menu. Orders reference it by its id, so a type is never deleted: it is made unavailable instead.
+ */
+@Data
+@Entity
+@Table(name = "pizza_types")
+public class PizzaType {
+    // A smallint, so that every order references its type with 2 bytes
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Short id;
+
+    @Column(unique = true, nullable = false)
+    private String name;
+
+    // Only available types can be ordered
+    private boolean available;
+
+    // Orders of this type that may be PREPARING at the same time, e.g. the slots of its oven; null for no limit
+    private Integer maxPreparing;
+
+    private LocalDateTime updateTimestamp;
+}
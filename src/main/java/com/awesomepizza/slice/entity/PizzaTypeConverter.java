@@ -0,0 +1,30 @@
+package com.awesomepizza.slice.entity;
+
+import com.awesomepizza.slice.service.MenuCatalog;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Stores the pizza type of an order as the id of its menu entry, and reads it back as its name, through the in-memory
+ * {@link MenuCatalog}. Created by Hibernate through the Spring bean container; the catalog is looked up on first use,
+ * as it needs the entity manager factory that is being built when the converter is created.
+ */
+@Converter
+public class PizzaTypeConverter implements AttributeConverter<String, Short> {
+    private final ObjectProvider<MenuCatalog> menuCatalog;
+
+    public PizzaTypeConverter(ObjectProvider<MenuCatalog> menuCatalog) {
+        this.menuCatalog = menuCatalog;
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(String pizzaType) {
+        return pizzaType == null ? null : menuCatalog.getObject().idOf(pizzaType);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short id) {
+        return id == null ? null : menuCatalog.getObject().nameOf(id);
+    }
+}
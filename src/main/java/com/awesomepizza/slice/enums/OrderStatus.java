@@ -1,7 +1,29 @@
 package com.awesomepizza.slice.enums;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum OrderStatus {
     RECEIVED,       // Ordine appena ricevuto
     PREPARING,      // Pizza in fase di preparazione
     READY,          // Pizza completata
+    ;
+
+    // Transitions of a status update: a claimed order can be sent back to the queue, a READY order is final.
+    // An order only enters PREPARING when a station claims it, which assigns the station and applies the caps of the menu
+    private static final Map<OrderStatus, Set<OrderStatus>> PREVIOUS_STATUSES = new EnumMap<>(OrderStatus.class);
+
+    static {
+        PREVIOUS_STATUSES.put(RECEIVED, Collections.unmodifiableSet(EnumSet.of(PREPARING)));
+        PREVIOUS_STATUSES.put(PREPARING, Collections.unmodifiableSet(EnumSet.noneOf(OrderStatus.class)));
+        PREVIOUS_STATUSES.put(READY, Collections.unmodifiableSet(EnumSet.of(PREPARING)));
+    }
+
+    // Statuses an order can be in to move to this one with a status update; empty if no update can set it
+    public Set<OrderStatus> previousStatuses() {
+        return PREVIOUS_STATUSES.get(this);
+    }
 }
@@ -0,0 +1,62 @@
+package com.awesomepizza.slice.event;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by the order service every time an order is created or changes status.
+ * It is an immutable snapshot of the order, so listeners can safely use it after the transaction has committed.
+ * previousStatus is null for newly created orders; version is the version of the order after the change, so the
+ * events of an order can be put back in the order of its changes.
+ */
+public record OrderStatusChangedEvent(
+        Long id,
+        String orderCode,
+        String pizzaType,
+        int quantity,
+        OrderStatus previousStatus,
+        OrderStatus status,
+        String assignedStation,
+        LocalDateTime insertTimestamp,
+        LocalDateTime updateTimestamp,
+        LocalDateTime preparingTimestamp,
+        boolean express,
+        LocalDateTime pickupTime,
+        LocalDateTime dispatchAt,
+        long version
+) {
+    public static OrderStatusChangedEvent of(PizzaOrder order, OrderStatus previousStatus) {
+        return new OrderStatusChangedEvent(
+                order.getId(),
+                order.getOrderCode(),
+                order.getPizzaType(),
+                order.getQuantity(),
+                previousStatus,
+                order.getStatus(),
+                order.getAssignedStation(),
+                order.getInsertTimestamp(),
+                order.getUpdateTimestamp(),
+                order.getPreparingTimestamp(),
+                order.isExpress(),
+                order.getPickupTime(),
+                order.getDispatchAt(),
+                order.getVersion()
+        );
+    }
+
+    public boolean isCreation() {
+        return previousStatus == null;
+    }
+
+    public OrderDto toOrderDto() {
+        return new OrderDto(orderCode, pizzaType, quantity, status, assignedStation, insertTimestamp, express, pickupTime, dispatchAt);
+    }
+
+    public OrderStatusResponse toOrderStatusResponse() {
+        return new OrderStatusResponse(orderCode, status);
+    }
+}
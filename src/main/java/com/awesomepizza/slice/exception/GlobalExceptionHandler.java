@@ -1,31 +1,111 @@
 package com.awesomepizza.slice.exception;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    // Field path of an item of a bulk request, e.g. items[3].quantity
+    private static final Pattern ITEM_FIELD = Pattern.compile("^items\\[(\\d+)]");
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
-    public ResponseEntity<Map<String, List<String>>> handleValidationErrors(MethodArgumentNotValidException ex) {
-        List<String> errors = ex.getBindingResult().getFieldErrors()
+    public ResponseEntity<Map<String, Object>> handleValidationErrors(MethodArgumentNotValidException ex) {
+        return getValidationErrorsResponse(ex.getBindingResult());
+    }
+
+    // Validation errors of the request bodies with the reactive profile, reported in the same format
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Map<String, Object>> handleValidationErrors(WebExchangeBindException ex) {
+        return getValidationErrorsResponse(ex.getBindingResult());
+    }
+
+    // A constraint of the database rejected the write: the transaction was rolled back, so nothing was created
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Map<String, Object>> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        List<String> errors = List.of("The request conflicts with existing data, no order was created");
+        return new ResponseEntity<>(getErrorsMap(errors), new HttpHeaders(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(OrderStatusConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleOrderStatusConflict(OrderStatusConflictException ex) {
+        Map<String, Object> errorResponse = getErrorsMap(List.of(ex.getMessage()));
+        errorResponse.put("currentStatus", ex.getCurrentStatus());
+        return new ResponseEntity<>(errorResponse, new HttpHeaders(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyKeyMismatch(IdempotencyKeyMismatchException ex) {
+        return new ResponseEntity<>(getErrorsMap(List.of(ex.getMessage())), new HttpHeaders(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyKeyInProgress(IdempotencyKeyInProgressException ex) {
+        return new ResponseEntity<>(getErrorsMap(List.of(ex.getMessage())), new HttpHeaders(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(UnknownPizzaTypeException.class)
+    public ResponseEntity<Map<String, Object>> handleUnknownPizzaType(UnknownPizzaTypeException ex) {
+        Map<String, Object> errorResponse = getErrorsMap(List.of(ex.getMessage()));
+        if (!ex.getItemErrors().isEmpty()) {
+            errorResponse.put("itemErrors", ex.getItemErrors());
+        }
+        return new ResponseEntity<>(errorResponse, new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Optimistic lock failures and lock timeouts: the order was changed concurrently, the client can retry
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleConcurrencyFailure(ConcurrencyFailureException ex) {
+        List<String> errors = List.of("The order was modified concurrently, retry the request");
+        return new ResponseEntity<>(getErrorsMap(errors), new HttpHeaders(), HttpStatus.CONFLICT);
+    }
+
+    private ResponseEntity<Map<String, Object>> getValidationErrorsResponse(BindingResult bindingResult) {
+        List<String> errors = bindingResult.getFieldErrors()
                 .stream().map(FieldError::getDefaultMessage).collect(Collectors.toList());
-        return new ResponseEntity<>(getErrorsMap(errors), new HttpHeaders(), HttpStatus.BAD_REQUEST);
+
+        Map<String, Object> errorResponse = getErrorsMap(errors);
+
+        // For bulk requests, also report which items are invalid, by their index in the request
+        Map<Integer, List<String>> itemErrors = getItemErrors(bindingResult.getFieldErrors());
+        if (!itemErrors.isEmpty()) {
+            errorResponse.put("itemErrors", itemErrors);
+        }
+
+        return new ResponseEntity<>(errorResponse, new HttpHeaders(), HttpStatus.BAD_REQUEST);
     }
 
-    private Map<String, List<String>> getErrorsMap(List<String> errors) {
-        Map<String, List<String>> errorResponse = new HashMap<>();
+    private Map<String, Object> getErrorsMap(List<String> errors) {
+        Map<String, Object> errorResponse = new HashMap<>();
         errorResponse.put("errors", errors);
         return errorResponse;
     }
+
+    private Map<Integer, List<String>> getItemErrors(List<FieldError> fieldErrors) {
+        Map<Integer, List<String>> itemErrors = new TreeMap<>();
+
+        for (FieldError fieldError : fieldErrors) {
+            Matcher matcher = ITEM_FIELD.matcher(fieldError.getField());
+            if (matcher.find()) {
+                itemErrors.computeIfAbsent(Integer.parseInt(matcher.group(1)), index -> new ArrayList<>())
+                        .add(fieldError.getDefaultMessage());
+            }
+        }
+
+        return itemErrors;
+    }
 }
@@ -0,0 +1,14 @@
+package com.awesomepizza.slice.exception;
+
+import lombok.Getter;
+
+// The first request with the idempotency key has not completed yet, the client can retry
+@Getter
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    private final String idempotencyKey;
+
+    public IdempotencyKeyInProgressException(String idempotencyKey) {
+        super("A request with idempotency key " + idempotencyKey + " is still in progress, retry the request");
+        this.idempotencyKey = idempotencyKey;
+    }
+}
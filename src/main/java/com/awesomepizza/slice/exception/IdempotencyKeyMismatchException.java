@@ -0,0 +1,14 @@
+package com.awesomepizza.slice.exception;
+
+import lombok.Getter;
+
+// The idempotency key was already used for a request with a different body
+@Getter
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    private final String idempotencyKey;
+
+    public IdempotencyKeyMismatchException(String idempotencyKey) {
+        super("Idempotency key " + idempotencyKey + " was already used for a different request");
+        this.idempotencyKey = idempotencyKey;
+    }
+}
@@ -0,0 +1,19 @@
+package com.awesomepizza.slice.exception;
+
+import com.awesomepizza.slice.enums.OrderStatus;
+import lombok.Getter;
+
+// The order is not in a status from which the requested one can be reached, e.g. it is already READY
+@Getter
+public class OrderStatusConflictException extends RuntimeException {
+    private final String orderCode;
+    private final OrderStatus currentStatus;
+    private final OrderStatus requestedStatus;
+
+    public OrderStatusConflictException(String orderCode, OrderStatus currentStatus, OrderStatus requestedStatus) {
+        super("Order " + orderCode + " cannot move from " + currentStatus + " to " + requestedStatus);
+        this.orderCode = orderCode;
+        this.currentStatus = currentStatus;
+        this.requestedStatus = requestedStatus;
+    }
+}
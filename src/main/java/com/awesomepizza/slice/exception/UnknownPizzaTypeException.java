@@ -0,0 +1,26 @@
+package com.awesomepizza.slice.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+// Some pizza types of the request are not on the menu, or no longer available
+@Getter
+public class UnknownPizzaTypeException extends RuntimeException {
+    // Errors of the items of a bulk request, by index of the item; empty for a single order
+    private final Map<Integer, List<String>> itemErrors;
+
+    public UnknownPizzaTypeException(String pizzaType) {
+        this(message(pizzaType), Map.of());
+    }
+
+    public UnknownPizzaTypeException(String message, Map<Integer, List<String>> itemErrors) {
+        super(message);
+        this.itemErrors = itemErrors;
+    }
+
+    public static String message(String pizzaType) {
+        return "pizzaType " + pizzaType + " is not on the menu";
+    }
+}
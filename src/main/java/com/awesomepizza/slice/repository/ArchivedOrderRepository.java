@@ -0,0 +1,22 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.entity.ArchivedPizzaOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedPizzaOrder, Long> {
+    Optional<ArchivedPizzaOrder> findByOrderCode(String orderCode);
+
+    // Copies the given orders into the archive in a single statement, without loading them
+    @Modifying
+    @Query("insert into ArchivedPizzaOrder (id, orderCode, pizzaType, quantity, status, assignedStation, insertTimestamp, updateTimestamp, preparingTimestamp, archiveTimestamp, express, pickupTime) " +
+            "select o.id, o.orderCode, o.pizzaType, o.quantity, o.status, o.assignedStation, o.insertTimestamp, o.updateTimestamp, o.preparingTimestamp, :archiveTimestamp, o.express, o.pickupTime " +
+            "from PizzaOrder o where o.id in :ids")
+    int copyFromOrders(@Param("ids") Collection<Long> ids, @Param("archiveTimestamp") LocalDateTime archiveTimestamp);
+}
@@ -0,0 +1,26 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.entity.KitchenStation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface KitchenStationRepository extends JpaRepository<KitchenStation, String> {
+    // Waits for the lock of the station: the claims of a station are serialized by it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from KitchenStation s where s.name = :name")
+    Optional<KitchenStation> lockByName(@Param("name") String name);
+
+    // Inserts the station unless it exists, returning the inserted rows. An insert racing with another one of the same
+    // station fails on the key once the other commits
+    @Modifying
+    @Query(value = "insert into kitchen_stations (name, insert_timestamp) select :name, :now " +
+            "where not exists (select 1 from kitchen_stations where name = :name)", nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,26 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.entity.OrderOutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+    // Committed events not yet in the log, in id order
+    List<OrderOutboxEvent> findByLogPositionIsNullOrderByIdAsc(Limit limit);
+
+    List<OrderOutboxEvent> findByLogPositionIsNullAndOrderIdIn(Collection<Long> orderIds);
+
+    List<OrderOutboxEvent> findByLogPositionGreaterThanOrderByLogPositionAsc(long logPosition, Limit limit);
+
+    // Deletes the events older than a point in time that every consumer has already received
+    @Modifying
+    @Query("delete from OrderOutboxEvent e where e.logPosition <= :logPosition and e.insertTimestamp < :insertTimestamp")
+    int deleteDeliveredBefore(@Param("logPosition") long logPosition, @Param("insertTimestamp") LocalDateTime insertTimestamp);
+}
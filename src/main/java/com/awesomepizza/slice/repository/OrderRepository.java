@@ -1,17 +1,139 @@
 package com.awesomepizza.slice.repository;
 
 
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.QueuedOrder;
 import com.awesomepizza.slice.entity.PizzaOrder;
 import com.awesomepizza.slice.enums.OrderStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<PizzaOrder, Long> {
     Optional<PizzaOrder> findByOrderCode(String orderCode);
 
     List<PizzaOrder> findByStatusOrderByInsertTimestampAsc(OrderStatus status);
 
-    Optional<PizzaOrder> findByStatus(OrderStatus status);
+    // Reads the DTOs straight from the selected columns, without hydrating and tracking the entities
+    @Query("select new com.awesomepizza.slice.dto.QueuedOrder(o.id, o.orderCode, o.pizzaType, o.quantity, o.status, o.assignedStation, " +
+            "o.insertTimestamp, o.express, o.pickupTime, o.dispatchAt) " +
+            "from PizzaOrder o where o.status = :status order by o.dispatchAt, o.id")
+    List<QueuedOrder> findQueuedOrdersByStatus(@Param("status") OrderStatus status);
+
+    // Keyset pagination on (dispatchAt, id): each page seeks past the last row of the previous one,
+    // so reading a page costs the same at any depth of the queue. Read-only entities are not snapshotted for dirty checking
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    List<PizzaOrder> findByStatusOrderByDispatchAtAscIdAsc(OrderStatus status, Limit limit);
+
+    @Query("select o from PizzaOrder o where o.status = :status " +
+            "and (o.dispatchAt > :dispatchAt or (o.dispatchAt = :dispatchAt and o.id > :id)) " +
+            "order by o.dispatchAt, o.id")
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    List<PizzaOrder> findByStatusAfter(
+            @Param("status") OrderStatus status,
+            @Param("dispatchAt") LocalDateTime dispatchAt,
+            @Param("id") Long id,
+            Limit limit
+    );
+
+    // Streams the DTOs with a JDBC fetch size: rows are read from the cursor batch by batch and no entity is kept
+    // in the persistence context, so memory stays constant whatever the depth of the queue. Needs an open transaction
+    @Query("select new com.awesomepizza.slice.dto.OrderDto(o.orderCode, o.pizzaType, o.quantity, o.status, o.assignedStation, " +
+            "o.insertTimestamp, o.express, o.pickupTime, o.dispatchAt) " +
+            "from PizzaOrder o where o.status = :status order by o.dispatchAt, o.id")
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    Stream<OrderDto> streamOrderDtosByStatus(@Param("status") OrderStatus status);
+
+    // Moves the order to newStatus only if it is still in expectedStatus, in a single statement without reading it first.
+    // Returns the number of updated rows: 0 if the order does not exist or a concurrent change moved it elsewhere.
+    // Never used to enter PREPARING, which only the claims do as they assign the station
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PizzaOrder o set o.status = :newStatus, o.updateTimestamp = :updateTimestamp, o.version = o.version + 1, " +
+            "o.assignedStation = case when :newStatus = com.awesomepizza.slice.enums.OrderStatus.RECEIVED then null else o.assignedStation end, " +
+            "o.preparingTimestamp = case when :newStatus = com.awesomepizza.slice.enums.OrderStatus.RECEIVED then null else o.preparingTimestamp end " +
+            "where o.orderCode = :orderCode and o.status = :expectedStatus")
+    int transitionStatus(
+            @Param("orderCode") String orderCode,
+            @Param("expectedStatus") OrderStatus expectedStatus,
+            @Param("newStatus") OrderStatus newStatus,
+            @Param("updateTimestamp") LocalDateTime updateTimestamp
+    );
+
+    Optional<PizzaOrder> findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(OrderStatus status, String assignedStation);
+
+    List<PizzaOrder> findByStatusAndAssignedStationOrderByDispatchAtAscIdAsc(OrderStatus status, String assignedStation);
+
+    // Waits for the locks of the orders of the station, so a status change racing with it sees their new status
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from PizzaOrder o where o.status = :status and o.assignedStation = :station order by o.dispatchAt, o.id")
+    List<PizzaOrder> lockByStatusAndAssignedStation(@Param("status") OrderStatus status, @Param("station") String assignedStation);
+
+    // Locks and returns only the first order in the given status due by now (SELECT ... LIMIT 1 FOR UPDATE SKIP LOCKED),
+    // a single seek on the (status, dispatchAt, id) index whatever the number of pre-orders scheduled later on PostgreSQL
+    // (H2 reads every matching row for FOR UPDATE, so the claim grows with the queue in dev).
+    // A lock timeout of -2 is Hibernate's SKIP_LOCKED, so rows already claimed by another transaction are skipped
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    Optional<PizzaOrder> findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(OrderStatus status, LocalDateTime now);
+
+    // Same claim, skipping the orders of the given pizza types
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    Optional<PizzaOrder> findFirstByStatusAndDispatchAtLessThanEqualAndPizzaTypeNotInOrderByDispatchAtAscIdAsc(
+            OrderStatus status,
+            LocalDateTime now,
+            Collection<String> pizzaTypes
+    );
+
+    // Locks the orders of the type due between from and to, other than the given one, skipping the locked ones:
+    // the orders that can join the oven batch of that order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select o from PizzaOrder o where o.status = :status and o.pizzaType = :pizzaType and o.id <> :id " +
+            "and o.dispatchAt between :from and :to order by o.dispatchAt, o.id")
+    List<PizzaOrder> findBatchCandidates(
+            @Param("status") OrderStatus status,
+            @Param("pizzaType") String pizzaType,
+            @Param("id") Long id,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Limit limit
+    );
+
+    @Query("select o.pizzaType as pizzaType, count(o) as orders from PizzaOrder o where o.status = :status group by o.pizzaType")
+    List<PizzaTypeCount> countByStatusGroupByPizzaType(@Param("status") OrderStatus status);
+
+    long countByStatusAndPizzaType(OrderStatus status, String pizzaType);
+
+    // Locks a batch of the oldest orders in the given status last updated before a point in time, skipping the locked ones,
+    // so archivers running on several nodes move disjoint batches
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<PizzaOrder> findByStatusAndUpdateTimestampBeforeOrderByUpdateTimestampAsc(
+            OrderStatus status,
+            LocalDateTime updateTimestamp,
+            Limit limit
+    );
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from PizzaOrder o where o.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    interface PizzaTypeCount {
+        String getPizzaType();
+
+        long getOrders();
+    }
 }
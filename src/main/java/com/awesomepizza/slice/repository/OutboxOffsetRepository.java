@@ -0,0 +1,21 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.entity.OutboxConsumerOffset;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.Optional;
+
+public interface OutboxOffsetRepository extends JpaRepository<OutboxConsumerOffset, String> {
+    // Locks the offset of a consumer, returning nothing if a relay on another node holds it (lock timeout -2: skip locked)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    Optional<OutboxConsumerOffset> findLockedByConsumer(String consumer);
+
+    @Query("select min(o.logPosition) from OutboxConsumerOffset o")
+    Long findMinLogPosition();
+}
@@ -0,0 +1,19 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.entity.PizzaType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface PizzaTypeRepository extends JpaRepository<PizzaType, Short> {
+    Optional<PizzaType> findByNameIgnoreCase(String name);
+
+    // Waits for the lock of the menu entry: claims of a type with a capacity limit are serialized by it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from PizzaType t where t.id = :id")
+    Optional<PizzaType> lockById(@Param("id") Short id);
+}
@@ -0,0 +1,422 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.entity.ArchivedPizzaOrder;
+import com.awesomepizza.slice.entity.OrderOutboxEvent;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.service.MenuCatalog;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Parameters;
+import io.r2dbc.spi.R2dbcType;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Non-blocking access to the pizza_orders table for the reactive profile, with the same queries as {@link OrderRepository}.
+ * The table and its sequence are the ones mapped by {@link PizzaOrder}, so both stacks can run against the same database;
+ * the same goes for the outbox of {@link OrderOutboxEvent}.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveOrderRepository {
+
+    private static final String COLUMNS =
+            "id, order_code, pizza_type_id, quantity, status, assigned_station, insert_timestamp, update_timestamp, preparing_timestamp, " +
+            "express, pickup_time, dispatch_at, version";
+
+    private static final String PIZZA_TYPE_SAVEPOINT = "pizza_type_lock";
+
+    private final DatabaseClient databaseClient;
+    private final MenuCatalog menuCatalog;
+    private final boolean postgres;
+
+    private final AtomicReference<IdBlock> orderIdBlock = new AtomicReference<>(new IdBlock(1, 0));
+    private final AtomicReference<IdBlock> outboxIdBlock = new AtomicReference<>(new IdBlock(1, 0));
+
+    public ReactiveOrderRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory, MenuCatalog menuCatalog) {
+        this.databaseClient = databaseClient;
+        this.menuCatalog = menuCatalog;
+        this.postgres = connectionFactory.getMetadata().getName().startsWith("PostgreSQL");
+    }
+
+    //region public methods
+
+    public Mono<PizzaOrder> insert(PizzaOrder order) {
+        return nextId(orderIdBlock, "pizza_orders_seq", PizzaOrder.ID_ALLOCATION_SIZE).flatMap(id -> {
+            order.setId(id);
+            return databaseClient.sql("insert into pizza_orders (id, order_code, pizza_type_id, quantity, status, insert_timestamp, update_timestamp, " +
+                            "express, pickup_time, dispatch_at, version) " +
+                            "values (:id, :orderCode, :pizzaType, :quantity, :status, :insertTimestamp, :updateTimestamp, " +
+                            ":express, :pickupTime, :dispatchAt, 0)")
+                    .bind("id", id)
+                    .bind("orderCode", order.getOrderCode())
+                    .bind("pizzaType", menuCatalog.idOf(order.getPizzaType()))
+                    .bind("quantity", order.getQuantity())
+                    .bind("status", order.getStatus().name())
+                    .bind("insertTimestamp", order.getInsertTimestamp())
+                    .bind("updateTimestamp", order.getUpdateTimestamp())
+                    .bind("express", order.isExpress())
+                    .bind("pickupTime", Parameters.in(R2dbcType.TIMESTAMP, order.getPickupTime()))
+                    .bind("dispatchAt", order.getDispatchAt())
+                    .fetch()
+                    .rowsUpdated()
+                    .thenReturn(order);
+        });
+    }
+
+    public Mono<PizzaOrder> findByOrderCode(String orderCode) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where order_code = :orderCode")
+                .bind("orderCode", orderCode)
+                .map(this::toPizzaOrder)
+                .one()
+                .flatMap(this::withPizzaType);
+    }
+
+    public Mono<ArchivedPizzaOrder> findArchivedByOrderCode(String orderCode) {
+        return databaseClient.sql("select id, order_code, pizza_type_id, quantity, status, assigned_station, insert_timestamp, " +
+                        "update_timestamp, preparing_timestamp, archive_timestamp from pizza_orders_archive where order_code = :orderCode")
+                .bind("orderCode", orderCode)
+                .map(row -> {
+                    ArchivedPizzaOrder order = new ArchivedPizzaOrder();
+                    order.setId(row.get("id", Long.class));
+                    order.setOrderCode(row.get("order_code", String.class));
+                    order.setQuantity(row.get("quantity", Integer.class));
+                    order.setStatus(OrderStatus.valueOf(row.get("status", String.class)));
+                    order.setAssignedStation(row.get("assigned_station", String.class));
+                    order.setInsertTimestamp(row.get("insert_timestamp", LocalDateTime.class));
+                    order.setUpdateTimestamp(row.get("update_timestamp", LocalDateTime.class));
+                    order.setPreparingTimestamp(row.get("preparing_timestamp", LocalDateTime.class));
+                    order.setArchiveTimestamp(row.get("archive_timestamp", LocalDateTime.class));
+                    return new TypedRow<>(row.get("pizza_type_id", Short.class), pizzaType -> {
+                        order.setPizzaType(pizzaType);
+                        return order;
+                    });
+                })
+                .one()
+                .flatMap(this::withPizzaType);
+    }
+
+    // Keyset pagination on (dispatch_at, id), as in OrderRepository
+    public Flux<PizzaOrder> findByStatus(OrderStatus status, int limit) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status " +
+                        "order by dispatch_at, id limit :limit")
+                .bind("status", status.name())
+                .bind("limit", limit)
+                .map(this::toPizzaOrder)
+                .all()
+                .concatMap(this::withPizzaType);
+    }
+
+    public Flux<PizzaOrder> findByStatusAfter(OrderStatus status, LocalDateTime dispatchAt, Long id, int limit) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status " +
+                        "and (dispatch_at > :dispatchAt or (dispatch_at = :dispatchAt and id > :id)) " +
+                        "order by dispatch_at, id limit :limit")
+                .bind("status", status.name())
+                .bind("dispatchAt", dispatchAt)
+                .bind("id", id)
+                .bind("limit", limit)
+                .map(this::toPizzaOrder)
+                .all()
+                .concatMap(this::withPizzaType);
+    }
+
+    // Rows are emitted as the driver reads them, and the driver only reads as many as the subscriber requests
+    public Flux<OrderDto> streamOrderDtosByStatus(OrderStatus status) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status order by dispatch_at, id")
+                .bind("status", status.name())
+                .map(row -> {
+                    // Read now: the row is only valid within the mapping function
+                    String orderCode = row.get("order_code", String.class);
+                    Integer quantity = row.get("quantity", Integer.class);
+                    OrderStatus orderStatus = OrderStatus.valueOf(row.get("status", String.class));
+                    String assignedStation = row.get("assigned_station", String.class);
+                    LocalDateTime insertTimestamp = row.get("insert_timestamp", LocalDateTime.class);
+                    boolean express = Boolean.TRUE.equals(row.get("express", Boolean.class));
+                    LocalDateTime pickupTime = row.get("pickup_time", LocalDateTime.class);
+                    LocalDateTime dispatchAt = row.get("dispatch_at", LocalDateTime.class);
+
+                    return new TypedRow<>(row.get("pizza_type_id", Short.class), pizzaType -> new OrderDto(orderCode, pizzaType,
+                            quantity, orderStatus, assignedStation, insertTimestamp, express, pickupTime, dispatchAt));
+                })
+                .all()
+                .concatMap(this::withPizzaType);
+    }
+
+    // Same conditional update as OrderRepository.transitionStatus: emits 0 if the order is not in expectedStatus
+    public Mono<Long> transitionStatus(String orderCode, OrderStatus expectedStatus, OrderStatus newStatus, LocalDateTime updateTimestamp) {
+        return databaseClient.sql("update pizza_orders set status = :newStatus, update_timestamp = :updateTimestamp, version = version + 1, " +
+                        "assigned_station = case when :newStatus = 'RECEIVED' then null else assigned_station end, " +
+                        "preparing_timestamp = case when :newStatus = 'RECEIVED' then null else preparing_timestamp end " +
+                        "where order_code = :orderCode and status = :expectedStatus")
+                .bind("newStatus", newStatus.name())
+                .bind("updateTimestamp", updateTimestamp)
+                .bind("orderCode", orderCode)
+                .bind("expectedStatus", expectedStatus.name())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<PizzaOrder> findFirstByStatusAndAssignedStation(OrderStatus status, String assignedStation) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status and assigned_station = :station " +
+                        "order by update_timestamp limit 1")
+                .bind("status", status.name())
+                .bind("station", assignedStation)
+                .map(this::toPizzaOrder)
+                .one()
+                .flatMap(this::withPizzaType);
+    }
+
+    public Flux<PizzaOrder> findByStatusAndAssignedStation(OrderStatus status, String assignedStation) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status and assigned_station = :station " +
+                        "order by dispatch_at, id")
+                .bind("status", status.name())
+                .bind("station", assignedStation)
+                .map(this::toPizzaOrder)
+                .all()
+                .concatMap(this::withPizzaType);
+    }
+
+    // Same as OrderRepository.lockByStatusAndAssignedStation: waits for the locks of the orders of the station. Needs an open transaction
+    public Flux<PizzaOrder> lockByStatusAndAssignedStation(OrderStatus status, String assignedStation) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status and assigned_station = :station " +
+                        "order by dispatch_at, id for update")
+                .bind("status", status.name())
+                .bind("station", assignedStation)
+                .map(this::toPizzaOrder)
+                .all()
+                .concatMap(this::withPizzaType);
+    }
+
+    // Locks and returns only the first order in the given status due by now, skipping the rows locked by concurrent claims.
+    // Needs an open transaction
+    public Mono<PizzaOrder> lockFirstByStatus(OrderStatus status, LocalDateTime now) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status and dispatch_at <= :now " +
+                        "order by dispatch_at, id limit 1 for update skip locked")
+                .bind("status", status.name())
+                .bind("now", now)
+                .map(this::toPizzaOrder)
+                .one()
+                .flatMap(this::withPizzaType);
+    }
+
+    // Same as lockFirstByStatus, skipping the orders of the given types
+    public Mono<PizzaOrder> lockFirstByStatusAndPizzaTypeNotIn(OrderStatus status, LocalDateTime now, Collection<String> pizzaTypes) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status and dispatch_at <= :now " +
+                        "and pizza_type_id not in (:pizzaTypes) order by dispatch_at, id limit 1 for update skip locked")
+                .bind("status", status.name())
+                .bind("now", now)
+                .bind("pizzaTypes", pizzaTypes.stream().map(menuCatalog::idOf).toList())
+                .map(this::toPizzaOrder)
+                .one()
+                .flatMap(this::withPizzaType);
+    }
+
+    // Orders in the given status by id of their pizza type
+    public Mono<Map<Short, Long>> countByStatusGroupByPizzaType(OrderStatus status) {
+        return databaseClient.sql("select pizza_type_id, count(*) as orders from pizza_orders where status = :status group by pizza_type_id")
+                .bind("status", status.name())
+                .map(row -> Map.entry(row.get("pizza_type_id", Short.class), row.get("orders", Long.class)))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    public Mono<Long> countByStatusAndPizzaType(OrderStatus status, String pizzaType) {
+        return databaseClient.sql("select count(*) as orders from pizza_orders where status = :status and pizza_type_id = :pizzaType")
+                .bind("status", status.name())
+                .bind("pizzaType", menuCatalog.idOf(pizzaType))
+                .map(row -> row.get("orders", Long.class))
+                .one();
+    }
+
+    // Same as PizzaTypeLocks.lockIfRoomLeft: waits for the lock of the menu entry, taken by the claims of a type with a capacity
+    // limit on either stack, and keeps it only if the type has room left, rolling back to a savepoint otherwise.
+    // Needs an open transaction
+    public Mono<Boolean> lockPizzaTypeIfRoomLeft(PizzaTypeDto pizzaType) {
+        return databaseClient.inConnection(connection -> Mono.from(connection.createSavepoint(PIZZA_TYPE_SAVEPOINT))
+                .then(databaseClient.sql("select id from pizza_types where id = :id for update")
+                        .bind("id", pizzaType.id())
+                        .fetch()
+                        .all()
+                        .then())
+                .then(countByStatusAndPizzaType(OrderStatus.PREPARING, pizzaType.name()))
+                .flatMap(preparing -> preparing < pizzaType.maxPreparing()
+                        ? Mono.from(connection.releaseSavepoint(PIZZA_TYPE_SAVEPOINT)).thenReturn(true)
+                        : Mono.from(connection.rollbackTransactionToSavepoint(PIZZA_TYPE_SAVEPOINT)).thenReturn(false)));
+    }
+
+    // Same as KitchenStationRepository.insertIfAbsent, run outside of the claim transactions: the failure of an insert
+    // racing with another one of the same station is ignored
+    public Mono<Void> registerStation(String station, LocalDateTime now) {
+        return databaseClient.sql("insert into kitchen_stations (name, insert_timestamp) select :name, :now " +
+                        "where not exists (select 1 from kitchen_stations where name = :name)")
+                .bind("name", station)
+                .bind("now", now)
+                .fetch()
+                .rowsUpdated()
+                .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(0L))
+                .then();
+    }
+
+    // Same as KitchenStationRepository.lockByName: waits for the lock of the station, taken by its claims on either stack.
+    // Needs an open transaction
+    public Mono<Void> lockStation(String station) {
+        return databaseClient.sql("select name from kitchen_stations where name = :name for update")
+                .bind("name", station)
+                .fetch()
+                .all()
+                .then();
+    }
+
+    // Same as OrderRepository.findBatchCandidates: locks the orders of the type due between from and to, other than the given one,
+    // skipping the locked ones. Needs an open transaction
+    public Flux<PizzaOrder> lockBatchCandidates(OrderStatus status, String pizzaType, Long id, LocalDateTime from, LocalDateTime to, int limit) {
+        return databaseClient.sql("select " + COLUMNS + " from pizza_orders where status = :status and pizza_type_id = :pizzaType " +
+                        "and id <> :id and dispatch_at between :from and :to order by dispatch_at, id limit :limit for update skip locked")
+                .bind("status", status.name())
+                .bind("pizzaType", menuCatalog.idOf(pizzaType))
+                .bind("id", id)
+                .bind("from", from)
+                .bind("to", to)
+                .bind("limit", limit)
+                .map(this::toPizzaOrder)
+                .all()
+                .concatMap(this::withPizzaType);
+    }
+
+    public Mono<PizzaOrder> updateStatus(PizzaOrder order) {
+        return databaseClient.sql("update pizza_orders set status = :status, assigned_station = :station, " +
+                        "update_timestamp = :updateTimestamp, preparing_timestamp = :preparingTimestamp, version = version + 1 where id = :id")
+                .bind("status", order.getStatus().name())
+                .bind("station", order.getAssignedStation())
+                .bind("updateTimestamp", order.getUpdateTimestamp())
+                .bind("preparingTimestamp", order.getPreparingTimestamp())
+                .bind("id", order.getId())
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(rows -> order.setVersion(order.getVersion() + 1))
+                .thenReturn(order);
+    }
+
+    // Appends the event to the outbox of OrderOutbox; must run in the transaction of the change
+    public Mono<Void> insertOutboxEvent(OrderStatusChangedEvent event, LocalDateTime insertTimestamp) {
+        return nextId(outboxIdBlock, "order_outbox_seq", OrderOutboxEvent.ID_ALLOCATION_SIZE)
+                .flatMap(id -> databaseClient.sql("insert into order_outbox (id, order_id, order_version, order_code, pizza_type, quantity, " +
+                                "previous_status, status, assigned_station, occurred_at, insert_timestamp) " +
+                                "values (:id, :orderId, :orderVersion, :orderCode, :pizzaType, :quantity, :previousStatus, :status, :station, " +
+                                ":occurredAt, :insertTimestamp)")
+                        .bind("id", id)
+                        .bind("orderId", event.id())
+                        .bind("orderVersion", event.version())
+                        .bind("orderCode", event.orderCode())
+                        .bind("pizzaType", event.pizzaType())
+                        .bind("quantity", event.quantity())
+                        .bind("previousStatus", Parameters.in(R2dbcType.VARCHAR, event.previousStatus() == null ? null : event.previousStatus().name()))
+                        .bind("status", event.status().name())
+                        .bind("station", Parameters.in(R2dbcType.VARCHAR, event.assignedStation()))
+                        .bind("occurredAt", event.updateTimestamp())
+                        .bind("insertTimestamp", insertTimestamp)
+                        .fetch()
+                        .rowsUpdated()
+                        .then());
+    }
+
+    //endregion
+
+    //region private methods
+
+    // Follows the pooled optimizer of Hibernate: a sequence value v reserves the ids v - allocationSize + 1 to v, so the ids
+    // allocated here never collide with the ones allocated by JPA, on this node or on the others
+    private Mono<Long> nextId(AtomicReference<IdBlock> idBlock, String sequence, int allocationSize) {
+        return Mono.defer(() -> {
+            IdBlock current = idBlock.get();
+            long id = current.next.getAndIncrement();
+
+            if (id <= current.hi) {
+                return Mono.just(id);
+            }
+
+            return databaseClient.sql(postgres ? "select nextval('" + sequence + "')" : "select next value for " + sequence)
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(hi -> {
+                        IdBlock block = new IdBlock(Math.max(hi - allocationSize + 1, 1), hi);
+                        long blockId = block.next.getAndIncrement();
+                        // Concurrent refills each get their own block; only one of them is kept for the next ids
+                        idBlock.compareAndSet(current, block);
+                        return blockId;
+                    });
+        });
+    }
+
+    // Orders store the id of their menu entry, as with the PizzaTypeConverter of JPA. The name is read from the menu in memory;
+    // only a type added on another node since the last refresh needs MenuCatalog.nameOf, which reloads the menu through JPA
+    // and so runs on the bounded elastic scheduler instead of the event loop
+    private <T> Mono<T> withPizzaType(TypedRow<T> row) {
+        if (row.pizzaTypeId() == null) {
+            return Mono.just(row.withPizzaType().apply(null));
+        }
+
+        String pizzaType = menuCatalog.findName(row.pizzaTypeId());
+
+        if (pizzaType != null) {
+            return Mono.just(row.withPizzaType().apply(pizzaType));
+        }
+
+        return Mono.fromCallable(() -> menuCatalog.nameOf(row.pizzaTypeId()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(row.withPizzaType());
+    }
+
+    private TypedRow<PizzaOrder> toPizzaOrder(Readable row) {
+        PizzaOrder order = new PizzaOrder();
+        order.setId(row.get("id", Long.class));
+        order.setOrderCode(row.get("order_code", String.class));
+        order.setQuantity(row.get("quantity", Integer.class));
+        order.setStatus(OrderStatus.valueOf(row.get("status", String.class)));
+        order.setAssignedStation(row.get("assigned_station", String.class));
+        order.setInsertTimestamp(row.get("insert_timestamp", LocalDateTime.class));
+        order.setUpdateTimestamp(row.get("update_timestamp", LocalDateTime.class));
+        order.setPreparingTimestamp(row.get("preparing_timestamp", LocalDateTime.class));
+        order.setExpress(Boolean.TRUE.equals(row.get("express", Boolean.class)));
+        order.setPickupTime(row.get("pickup_time", LocalDateTime.class));
+        order.setDispatchAt(row.get("dispatch_at", LocalDateTime.class));
+        order.setVersion(row.get("version", Long.class));
+
+        return new TypedRow<>(row.get("pizza_type_id", Short.class), pizzaType -> {
+            order.setPizzaType(pizzaType);
+            return order;
+        });
+    }
+
+    //endregion
+
+    // A mapped row waiting for the name of its pizza type
+    private record TypedRow<T>(Short pizzaTypeId, Function<String, T> withPizzaType) {
+    }
+
+    private static final class IdBlock {
+        private final AtomicLong next;
+        private final long hi;
+
+        private IdBlock(long next, long hi) {
+            this.next = new AtomicLong(next);
+            this.hi = hi;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.awesomepizza.slice.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Bounds of the oven batches claimed with {@link OrderService#getNextBatch(String)}: a batch starts from the first due
+ * order and is filled with the due orders of the same pizza type, up to maxOrders orders and maxPizzas pizzas.
+ * An order only joins the batch of an older one if it was due at most maxWait after it, so the orders of other types
+ * waiting in between are never overtaken by more than that.
+ */
+@Component
+@Getter
+public class BatchPolicy {
+    private final int maxOrders;
+    private final int maxPizzas;
+    private final Duration maxWait;
+
+    public BatchPolicy(
+            @Value("${slice.batch.max-orders:6}") int maxOrders,
+            @Value("${slice.batch.max-pizzas:8}") int maxPizzas,
+            @Value("${slice.batch.max-wait:PT5M}") Duration maxWait
+    ) {
+        this.maxOrders = maxOrders;
+        this.maxPizzas = maxPizzas;
+        this.maxWait = maxWait;
+    }
+
+    //region public methods
+
+    // Latest dispatch time of an order that can join the batch of the given one
+    public LocalDateTime joinUntil(LocalDateTime firstDispatchAt, LocalDateTime now) {
+        LocalDateTime until = firstDispatchAt.plus(maxWait);
+        return until.isBefore(now) ? until : now;
+    }
+
+    //endregion
+}
@@ -0,0 +1,41 @@
+package com.awesomepizza.slice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Decides when a new order is due to the kitchen: the queue is served by this dispatch time, then by id.
+ * An order to prepare as soon as possible is due when it is received, a pre-order the lead time before its pickup.
+ * An express order is due the express boost earlier, so it only jumps ahead of the orders received in the last boost:
+ * an order that has waited longer than that stays ahead of any new express order, so normal orders cannot starve.
+ */
+@Component
+public class DispatchPolicy {
+    private final Duration expressBoost;
+    private final Duration pickupLeadTime;
+
+    public DispatchPolicy(
+            @Value("${slice.dispatch.express-boost:PT10M}") Duration expressBoost,
+            @Value("${slice.dispatch.pickup-lead-time:PT20M}") Duration pickupLeadTime
+    ) {
+        this.expressBoost = expressBoost;
+        this.pickupLeadTime = pickupLeadTime;
+    }
+
+    //region public methods
+
+    public LocalDateTime dispatchAt(LocalDateTime now, boolean express, LocalDateTime pickupTime) {
+        LocalDateTime dueAt = now;
+
+        if (pickupTime != null && pickupTime.minus(pickupLeadTime).isAfter(now)) {
+            dueAt = pickupTime.minus(pickupLeadTime);
+        }
+
+        return express ? dueAt.minus(expressBoost) : dueAt;
+    }
+
+    //endregion
+}
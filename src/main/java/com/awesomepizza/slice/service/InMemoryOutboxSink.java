@@ -0,0 +1,33 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OutboxEventDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink that keeps the relayed events in memory, for tests and local runs.
+ */
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final String name;
+    private final List<OutboxEventDto> events = new ArrayList<>();
+
+    public InMemoryOutboxSink(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEventDto> events) {
+        this.events.addAll(events);
+    }
+
+    public synchronized List<OutboxEventDto> events() {
+        return List.copyOf(events);
+    }
+}
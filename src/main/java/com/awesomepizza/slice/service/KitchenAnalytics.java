@@ -0,0 +1,348 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.KitchenStats;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.*;
+import java.util.*;
+import java.util.zip.DataFormatException;
+
+/**
+ * Kitchen throughput statistics maintained incrementally from the order status events, without querying the orders.
+ * Queue wait and preparation times are recorded in per-minute HDR histograms over a rolling window (slice.analytics.window),
+ * created and completed orders are counted in hourly buckets over the last 24 hours.
+ * Both are fixed-size rings, so memory and the cost of a query do not depend on the number of orders.
+ * The statistics are local to the node and are checkpointed to a file, so they survive a restart.
+ */
+@Component
+public class KitchenAnalytics {
+    private final static Logger LOGGER = LogManager.getLogger(KitchenAnalytics.class);
+
+    private static final int CHECKPOINT_VERSION = 1;
+
+    // Durations up to a day, with 2 significant digits
+    private static final long MAX_TRACKED_MILLIS = Duration.ofDays(1).toMillis();
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final int HOURS = 24;
+
+    private final Clock clock;
+    private final int windowMinutes;
+    private final Path checkpointFile;
+
+    private final MinuteBucket[] minuteBuckets;
+    private final HourBucket[] hourBuckets = new HourBucket[HOURS];
+
+    @Autowired
+    public KitchenAnalytics(
+            @Value("${slice.analytics.window:PT1H}") Duration window,
+            @Value("${slice.analytics.checkpoint-file:}") String checkpointFile
+    ) {
+        this(Clock.systemDefaultZone(), window, checkpointFile.isBlank() ? null : Path.of(checkpointFile));
+    }
+
+    KitchenAnalytics(Clock clock, Duration window, Path checkpointFile) {
+        this.clock = clock;
+        this.windowMinutes = (int) Math.max(window.toMinutes(), 1);
+        this.checkpointFile = checkpointFile;
+
+        this.minuteBuckets = new MinuteBucket[windowMinutes];
+        for (int i = 0; i < windowMinutes; i++) {
+            minuteBuckets[i] = new MinuteBucket();
+        }
+        for (int i = 0; i < HOURS; i++) {
+            hourBuckets[i] = new HourBucket();
+        }
+    }
+
+    //region public methods
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.isCreation()) {
+            recordCreated();
+        } else if (OrderStatus.PREPARING.equals(event.status()) && OrderStatus.RECEIVED.equals(event.previousStatus())) {
+            if (event.preparingTimestamp() != null) {
+                recordQueueWait(millisBetween(waitingSince(event), event.preparingTimestamp()));
+            }
+        } else if (OrderStatus.READY.equals(event.status())) {
+            // Orders claimed before the preparation start was recorded are counted without a preparation time
+            long prepMillis = event.preparingTimestamp() == null ? -1 : millisBetween(event.preparingTimestamp(), event.updateTimestamp());
+            recordCompleted(event.pizzaType(), prepMillis);
+        }
+    }
+
+    public synchronized KitchenStats getStats() {
+        long currentMinute = currentMinute();
+
+        Histogram queueWait = new Histogram(MAX_TRACKED_MILLIS, SIGNIFICANT_DIGITS);
+        Map<String, Histogram> prepTimes = new TreeMap<>();
+
+        for (MinuteBucket bucket : minuteBuckets) {
+            if (isInWindow(bucket.minute, currentMinute)) {
+                queueWait.add(bucket.queueWait);
+                bucket.prepTimes.forEach((pizzaType, histogram) -> prepTimes
+                        .computeIfAbsent(pizzaType, type -> new Histogram(MAX_TRACKED_MILLIS, SIGNIFICANT_DIGITS))
+                        .add(histogram));
+            }
+        }
+
+        Map<String, KitchenStats.DurationStats> prepTimeByPizzaType = new TreeMap<>();
+        prepTimes.forEach((pizzaType, histogram) -> prepTimeByPizzaType.put(pizzaType, toDurationStats(histogram)));
+
+        long currentHour = currentMinute / 60;
+        List<KitchenStats.HourlyThroughput> throughput = new ArrayList<>(HOURS);
+        for (long hour = currentHour - HOURS + 1; hour <= currentHour; hour++) {
+            HourBucket bucket = hourBuckets[Math.floorMod(hour, HOURS)];
+            boolean current = bucket.hour == hour;
+            throughput.add(new KitchenStats.HourlyThroughput(
+                    LocalDateTime.ofInstant(Instant.ofEpochSecond(hour * 3600), clock.getZone()),
+                    current ? bucket.created : 0,
+                    current ? bucket.completed : 0));
+        }
+
+        return new KitchenStats(windowMinutes, toDurationStats(queueWait), prepTimeByPizzaType, throughput);
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile)))) {
+            readCheckpoint(in);
+            LOGGER.info("Kitchen analytics restored from {}", checkpointFile);
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            LOGGER.warn("Cannot restore kitchen analytics from {}, starting empty: {}", checkpointFile, e.getMessage());
+        }
+    }
+
+    // The state is serialized while holding the lock and written to a temporary file that replaces the previous checkpoint
+    @Scheduled(
+            initialDelayString = "${slice.analytics.checkpoint-interval:PT1M}",
+            fixedDelayString = "${slice.analytics.checkpoint-interval:PT1M}"
+    )
+    @PreDestroy
+    public void checkpoint() {
+        if (checkpointFile == null) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeCheckpoint(out);
+            }
+
+            Path parent = checkpointFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temporaryFile = Files.createTempFile(parent, checkpointFile.getFileName().toString(), ".tmp");
+            Files.write(temporaryFile, bytes.toByteArray());
+            Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot checkpoint kitchen analytics to {}: {}", checkpointFile, e.getMessage());
+        }
+    }
+
+    //endregion
+
+    //region private methods
+
+    private synchronized void recordCreated() {
+        currentHourBucket().created++;
+    }
+
+    private synchronized void recordQueueWait(long millis) {
+        currentMinuteBucket().queueWait.recordValue(clamp(millis));
+    }
+
+    private synchronized void recordCompleted(String pizzaType, long prepMillis) {
+        currentHourBucket().completed++;
+
+        if (prepMillis >= 0) {
+            currentMinuteBucket().prepTimes
+                    .computeIfAbsent(pizzaType, type -> newHistogram())
+                    .recordValue(clamp(prepMillis));
+        }
+    }
+
+    private MinuteBucket currentMinuteBucket() {
+        long minute = currentMinute();
+        MinuteBucket bucket = minuteBuckets[Math.floorMod(minute, windowMinutes)];
+
+        // The slot still holds a minute that has left the window
+        if (bucket.minute != minute) {
+            bucket.reset(minute);
+        }
+
+        return bucket;
+    }
+
+    private HourBucket currentHourBucket() {
+        long hour = currentMinute() / 60;
+        HourBucket bucket = hourBuckets[Math.floorMod(hour, HOURS)];
+
+        if (bucket.hour != hour) {
+            bucket.reset(hour);
+        }
+
+        return bucket;
+    }
+
+    private long currentMinute() {
+        return clock.millis() / 60_000;
+    }
+
+    private boolean isInWindow(long minute, long currentMinute) {
+        return minute > currentMinute - windowMinutes && minute <= currentMinute;
+    }
+
+    private long millisBetween(LocalDateTime from, LocalDateTime to) {
+        return Duration.between(from, to).toMillis();
+    }
+
+    // A pre-order only starts waiting when it is due, an express order when it is received
+    private static LocalDateTime waitingSince(OrderStatusChangedEvent event) {
+        return event.dispatchAt() != null && event.dispatchAt().isAfter(event.insertTimestamp())
+                ? event.dispatchAt()
+                : event.insertTimestamp();
+    }
+
+    private static long clamp(long millis) {
+        return Math.clamp(millis, 0, MAX_TRACKED_MILLIS);
+    }
+
+    private static IntCountsHistogram newHistogram() {
+        return new IntCountsHistogram(MAX_TRACKED_MILLIS, SIGNIFICANT_DIGITS);
+    }
+
+    private static KitchenStats.DurationStats toDurationStats(AbstractHistogram histogram) {
+        return new KitchenStats.DurationStats(
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(95),
+                histogram.getMaxValue());
+    }
+
+    private synchronized void writeCheckpoint(DataOutputStream out) throws IOException {
+        out.writeInt(CHECKPOINT_VERSION);
+
+        out.writeInt(minuteBuckets.length);
+        for (MinuteBucket bucket : minuteBuckets) {
+            out.writeLong(bucket.minute);
+            writeHistogram(out, bucket.queueWait);
+            out.writeInt(bucket.prepTimes.size());
+            for (Map.Entry<String, IntCountsHistogram> entry : bucket.prepTimes.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeHistogram(out, entry.getValue());
+            }
+        }
+
+        out.writeInt(hourBuckets.length);
+        for (HourBucket bucket : hourBuckets) {
+            out.writeLong(bucket.hour);
+            out.writeLong(bucket.created);
+            out.writeLong(bucket.completed);
+        }
+    }
+
+    // Buckets are placed by their minute and hour, so a checkpoint taken with a different window can be read back
+    private synchronized void readCheckpoint(DataInputStream in) throws IOException, DataFormatException {
+        if (in.readInt() != CHECKPOINT_VERSION) {
+            throw new IOException("unsupported checkpoint version");
+        }
+
+        long currentMinute = currentMinute();
+
+        int minuteBucketCount = in.readInt();
+        for (int i = 0; i < minuteBucketCount; i++) {
+            long minute = in.readLong();
+            IntCountsHistogram queueWait = readHistogram(in);
+            Map<String, IntCountsHistogram> prepTimes = new HashMap<>();
+            int pizzaTypes = in.readInt();
+            for (int j = 0; j < pizzaTypes; j++) {
+                prepTimes.put(in.readUTF(), readHistogram(in));
+            }
+
+            if (isInWindow(minute, currentMinute)) {
+                MinuteBucket bucket = minuteBuckets[Math.floorMod(minute, windowMinutes)];
+                bucket.reset(minute);
+                bucket.queueWait.add(queueWait);
+                bucket.prepTimes.putAll(prepTimes);
+            }
+        }
+
+        long currentHour = currentMinute / 60;
+        int hourBucketCount = in.readInt();
+        for (int i = 0; i < hourBucketCount; i++) {
+            long hour = in.readLong();
+            long created = in.readLong();
+            long completed = in.readLong();
+
+            if (hour > currentHour - HOURS && hour <= currentHour) {
+                HourBucket bucket = hourBuckets[Math.floorMod(hour, HOURS)];
+                bucket.reset(hour);
+                bucket.created = created;
+                bucket.completed = completed;
+            }
+        }
+    }
+
+    private static void writeHistogram(DataOutputStream out, AbstractHistogram histogram) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        out.writeInt(length);
+        out.write(buffer.array(), 0, length);
+    }
+
+    private static IntCountsHistogram readHistogram(DataInputStream in) throws IOException, DataFormatException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return IntCountsHistogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), MAX_TRACKED_MILLIS);
+    }
+
+    //endregion
+
+    private static final class MinuteBucket {
+        private long minute = Long.MIN_VALUE;
+        private final IntCountsHistogram queueWait = newHistogram();
+        private final Map<String, IntCountsHistogram> prepTimes = new HashMap<>();
+
+        private void reset(long minute) {
+            this.minute = minute;
+            queueWait.reset();
+            prepTimes.clear();
+        }
+    }
+
+    private static final class HourBucket {
+        private long hour = Long.MIN_VALUE;
+        private long created;
+        private long completed;
+
+        private void reset(long hour) {
+            this.hour = hour;
+            created = 0;
+            completed = 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.repository.KitchenStationRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Serializes the claims of each kitchen station on the row of the station, on any node.
+ */
+@Component
+public class KitchenStations {
+    private final static Logger LOGGER = LogManager.getLogger(KitchenStations.class);
+
+    private final KitchenStationRepository kitchenStationRepository;
+    private final TransactionTemplate newTransaction;
+
+    public KitchenStations(KitchenStationRepository kitchenStationRepository, PlatformTransactionManager transactionManager) {
+        this.kitchenStationRepository = kitchenStationRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    //region public methods
+
+    // Locks the station until the end of the current transaction, registering it on its first claim
+    public void lock(String station) {
+        if (kitchenStationRepository.lockByName(station).isPresent()) {
+            return;
+        }
+
+        // Registered in its own transaction: a concurrent first claim of the station fails on the key once it commits,
+        // and then finds the row like this one
+        try {
+            Integer inserted = newTransaction.execute(status -> kitchenStationRepository.insertIfAbsent(station, LocalDateTime.now()));
+
+            if (inserted != null && inserted > 0) {
+                LOGGER.info("Kitchen station {} registered", station);
+            }
+        } catch (DataIntegrityViolationException e) {
+            LOGGER.debug("Kitchen station {} registered by a concurrent claim", station);
+        }
+
+        kitchenStationRepository.lockByName(station)
+                .orElseThrow(() -> new IllegalStateException("Kitchen station " + station + " is not registered"));
+    }
+
+    //endregion
+}
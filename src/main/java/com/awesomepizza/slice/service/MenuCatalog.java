@@ -0,0 +1,229 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.dto.UpdatePizzaTypeRequest;
+import com.awesomepizza.slice.entity.PizzaType;
+import com.awesomepizza.slice.exception.UnknownPizzaTypeException;
+import com.awesomepizza.slice.repository.PizzaTypeRepository;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * In-memory copy of the menu, used to validate the pizza type of new orders and to translate it to and from the id
+ * stored with each order. Lookups read an immutable snapshot without locking or touching the database: by name from a
+ * hash map, by id from an array. The snapshot is replaced as a whole when the menu is reloaded, periodically to pick up
+ * the changes made on other nodes, and right away after a change made through this node.
+ */
+@Service
+public class MenuCatalog {
+    private final static Logger LOGGER = LogManager.getLogger(MenuCatalog.class);
+
+    private final PizzaTypeRepository pizzaTypeRepository;
+    private final TransactionTemplate newTransaction;
+    private final List<String> seed;
+
+    private volatile Menu menu = new Menu(Map.of(), new PizzaTypeDto[0]);
+
+    public MenuCatalog(
+            PizzaTypeRepository pizzaTypeRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${slice.menu.seed:Margherita,Marinara,Diavola,Capricciosa,Quattro Formaggi,Quattro Stagioni}") List<String> seed
+    ) {
+        this.pizzaTypeRepository = pizzaTypeRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.newTransaction.setReadOnly(true);
+        this.seed = seed;
+    }
+
+    //region public methods
+
+    // The first node started on an empty database fills the menu with the seed types
+    @PostConstruct
+    public void load() {
+        if (pizzaTypeRepository.count() == 0 && !seed.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            List<PizzaType> pizzaTypes = seed.stream().map(String::trim).filter(name -> !name.isEmpty()).distinct().map(name -> {
+                PizzaType pizzaType = new PizzaType();
+                pizzaType.setName(name);
+                pizzaType.setAvailable(true);
+                pizzaType.setUpdateTimestamp(now);
+                return pizzaType;
+            }).toList();
+
+            try {
+                pizzaTypeRepository.saveAll(pizzaTypes);
+                LOGGER.info("Menu seeded with {} pizza types", pizzaTypes.size());
+            } catch (DataIntegrityViolationException e) {
+                LOGGER.info("Menu already seeded by another node");
+            }
+        }
+
+        refresh();
+    }
+
+    @Scheduled(
+            initialDelayString = "${slice.menu.refresh-interval:PT30S}",
+            fixedDelayString = "${slice.menu.refresh-interval:PT30S}"
+    )
+    public void refresh() {
+        menu = Menu.of(pizzaTypeRepository.findAll());
+        LOGGER.debug("Menu loaded with {} pizza types", menu.byName().size());
+    }
+
+    public List<PizzaTypeDto> getMenu() {
+        return Arrays.stream(menu.byId()).filter(Objects::nonNull).toList();
+    }
+
+    // The pizza type with the given name, in any case, or null if it is not on the menu
+    public PizzaTypeDto find(String name) {
+        return name == null ? null : menu.byName().get(key(name));
+    }
+
+    // Name of the type as written on the menu, for a new order; throws UnknownPizzaTypeException if it cannot be ordered
+    public String resolve(String name) {
+        PizzaTypeDto pizzaType = find(name);
+
+        if (pizzaType == null || !pizzaType.available()) {
+            throw new UnknownPizzaTypeException(name);
+        }
+
+        return pizzaType.name();
+    }
+
+    // Same as resolve for the items of a bulk request, reporting every unknown type by index of the item
+    public List<String> resolveAll(List<String> names) {
+        List<String> pizzaTypes = new ArrayList<>(names.size());
+        Map<Integer, List<String>> itemErrors = new TreeMap<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            try {
+                pizzaTypes.add(resolve(names.get(i)));
+            } catch (UnknownPizzaTypeException e) {
+                itemErrors.put(i, List.of(e.getMessage()));
+            }
+        }
+
+        if (!itemErrors.isEmpty()) {
+            throw new UnknownPizzaTypeException("Some pizza types are not on the menu, no order was created", itemErrors);
+        }
+
+        return pizzaTypes;
+    }
+
+    public short idOf(String name) {
+        PizzaTypeDto pizzaType = find(name);
+
+        if (pizzaType == null) {
+            throw new IllegalArgumentException(UnknownPizzaTypeException.message(name));
+        }
+
+        return pizzaType.id();
+    }
+
+    // Name of the type from the menu in memory only, or null if it is not there: never touches the database
+    public String findName(short id) {
+        PizzaTypeDto pizzaType = get(menu, id);
+        return pizzaType == null ? null : pizzaType.name();
+    }
+
+    public String nameOf(short id) {
+        PizzaTypeDto pizzaType = get(menu, id);
+
+        if (pizzaType == null) {
+            // Added on another node since the last refresh: reloaded in a transaction of its own,
+            // since this may run while Hibernate is reading the rows of another query
+            newTransaction.executeWithoutResult(status -> refresh());
+            pizzaType = get(menu, id);
+        }
+
+        if (pizzaType == null) {
+            throw new IllegalStateException("Pizza type " + id + " is not on the menu");
+        }
+
+        return pizzaType.name();
+    }
+
+    // Types that have a limit of orders in preparation
+    public List<PizzaTypeDto> getCapacityLimitedTypes() {
+        return menu.capacityLimited();
+    }
+
+    // Adds the type to the menu, or updates it; the other nodes see the change at their next refresh
+    public PizzaTypeDto update(String name, UpdatePizzaTypeRequest request) {
+        PizzaType pizzaType = pizzaTypeRepository.findByNameIgnoreCase(name.trim()).orElseGet(() -> {
+            PizzaType newType = new PizzaType();
+            newType.setName(name.trim());
+            return newType;
+        });
+
+        pizzaType.setAvailable(request.isAvailable());
+        pizzaType.setMaxPreparing(request.getMaxPreparing());
+        pizzaType.setUpdateTimestamp(LocalDateTime.now());
+
+        PizzaType savedType = pizzaTypeRepository.save(pizzaType);
+        LOGGER.info("Pizza type {} updated: available {}, max preparing {}", savedType.getName(), savedType.isAvailable(),
+                savedType.getMaxPreparing());
+
+        refresh();
+        return PizzaTypeDto.of(savedType);
+    }
+
+    //endregion
+
+    //region private methods
+
+    private static PizzaTypeDto get(Menu menu, short id) {
+        return id >= 0 && id < menu.byId().length ? menu.byId()[id] : null;
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    //endregion
+
+    private record Menu(Map<String, PizzaTypeDto> byName, PizzaTypeDto[] byId, List<PizzaTypeDto> capacityLimited) {
+
+        private Menu(Map<String, PizzaTypeDto> byName, PizzaTypeDto[] byId) {
+            this(byName, byId, List.of());
+        }
+
+        // Ids are small and dense, so they index an array directly
+        private static Menu of(List<PizzaType> pizzaTypes) {
+            int maxId = pizzaTypes.stream().mapToInt(PizzaType::getId).max().orElse(-1);
+            PizzaTypeDto[] byId = new PizzaTypeDto[maxId + 1];
+            Map<String, PizzaTypeDto> byName = new HashMap<>();
+
+            for (PizzaType pizzaType : pizzaTypes) {
+                PizzaTypeDto dto = PizzaTypeDto.of(pizzaType);
+                byId[dto.id()] = dto;
+                byName.put(key(dto.name()), dto);
+            }
+
+            List<PizzaTypeDto> capacityLimited = Arrays.stream(byId)
+                    .filter(dto -> dto != null && dto.maxPreparing() != null)
+                    .toList();
+
+            return new Menu(Map.copyOf(byName), byId, capacityLimited);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.repository.ArchivedOrderRepository;
+import com.awesomepizza.slice.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves the READY orders older than slice.archive.min-age from pizza_orders to pizza_orders_archive,
+ * so the live table, its indexes and the status-filtered queries only grow with the orders in progress.
+ * Orders are moved in batches, each in its own short transaction that locks only the rows of the batch.
+ */
+@Component
+@ConditionalOnProperty(name = "slice.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderArchiver {
+    private final static Logger LOGGER = LogManager.getLogger(OrderArchiver.class);
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration minAge;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    private final Timer runTimer;
+    private final Counter archivedOrders;
+
+    public OrderArchiver(
+            OrderRepository orderRepository,
+            ArchivedOrderRepository archivedOrderRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry registry,
+            @Value("${slice.archive.min-age:PT24H}") Duration minAge,
+            @Value("${slice.archive.batch-size:500}") int batchSize,
+            @Value("${slice.archive.max-batches-per-run:100}") int maxBatchesPerRun
+    ) {
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minAge = minAge;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+
+        this.runTimer = Timer.builder("slice.orders.archive.run")
+                .description("Time taken by a run of the order archiver")
+                .register(registry);
+        this.archivedOrders = Counter.builder("slice.orders.archived")
+                .description("READY orders moved to the archive")
+                .register(registry);
+    }
+
+    //region public methods
+
+    // Returns the number of archived orders. A run stops after max-batches-per-run batches, the next run continues
+    @Scheduled(
+            initialDelayString = "${slice.archive.interval:PT5M}",
+            fixedDelayString = "${slice.archive.interval:PT5M}"
+    )
+    public int archive() {
+        return runTimer.record(() -> {
+            LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+            int total = 0;
+
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Integer moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                archivedOrders.increment(moved);
+                total += moved;
+
+                if (moved < batchSize) {
+                    break;
+                }
+            }
+
+            if (total > 0) {
+                LOGGER.info("Archived {} orders completed before {}", total, cutoff);
+            }
+
+            return total;
+        });
+    }
+
+    //endregion
+
+    //region private methods
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        // Orders locked by an archiver running on another node are skipped, so each order is moved once
+        List<Long> ids = orderRepository
+                .findByStatusAndUpdateTimestampBeforeOrderByUpdateTimestampAsc(OrderStatus.READY, cutoff, Limit.of(batchSize))
+                .stream()
+                .map(PizzaOrder::getId)
+                .toList();
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        archivedOrderRepository.copyFromOrders(ids, LocalDateTime.now());
+        orderRepository.deleteByIds(ids);
+
+        return ids.size();
+    }
+
+    //endregion
+}
@@ -0,0 +1,10 @@
+package com.awesomepizza.slice.service;
+
+/**
+ * Strategy used to assign the public code of a new order.
+ * The implementation is selected with the slice.order-code.strategy property.
+ */
+public interface OrderCodeGenerator {
+
+    String nextCode();
+}
@@ -0,0 +1,200 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates when an order will be ready, from its position in the queue and the preparation times learned so far.
+ * Preparation times are exponentially weighted moving averages per pizza type and quantity, updated by the READY events;
+ * the position comes from the rank index of the {@link OrderQueue}, so an estimate never touches the database.
+ * A RECEIVED order waits for the orders ahead of it, shared among the stations active recently, and is then prepared;
+ * a pre-order not due yet is expected to be ready at its dispatch time plus its expected preparation time;
+ * a PREPARING order is expected to be ready at its preparation start plus its expected preparation time.
+ * Orders being prepared are tracked from the events seen by this node: an order claimed on another node has no estimate
+ * until it shows up here.
+ */
+@Component
+public class OrderEtaEstimator {
+    private final static Logger LOGGER = LogManager.getLogger(OrderEtaEstimator.class);
+
+    // Orders of more pizzas than this share the same learned preparation time
+    static final int MAX_QUANTITY_BUCKET = 5;
+
+    // An order still tracked as preparing after this long was finished elsewhere
+    private static final Duration MAX_PREPARATION = Duration.ofDays(1);
+
+    private final Clock clock;
+    private final OrderQueue orderQueue;
+    private final long defaultPrepMillis;
+    private final double smoothing;
+    private final Duration stationIdleTimeout;
+
+    private final ConcurrentHashMap<PrepTimeKey, MovingAverage> prepTimes = new ConcurrentHashMap<>();
+    private final MovingAverage overallPrepTime = new MovingAverage();
+    private final ConcurrentHashMap<String, InPreparation> preparingOrders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LocalDateTime> stationsLastSeen = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OrderEtaEstimator(
+            OrderQueue orderQueue,
+            @Value("${slice.eta.default-prep-time:PT8M}") Duration defaultPrepTime,
+            @Value("${slice.eta.smoothing:0.2}") double smoothing,
+            @Value("${slice.eta.station-idle-timeout:PT15M}") Duration stationIdleTimeout
+    ) {
+        this(Clock.systemDefaultZone(), orderQueue, defaultPrepTime, smoothing, stationIdleTimeout);
+    }
+
+    OrderEtaEstimator(Clock clock, OrderQueue orderQueue, Duration defaultPrepTime, double smoothing, Duration stationIdleTimeout) {
+        this.clock = clock;
+        this.orderQueue = orderQueue;
+        this.defaultPrepMillis = defaultPrepTime.toMillis();
+        this.smoothing = smoothing;
+        this.stationIdleTimeout = stationIdleTimeout;
+    }
+
+    //region public methods
+
+    public OrderStatusResponse withEstimatedReadyTime(OrderStatusResponse response) {
+        return response.withEstimatedReadyTime(estimateReadyTime(response.orderCode(), response.status()));
+    }
+
+    // Null when the order is READY or unknown to this node
+    public LocalDateTime estimateReadyTime(String orderCode, OrderStatus status) {
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        return switch (status) {
+            case RECEIVED -> {
+                OrderDto order = orderQueue.find(orderCode);
+
+                if (order != null && order.dispatchAt() != null && order.dispatchAt().isAfter(now)) {
+                    yield order.dispatchAt().plus(Duration.ofMillis(expectedPrepMillis(order.pizzaType(), order.quantity())));
+                }
+
+                int ordersAhead = orderQueue.position(orderCode);
+
+                if (order == null || ordersAhead < 0) {
+                    yield null;
+                }
+
+                double waitMillis = ordersAhead * overallPrepTime.mean(defaultPrepMillis) / activeStations(now);
+                yield now.plus(Duration.ofMillis(Math.round(waitMillis) + expectedPrepMillis(order.pizzaType(), order.quantity())));
+            }
+            case PREPARING -> {
+                InPreparation order = preparingOrders.get(orderCode);
+
+                if (order == null) {
+                    yield null;
+                }
+
+                LocalDateTime readyTime = order.preparingTimestamp().plus(Duration.ofMillis(expectedPrepMillis(order.pizzaType(), order.quantity())));
+                // An order late on its estimate is expected any moment now
+                yield readyTime.isBefore(now) ? now : readyTime;
+            }
+            default -> null;
+        };
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.assignedStation() != null && !OrderStatus.RECEIVED.equals(event.status())) {
+            stationsLastSeen.put(event.assignedStation(), LocalDateTime.now(clock));
+        }
+
+        switch (event.status()) {
+            case PREPARING -> preparingOrders.put(event.orderCode(), new InPreparation(event.pizzaType(), event.quantity(),
+                    event.preparingTimestamp() != null ? event.preparingTimestamp() : event.updateTimestamp()));
+            case READY -> {
+                InPreparation order = preparingOrders.remove(event.orderCode());
+                LocalDateTime preparingTimestamp = event.preparingTimestamp() != null ? event.preparingTimestamp()
+                        : order != null ? order.preparingTimestamp() : null;
+
+                if (preparingTimestamp != null && event.updateTimestamp() != null) {
+                    learn(event.pizzaType(), event.quantity(), Duration.between(preparingTimestamp, event.updateTimestamp()).toMillis());
+                }
+            }
+            default -> preparingOrders.remove(event.orderCode());
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${slice.eta.cleanup-interval:PT10M}",
+            fixedDelayString = "${slice.eta.cleanup-interval:PT10M}"
+    )
+    public void evictStale() {
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        preparingOrders.values().removeIf(order -> order.preparingTimestamp().isBefore(now.minus(MAX_PREPARATION)));
+        stationsLastSeen.values().removeIf(lastSeen -> lastSeen.isBefore(now.minus(stationIdleTimeout)));
+
+        LOGGER.debug("ETA estimator tracking {} orders in preparation and {} stations", preparingOrders.size(), stationsLastSeen.size());
+    }
+
+    //endregion
+
+    //region private methods
+
+    private void learn(String pizzaType, int quantity, long prepMillis) {
+        if (prepMillis < 0) {
+            return;
+        }
+
+        prepTimes.computeIfAbsent(new PrepTimeKey(pizzaType, Math.min(quantity, MAX_QUANTITY_BUCKET)), key -> new MovingAverage())
+                .record(prepMillis, smoothing);
+        overallPrepTime.record(prepMillis, smoothing);
+    }
+
+    // Learned time of the pizza type and quantity, else of all the orders, else the configured default
+    private long expectedPrepMillis(String pizzaType, int quantity) {
+        MovingAverage prepTime = prepTimes.get(new PrepTimeKey(pizzaType, Math.min(quantity, MAX_QUANTITY_BUCKET)));
+        double fallback = overallPrepTime.mean(defaultPrepMillis);
+        return Math.round(prepTime == null ? fallback : prepTime.mean(fallback));
+    }
+
+    private int activeStations(LocalDateTime now) {
+        LocalDateTime activeSince = now.minus(stationIdleTimeout);
+        int active = 0;
+
+        for (LocalDateTime lastSeen : stationsLastSeen.values()) {
+            if (lastSeen.isAfter(activeSince)) {
+                active++;
+            }
+        }
+
+        return Math.max(active, 1);
+    }
+
+    //endregion
+
+    private record PrepTimeKey(String pizzaType, int quantity) {
+    }
+
+    private record InPreparation(String pizzaType, int quantity, LocalDateTime preparingTimestamp) {
+    }
+
+    private static final class MovingAverage {
+        private volatile double mean = Double.NaN;
+
+        synchronized void record(double sample, double smoothing) {
+            mean = Double.isNaN(mean) ? sample : mean + smoothing * (sample - mean);
+        }
+
+        double mean(double fallback) {
+            double current = mean;
+            return Double.isNaN(current) ? fallback : current;
+        }
+    }
+}
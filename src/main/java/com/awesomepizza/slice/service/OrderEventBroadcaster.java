@@ -0,0 +1,197 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pushes order status transitions to server-sent event subscribers, either for a single order or for the whole queue.
+ * Idle subscribers only cost an async request slot: no thread is held between events.
+ * Events are handed to a per-subscriber buffer and written by the task executor, so publishing never blocks the caller;
+ * a subscriber that falls too far behind is disconnected and is expected to reconnect.
+ */
+@Component
+public class OrderEventBroadcaster {
+    private final static Logger LOGGER = LogManager.getLogger(OrderEventBroadcaster.class);
+
+    private final Executor executor;
+    private final long timeoutMillis;
+    private final int maxPendingEvents;
+    private final int maxSubscribers;
+
+    private final ConcurrentHashMap<String, Set<Subscriber>> orderSubscribers = new ConcurrentHashMap<>();
+    private final Set<Subscriber> queueSubscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public OrderEventBroadcaster(
+            @Qualifier("applicationTaskExecutor") Executor executor,
+            @Value("${slice.events.timeout:PT30M}") Duration timeout,
+            @Value("${slice.events.max-pending-events:64}") int maxPendingEvents,
+            @Value("${slice.events.max-subscribers:50000}") int maxSubscribers
+    ) {
+        this.executor = executor;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxPendingEvents = maxPendingEvents;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    //region public methods
+
+    public SseEmitter subscribeToOrder(String orderCode, OrderStatusResponse currentStatus) {
+        // Per-order sets are created and dropped atomically, so a subscriber never lands in a discarded set
+        Subscriber subscriber = register(removed -> orderSubscribers.computeIfPresent(orderCode, (code, subscribers) -> {
+            subscribers.remove(removed);
+            return subscribers.isEmpty() ? null : subscribers;
+        }));
+        orderSubscribers.compute(orderCode, (code, subscribers) -> {
+            Set<Subscriber> current = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+            current.add(subscriber);
+            return current;
+        });
+
+        // The current status is sent straight away, so the client does not need an extra poll
+        subscriber.offer(SseEmitter.event().name("status").data(currentStatus));
+        return subscriber.emitter;
+    }
+
+    public SseEmitter subscribeToQueue() {
+        Subscriber subscriber = register(queueSubscribers::remove);
+        queueSubscribers.add(subscriber);
+        return subscriber.emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        Set<Subscriber> subscribers = orderSubscribers.get(event.orderCode());
+
+        if (subscribers != null) {
+            OrderStatusResponse status = event.toOrderStatusResponse();
+            subscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().name("status").data(status)));
+        }
+
+        if (!queueSubscribers.isEmpty()) {
+            OrderDto order = event.toOrderDto();
+            queueSubscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().name("order").data(order)));
+        }
+    }
+
+    // Comments keep idle connections open through proxies and let the server detect dead clients
+    @Scheduled(fixedDelayString = "${slice.events.heartbeat-interval:PT15S}")
+    public void sendHeartbeats() {
+        orderSubscribers.values().forEach(subscribers ->
+                subscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().comment("heartbeat"))));
+        queueSubscribers.forEach(subscriber -> subscriber.offer(SseEmitter.event().comment("heartbeat")));
+    }
+
+    //endregion
+
+    //region private methods
+
+    private Subscriber register(Consumer<Subscriber> onClose) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many event subscribers");
+        }
+
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis), onClose);
+
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(error -> subscriber.close());
+
+        return subscriber;
+    }
+
+    //endregion
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Consumer<Subscriber> onClose;
+
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, Consumer<Subscriber> onClose) {
+            this.emitter = emitter;
+            this.onClose = onClose;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+
+            // Backpressure: a subscriber that cannot keep up is dropped instead of buffering without bound
+            if (pendingCount.incrementAndGet() > maxPendingEvents) {
+                LOGGER.warn("Event subscriber too slow, disconnecting");
+                close();
+                emitter.complete();
+                return;
+            }
+
+            pending.add(event);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Event subscriber disconnected: {}", e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+            }
+
+            // Events offered after the last poll but before the flag was reset would otherwise wait for the next offer
+            if (!closed.get() && !pending.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                onClose.accept(this);
+                subscriberCount.decrementAndGet();
+                pending.clear();
+            }
+        }
+    }
+}
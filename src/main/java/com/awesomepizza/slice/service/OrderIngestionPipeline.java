@@ -0,0 +1,225 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Groups the orders created by concurrent requests into micro-batches and inserts each batch with JDBC batching
+ * in a single transaction. A batch is flushed as soon as it is full or when its oldest order has waited maxLatency.
+ * Callers block until the transaction holding their order has committed, so an order code is only returned once durable.
+ * A caller that times out abandons its order, unless the flusher has already taken it into a transaction: then the caller
+ * waits for that transaction, so an order is never persisted after its client was told it failed. The batch transactions
+ * time out after transactionTimeout, which also bounds that wait.
+ */
+@Component
+public class OrderIngestionPipeline {
+    private final static Logger LOGGER = LogManager.getLogger(OrderIngestionPipeline.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long maxLatencyNanos;
+    private final Duration timeout;
+    private final Duration transactionTimeout;
+    private final BlockingQueue<PendingOrder> queue;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public OrderIngestionPipeline(
+            OrderRepository orderRepository,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${slice.ingestion.batch-size:50}") int batchSize,
+            @Value("${slice.ingestion.max-latency:PT0.005S}") Duration maxLatency,
+            @Value("${slice.ingestion.queue-capacity:10000}") int queueCapacity,
+            @Value("${slice.ingestion.timeout:PT5S}") Duration timeout,
+            @Value("${slice.ingestion.transaction-timeout:PT10S}") Duration transactionTimeout
+    ) {
+        this.orderRepository = orderRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Transaction timeouts are in whole seconds
+        this.transactionTemplate.setTimeout((int) Math.max(1, transactionTimeout.toSeconds()));
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.timeout = timeout;
+        this.transactionTimeout = transactionTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    //region public methods
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform().name("order-ingestion").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // The flusher is not interrupted: it keeps going until the orders already accepted are persisted
+        running = false;
+        flusher.join(timeout.toMillis());
+    }
+
+    public PizzaOrder submit(PizzaOrder order) {
+        PendingOrder pending = new PendingOrder(order, new CompletableFuture<>(), new AtomicBoolean());
+
+        if (!running || !queue.offer(pending)) {
+            LOGGER.warn("Order ingestion queue full, rejecting order {}", order.getOrderCode());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order intake is saturated, retry later");
+        }
+
+        try {
+            return pending.result().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (pending.take()) {
+                pending.result().cancel(false);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order was not persisted in time, retry later");
+            }
+
+            // Already in a transaction: its outcome decides, or the order could be persisted behind a failure
+            return awaitFlushed(pending);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for order " + order.getOrderCode(), e);
+        }
+    }
+
+    //endregion
+
+    //region private methods
+
+    private void run() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            collect(batch);
+
+            // The orders abandoned by their callers are dropped, the others can no longer be abandoned
+            batch.removeIf(pending -> !pending.take());
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private PizzaOrder awaitFlushed(PendingOrder pending) {
+        try {
+            // By then the transaction has timed out and rolled back, unless it already committed
+            return pending.result().get(transactionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Transaction of order {} still running after {}", pending.order().getOrderCode(), transactionTimeout);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order was not persisted in time, retry later");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for order " + pending.order().getOrderCode(), e);
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return new IllegalStateException(e.getCause());
+    }
+
+    private void collect(List<PendingOrder> batch) {
+        try {
+            PendingOrder first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+
+            // Wait at most maxLatency for the batch to fill up, so a lone order is not delayed any longer
+            long deadline = System.nanoTime() + maxLatencyNanos;
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || remaining <= 0) {
+                    return;
+                }
+
+                PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // The flusher only stops through the running flag; the orders collected so far are still flushed
+            LOGGER.debug("Order ingestion interrupted while collecting a batch");
+        }
+    }
+
+    private void flush(List<PendingOrder> batch) {
+        List<PizzaOrder> savedOrders;
+
+        try {
+            savedOrders = transactionTemplate.execute(status -> {
+                List<PizzaOrder> saved = orderRepository.saveAll(batch.stream().map(PendingOrder::order).toList());
+                // Published inside the transaction: listeners run once the whole batch has committed
+                saved.forEach(order -> eventPublisher.publishEvent(OrderStatusChangedEvent.of(order, null)));
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                LOGGER.warn("Order {} could not be persisted", batch.get(0).order().getOrderCode(), e);
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+
+            // A single bad order must not fail the others: retry them one by one
+            LOGGER.warn("Batch of {} orders failed, retrying orders one by one", batch.size());
+            for (PendingOrder pending : batch) {
+                pending.order().setId(null);
+                flush(List.of(pending));
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(savedOrders.get(i));
+        }
+    }
+
+    //endregion
+
+    // taken is set once, either by the flusher writing the order or by the caller abandoning it
+    private record PendingOrder(PizzaOrder order, CompletableFuture<PizzaOrder> result, AtomicBoolean taken) {
+
+        private boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+    }
+}
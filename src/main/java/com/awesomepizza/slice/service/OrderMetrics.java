@@ -0,0 +1,83 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.cache.TwoLevelCache;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order pipeline meters, exported on /actuator/prometheus with the JDBC pool and Hibernate ones.
+ * Every meter is registered once at startup: the hot path only increments a counter,
+ * and gauges are computed from existing state when the registry is scraped.
+ */
+@Component
+public class OrderMetrics {
+
+    // Latency of the OrderService operations, tagged by operation
+    public static final String OPERATION_TIMER = "slice.orders.operation";
+
+    private final Map<OrderStatus, Counter> transitions = new EnumMap<>(OrderStatus.class);
+
+    public OrderMetrics(MeterRegistry registry, OrderQueue orderQueue, TwoLevelCache<OrderStatusResponse> orderStatusCache) {
+        for (OrderStatus status : OrderStatus.values()) {
+            transitions.put(status, Counter.builder("slice.orders.transitions")
+                    .description("Orders that entered a status")
+                    .tag("status", status.name())
+                    .register(registry));
+        }
+
+        Gauge.builder("slice.orders.queue.depth", orderQueue, OrderQueue::size)
+                .description("Orders waiting in RECEIVED and due to the kitchen")
+                .register(registry);
+        Gauge.builder("slice.orders.queue.scheduled", orderQueue, OrderQueue::scheduledSize)
+                .description("Pre-orders in RECEIVED not due yet")
+                .register(registry);
+        TimeGauge.builder("slice.orders.queue.oldest.age", orderQueue, TimeUnit.MILLISECONDS, OrderMetrics::oldestAgeMillis)
+                .description("Time since the order at the head of the queue was due")
+                .register(registry);
+
+        String cacheName = orderStatusCache.getName();
+        FunctionCounter.builder("slice.cache.gets", orderStatusCache, TwoLevelCache::getLocalHits)
+                .tags("cache", cacheName, "result", "local_hit")
+                .register(registry);
+        FunctionCounter.builder("slice.cache.gets", orderStatusCache, TwoLevelCache::getRemoteHits)
+                .tags("cache", cacheName, "result", "remote_hit")
+                .register(registry);
+        FunctionCounter.builder("slice.cache.gets", orderStatusCache, TwoLevelCache::getMisses)
+                .tags("cache", cacheName, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("slice.cache.remote.errors", orderStatusCache, TwoLevelCache::getRemoteErrors)
+                .tag("cache", cacheName)
+                .register(registry);
+        Gauge.builder("slice.cache.local.size", orderStatusCache, TwoLevelCache::getLocalSize)
+                .tag("cache", cacheName)
+                .register(registry);
+    }
+
+    //region public methods
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        transitions.get(event.status()).increment();
+    }
+
+    //endregion
+
+    //region private methods
+
+    private static double oldestAgeMillis(OrderQueue orderQueue) {
+        LocalDateTime oldest = orderQueue.oldestDispatchAt();
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis();
+    }
+
+    //endregion
+}
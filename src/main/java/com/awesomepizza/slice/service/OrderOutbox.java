@@ -0,0 +1,85 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.dto.OutboxEventDto;
+import com.awesomepizza.slice.entity.OrderOutboxEvent;
+import com.awesomepizza.slice.entity.OutboxConsumerOffset;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderOutboxRepository;
+import com.awesomepizza.slice.repository.OutboxOffsetRepository;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transactional outbox of the order status changes: every event published by {@link OrderService} is appended
+ * to order_outbox in the transaction that changed the order, so the log holds exactly the committed changes.
+ * The events are delivered to the sinks by the {@link OutboxRelay}, and can be read by position by any consumer.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutbox {
+    private final static Logger LOGGER = LogManager.getLogger(OrderOutbox.class);
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final OrderOutboxRepository outboxRepository;
+    private final OutboxOffsetRepository offsetRepository;
+
+    //region public methods
+
+    // Runs just before the commit, in the transaction of the change: the insert is flushed in the same JDBC batch
+    // as the order ones and nothing is added after the commit, so the latency of the request barely changes
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        outboxRepository.save(OrderOutboxEvent.of(event, LocalDateTime.now()));
+    }
+
+    // Events of the log after the given position, in order: a consumer can replay from any position still retained
+    @Transactional(readOnly = true)
+    public List<OutboxEventDto> getEvents(long afterPosition, int limit) {
+        return outboxRepository
+                .findByLogPositionGreaterThanOrderByLogPositionAsc(afterPosition, Limit.of(Math.clamp(limit, 1, MAX_PAGE_SIZE)))
+                .stream()
+                .map(OrderMapper::toOutboxEventDto)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Long> getOffsets() {
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        offsetRepository.findAll().forEach(offset -> offsets.put(offset.getConsumer(), offset.getLogPosition()));
+        return offsets;
+    }
+
+    // Sets the position of the last event received by a consumer: pull consumers commit their progress with it,
+    // and moving it back makes the relay deliver the following events again to a sink
+    @Transactional
+    public void setOffset(String consumer, long position) {
+        if (OutboxRelay.SEQUENCER.equals(consumer)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The offset of the outbox sequencer cannot be changed");
+        }
+
+        OutboxConsumerOffset offset = offsetRepository.findById(consumer)
+                .orElseGet(() -> new OutboxConsumerOffset(consumer, 0, null));
+        offset.setLogPosition(Math.max(position, 0));
+        offset.setUpdateTimestamp(LocalDateTime.now());
+        offsetRepository.save(offset);
+
+        LOGGER.info("Outbox offset of {} set to {}", consumer, offset.getLogPosition());
+    }
+
+    //endregion
+}
@@ -0,0 +1,273 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.QueuedOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory mirror of the RECEIVED orders, kept in dispatch order (see {@link DispatchPolicy}).
+ * It is fed by the order status events after their transaction commits and serves the queue without a DB round-trip.
+ * Reads never lock: they return an immutable snapshot that is rebuilt only when the queue has changed since the last read.
+ * Pre-orders not due yet wait in a separate map sorted by dispatch time, so they do not weigh on the queue,
+ * and are released into it when they fall due: each release only looks at the head of that map.
+ * The position of an order in the queue comes from an {@link OrderRankIndex}, updated with every change.
+ */
+@Component
+public class OrderQueue {
+    private final static Logger LOGGER = LogManager.getLogger(OrderQueue.class);
+
+    private static final Comparator<QueueKey> QUEUE_ORDER = Comparator
+            .comparing(QueueKey::dispatchAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(QueueKey::id, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(QueueKey::orderCode);
+
+    private final Clock clock;
+    private final OrderRepository orderRepository;
+
+    // Orders due to the kitchen, and pre-orders waiting for their dispatch time
+    private final ConcurrentSkipListMap<QueueKey, OrderDto> orders = new ConcurrentSkipListMap<>(QUEUE_ORDER);
+    private final ConcurrentSkipListMap<QueueKey, OrderDto> scheduledOrders = new ConcurrentSkipListMap<>(QUEUE_ORDER);
+    private final ConcurrentHashMap<String, QueueKey> keysByOrderCode = new ConcurrentHashMap<>();
+    // When each order recently left the queue, so a resync does not put back an order claimed while it was loading.
+    // Only the removals since the start of the last resync are kept
+    private final ConcurrentHashMap<String, LocalDateTime> removedAt = new ConcurrentHashMap<>();
+    // Stamp of the last time each queued order was added, so a resync keeps the orders added while it was loading,
+    // new or sent back to the queue, even when the load missed them
+    private final AtomicLong additions = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> addedAt = new ConcurrentHashMap<>();
+    // Indexes the due orders only. Guarded by its own monitor, always updated after the maps
+    private final OrderRankIndex<QueueKey> rankIndex = new OrderRankIndex<>(QUEUE_ORDER);
+
+    // Bumped after every change, so a cached snapshot can tell whether it is still current
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(-1, List.of());
+
+    @Autowired
+    public OrderQueue(OrderRepository orderRepository) {
+        this(Clock.systemDefaultZone(), orderRepository);
+    }
+
+    OrderQueue(Clock clock, OrderRepository orderRepository) {
+        this.clock = clock;
+        this.orderRepository = orderRepository;
+    }
+
+    //region public methods
+
+    public List<OrderDto> snapshot() {
+        Snapshot current = snapshot;
+        // Read the version before copying: a change racing with the copy leaves a stale version behind,
+        // so the next read rebuilds the snapshot instead of serving it
+        long currentVersion = version.get();
+
+        if (current.version() == currentVersion) {
+            return current.orders();
+        }
+
+        List<OrderDto> queuedOrders = List.copyOf(orders.values());
+        snapshot = new Snapshot(currentVersion, queuedOrders);
+        return queuedOrders;
+    }
+
+    // Number of orders due to the kitchen
+    public int size() {
+        return orders.size();
+    }
+
+    // Number of pre-orders not due yet
+    public int scheduledSize() {
+        return scheduledOrders.size();
+    }
+
+    // Number of due orders ahead of the given one, or -1 if it is not due or not in the queue
+    public int position(String orderCode) {
+        QueueKey key = keysByOrderCode.get(orderCode);
+
+        if (key == null) {
+            return -1;
+        }
+
+        synchronized (rankIndex) {
+            return rankIndex.rank(key);
+        }
+    }
+
+    // The queued order with the given code, due or scheduled, or null if it is not in the queue
+    public OrderDto find(String orderCode) {
+        QueueKey key = keysByOrderCode.get(orderCode);
+
+        if (key == null) {
+            return null;
+        }
+
+        OrderDto order = orders.get(key);
+        return order != null ? order : scheduledOrders.get(key);
+    }
+
+    // Dispatch time of the order at the head of the queue, or null when no order is due
+    public LocalDateTime oldestDispatchAt() {
+        Map.Entry<QueueKey, OrderDto> oldest = orders.firstEntry();
+        return oldest == null ? null : oldest.getKey().dispatchAt();
+    }
+
+    // Moves the pre-orders that have fallen due into the queue, in dispatch order
+    @Scheduled(
+            initialDelayString = "${slice.dispatch.release-interval:PT1S}",
+            fixedDelayString = "${slice.dispatch.release-interval:PT1S}"
+    )
+    public void releaseDue() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        int released = 0;
+
+        for (Map.Entry<QueueKey, OrderDto> due = scheduledOrders.firstEntry();
+             due != null && !due.getKey().dispatchAt().isAfter(now);
+             due = scheduledOrders.firstEntry()) {
+            // A concurrent release may have taken it already
+            if (scheduledOrders.remove(due.getKey(), due.getValue())) {
+                enqueue(due.getKey(), due.getValue());
+
+                // Claimed while it was being released: taken back out
+                if (due.getKey().equals(keysByOrderCode.get(due.getKey().orderCode()))) {
+                    released++;
+                } else {
+                    dequeue(due.getKey());
+                }
+            }
+        }
+
+        if (released > 0) {
+            LOGGER.debug("{} pre-orders released to the queue", released);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (OrderStatus.RECEIVED.equals(event.status())) {
+            add(event.id(), event.toOrderDto());
+        } else {
+            removedAt.put(event.orderCode(), LocalDateTime.now(clock));
+            remove(event.orderCode());
+        }
+    }
+
+    // The queue is rebuilt at startup and then periodically reconciled with the database,
+    // which also picks up the orders created or claimed by other nodes
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${slice.queue.resync-interval:PT30S}",
+            fixedDelayString = "${slice.queue.resync-interval:PT30S}"
+    )
+    public void rebuild() {
+        LocalDateTime loadTimestamp = LocalDateTime.now(clock);
+        long loadStamp = additions.get();
+        // Removals before the load started are already reflected by it
+        removedAt.values().removeIf(timestamp -> timestamp.isBefore(loadTimestamp));
+        List<QueuedOrder> queuedOrders = orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED);
+
+        Set<String> loadedOrderCodes = new HashSet<>();
+        for (QueuedOrder queuedOrder : queuedOrders) {
+            String orderCode = queuedOrder.order().orderCode();
+            loadedOrderCodes.add(orderCode);
+
+            // Claimed after the load read it: the event has already taken it out of the queue, or is taking it out
+            if (!removedAt.containsKey(orderCode)) {
+                add(queuedOrder.id(), queuedOrder.order());
+
+                if (removedAt.containsKey(orderCode)) {
+                    remove(orderCode);
+                }
+            }
+        }
+
+        // Orders added after the load started may be missing from it, so they are kept
+        keysByOrderCode.keySet().stream()
+                .filter(orderCode -> !loadedOrderCodes.contains(orderCode))
+                .filter(orderCode -> addedAt.getOrDefault(orderCode, Long.MIN_VALUE) <= loadStamp)
+                .toList()
+                .forEach(this::remove);
+
+        LOGGER.debug("Order queue rebuilt with {} orders due and {} scheduled", size(), scheduledSize());
+    }
+
+    //endregion
+
+    //region private methods
+
+    private void add(Long id, OrderDto order) {
+        QueueKey key = new QueueKey(order.dispatchAt(), id, order.orderCode());
+        addedAt.put(order.orderCode(), additions.incrementAndGet());
+        QueueKey previousKey = keysByOrderCode.put(order.orderCode(), key);
+
+        // An order sent back to the queue keeps its code, but not necessarily its dispatch time
+        if (previousKey != null && !previousKey.equals(key)) {
+            dequeue(previousKey);
+        }
+
+        if (key.dispatchAt() != null && key.dispatchAt().isAfter(LocalDateTime.now(clock))) {
+            scheduledOrders.put(key, order);
+        } else {
+            scheduledOrders.remove(key);
+            enqueue(key, order);
+        }
+    }
+
+    private void remove(String orderCode) {
+        QueueKey key = keysByOrderCode.remove(orderCode);
+
+        if (key != null) {
+            addedAt.remove(orderCode);
+            dequeue(key);
+        }
+    }
+
+    private void enqueue(QueueKey key, OrderDto order) {
+        orders.put(key, order);
+        version.incrementAndGet();
+
+        synchronized (rankIndex) {
+            rankIndex.add(key);
+        }
+    }
+
+    private void dequeue(QueueKey key) {
+        scheduledOrders.remove(key);
+
+        if (orders.remove(key) != null) {
+            version.incrementAndGet();
+
+            synchronized (rankIndex) {
+                rankIndex.remove(key);
+            }
+        }
+    }
+
+    //endregion
+
+    // Ties of dispatch time are broken by id, as in the claim queries, so the queue and the positions follow the claims
+    private record QueueKey(LocalDateTime dispatchAt, Long id, String orderCode) {
+    }
+
+    private record Snapshot(long version, List<OrderDto> orders) {
+    }
+}
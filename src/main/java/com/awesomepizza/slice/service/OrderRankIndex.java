@@ -0,0 +1,151 @@
+package com.awesomepizza.slice.service;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+/**
+ * Order-statistic index of the queued orders: tells how many orders are ahead of a given one in O(log n).
+ * It is a treap (a binary search tree balanced by random priorities) on the queue order, where every node knows
+ * the size of its subtree, so an order can be inserted anywhere in the queue, e.g. an express order ahead of the
+ * normal ones, and the rank of an order is the number of nodes on its left along the path from the root.
+ * Not thread-safe: OrderQueue guards it with a lock.
+ */
+final class OrderRankIndex<K> {
+    private final Comparator<? super K> comparator;
+    private final SplittableRandom random = new SplittableRandom();
+
+    private Node<K> root;
+
+    OrderRankIndex(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    // Inserts the key at its place in the queue, unless it is already indexed
+    void add(K key) {
+        if (rank(key) >= 0) {
+            return;
+        }
+
+        Split<K> parts = split(root, key);
+        root = merge(merge(parts.before(), new Node<>(key, random.nextInt())), parts.after());
+    }
+
+    void remove(K key) {
+        root = remove(root, key);
+    }
+
+    // Number of keys ahead of the given one, or -1 if it is not indexed
+    int rank(K key) {
+        int ahead = 0;
+        Node<K> node = root;
+
+        while (node != null) {
+            int comparison = comparator.compare(key, node.key);
+
+            if (comparison == 0) {
+                return ahead + size(node.left);
+            }
+
+            if (comparison < 0) {
+                node = node.left;
+            } else {
+                ahead += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+
+        return -1;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    //region private methods
+
+    // Splits the tree into the keys before the given one and the others
+    private Split<K> split(Node<K> node, K key) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+
+        if (comparator.compare(node.key, key) < 0) {
+            Split<K> parts = split(node.right, key);
+            node.right = parts.before();
+            node.update();
+            return new Split<>(node, parts.after());
+        }
+
+        Split<K> parts = split(node.left, key);
+        node.left = parts.after();
+        node.update();
+        return new Split<>(parts.before(), node);
+    }
+
+    // Joins two trees where every key of the first comes before the keys of the second
+    private Node<K> merge(Node<K> first, Node<K> second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+
+        second.left = merge(first, second.left);
+        second.update();
+        return second;
+    }
+
+    private Node<K> remove(Node<K> node, K key) {
+        if (node == null) {
+            return null;
+        }
+
+        int comparison = comparator.compare(key, node.key);
+
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        }
+
+        if (comparison < 0) {
+            node.left = remove(node.left, key);
+        } else {
+            node.right = remove(node.right, key);
+        }
+
+        node.update();
+        return node;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    //endregion
+
+    private record Split<K>(Node<K> before, Node<K> after) {
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private final int priority;
+        private Node<K> left;
+        private Node<K> right;
+        private int size = 1;
+
+        private Node(K key, int priority) {
+            this.key = key;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
@@ -1,108 +1,293 @@
 package com.awesomepizza.slice.service;
 
+import com.awesomepizza.slice.cache.IdempotencyStore;
+import com.awesomepizza.slice.cache.TwoLevelCache;
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
 import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
 import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.dto.OrderPage;
 import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.dto.QueueCursor;
+import com.awesomepizza.slice.entity.ArchivedPizzaOrder;
 import com.awesomepizza.slice.entity.PizzaOrder;
 import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.exception.OrderStatusConflictException;
+import com.awesomepizza.slice.repository.ArchivedOrderRepository;
 import com.awesomepizza.slice.repository.OrderRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
     private final static Logger LOGGER = LogManager.getLogger(OrderService.class);
 
+    // Station used by callers that do not identify themselves, e.g. a kitchen with a single oven
+    public static final String DEFAULT_STATION = "main";
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    public static final String CLAIM_ONLY_MESSAGE = "Orders move to PREPARING when a station claims them with api/orders/next";
+
     private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final KitchenStations kitchenStations;
+    private final PizzaTypeLocks pizzaTypeLocks;
+    private final OrderQueue orderQueue;
+    private final OrderIngestionPipeline orderIngestionPipeline;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final MenuCatalog menuCatalog;
+    private final DispatchPolicy dispatchPolicy;
+    private final BatchPolicy batchPolicy;
+    private final OrderStatusCache orderStatusCache;
+    private final OrderEtaEstimator orderEtaEstimator;
+    private final IdempotencyStore<OrderStatusResponse> orderIdempotencyStore;
+    private final ApplicationEventPublisher eventPublisher;
 
     //region public methods
 
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "create"}, histogram = true)
     public OrderStatusResponse createOrder(CreateOrderRequest request) {
-        PizzaOrder order = new PizzaOrder();
-
-        order.setOrderCode(generateUniqueOrderCode());
-        order.setPizzaType(request.getPizzaType());
-        order.setQuantity(request.getQuantity());
-        order.setStatus(OrderStatus.RECEIVED);
-        order.setInsertTimestamp(LocalDateTime.now());
-        order.setUpdateTimestamp(LocalDateTime.now());
+        // Checked against the in-memory menu, without a DB round-trip
+        String pizzaType = menuCatalog.resolve(request.getPizzaType());
+        PizzaOrder order = newOrder(request, pizzaType, LocalDateTime.now());
 
-        PizzaOrder savedOrder = orderRepository.save(order);
+        // Persisted with the other orders created in the same few milliseconds, in a single batched transaction
+        PizzaOrder savedOrder = orderIngestionPipeline.submit(order);
 
         return mapToOrderStatusResponse(savedOrder);
     }
 
+    // Repeats of a request with the same idempotency key from the same client get the response of the first one,
+    // without creating another order
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "create"}, histogram = true)
+    public IdempotencyStore.Outcome<OrderStatusResponse> createOrder(CreateOrderRequest request, String client, String idempotencyKey) {
+        return orderIdempotencyStore.execute(client, idempotencyKey, fingerprint(request), () -> createOrder(request));
+    }
+
+    // All the items are inserted in one batched transaction: either every order is created or none is
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "create_bulk"}, histogram = true)
+    @Transactional
+    public BulkOrderResponse createOrders(BulkOrderRequest request) {
+        LocalDateTime now = LocalDateTime.now();
+        // Every type is checked before anything is created
+        List<String> pizzaTypes = menuCatalog.resolveAll(request.getItems().stream().map(CreateOrderRequest::getPizzaType).toList());
+        List<PizzaOrder> orders = new ArrayList<>(request.getItems().size());
+
+        for (int i = 0; i < request.getItems().size(); i++) {
+            orders.add(newOrder(request.getItems().get(i), pizzaTypes.get(i), now));
+        }
+
+        List<PizzaOrder> savedOrders = orderRepository.saveAll(orders);
+        savedOrders.forEach(order -> eventPublisher.publishEvent(OrderStatusChangedEvent.of(order, null)));
+
+        return new BulkOrderResponse(request.getReference(), savedOrders.stream().map(this::mapToOrderStatusResponse).toList());
+    }
+
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "status"}, histogram = true)
     public OrderStatusResponse getOrderStatus(String orderCode) {
-        PizzaOrder order = getPizzaOrder(orderCode);
+        // Read through the near cache and Redis, the database is only queried on a miss
+        OrderStatusResponse response = orderStatusCache.get(orderCode, this::loadOrderStatus);
 
-        if (order == null) {
+        if (response == null) {
             LOGGER.warn("Order {} not found", orderCode);
             return null;
         }
 
-        return mapToOrderStatusResponse(order);
+        // The estimate changes with the queue, so it is attached to the cached status on every call
+        return orderEtaEstimator.withEstimatedReadyTime(response);
     }
 
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "update"}, histogram = true)
+    @Transactional
     public OrderStatusResponse updateOrderStatus(String orderCode, OrderStatus newStatus) {
+        // PREPARING is only entered by a claim (getNextOrder, getNextBatch), which assigns the station and applies the caps
+        if (newStatus.previousStatuses().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, CLAIM_ONLY_MESSAGE);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // The transition is checked and applied by the database in one conditional update per allowed previous status,
+        // without reading the order first: a concurrent change makes the update match no row instead of being overwritten
+        OrderStatus previousStatus = null;
+        for (OrderStatus expectedStatus : newStatus.previousStatuses()) {
+            if (orderRepository.transitionStatus(orderCode, expectedStatus, newStatus, now) > 0) {
+                previousStatus = expectedStatus;
+                break;
+            }
+        }
+
+        // Read back the order for the response and the event; it stays locked by this transaction until commit
         PizzaOrder order = getPizzaOrder(orderCode);
 
-        // Check if the order status is RECEIVED or PREPARING
-        // Otherwise, if it is in READY state it cannot be updated
-        if (order.getStatus().equals(OrderStatus.READY)) {
-            LOGGER.warn("Order {} in READY state, cannot update", order.getOrderCode());
+        if (order == null) {
+            // An archived order is READY, so it cannot change status any more
+            Optional<ArchivedPizzaOrder> archivedOrder = archivedOrderRepository.findByOrderCode(orderCode);
+            if (archivedOrder.isPresent()) {
+                LOGGER.warn("Order {} archived in {} state, cannot move to {}", orderCode, archivedOrder.get().getStatus(), newStatus);
+                throw new OrderStatusConflictException(orderCode, archivedOrder.get().getStatus(), newStatus);
+            }
+
+            LOGGER.warn("Order {} not found", orderCode);
             return null;
         }
 
-        order.setStatus(newStatus);
-        order.setUpdateTimestamp(LocalDateTime.now());
+        if (previousStatus == null) {
+            LOGGER.warn("Order {} in {} state, cannot move to {}", orderCode, order.getStatus(), newStatus);
+            throw new OrderStatusConflictException(orderCode, order.getStatus(), newStatus);
+        }
+
+        eventPublisher.publishEvent(OrderStatusChangedEvent.of(order, previousStatus));
 
-        PizzaOrder updatedOrder = orderRepository.save(order);
-        return mapToOrderStatusResponse(updatedOrder);
+        return mapToOrderStatusResponse(order);
     }
 
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "queue"}, histogram = true)
     public List<OrderDto> getOrderQueue() {
-        List<PizzaOrder> queuedOrders = orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED);
+        // Served from the in-memory mirror of the RECEIVED orders, without a DB round-trip
+        return orderQueue.snapshot();
+    }
+
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "queue_page"}, histogram = true)
+    @Transactional(readOnly = true)
+    public OrderPage getOrderQueuePage(String cursor, int size) {
+        Limit limit = Limit.of(Math.clamp(size, 1, MAX_PAGE_SIZE));
 
-        return queuedOrders.stream()
-                .map(this::mapToOrderDto)
-                .collect(Collectors.toList());
+        List<PizzaOrder> orders;
+        if (cursor == null || cursor.isBlank()) {
+            orders = orderRepository.findByStatusOrderByDispatchAtAscIdAsc(OrderStatus.RECEIVED, limit);
+        } else {
+            QueueCursor after = QueueCursor.decode(cursor);
+            orders = orderRepository.findByStatusAfter(OrderStatus.RECEIVED, after.dispatchAt(), after.id(), limit);
+        }
+
+        // A full page may be followed by more orders, the client asks for the next page with the cursor of the last one
+        String nextCursor = orders.size() < limit.max() ? null : QueueCursor.of(orders.get(orders.size() - 1)).encode();
+
+        return new OrderPage(orders.stream().map(this::mapToOrderDto).toList(), nextCursor);
+    }
+
+    // Hands the queued orders to the consumer one at a time, straight from the database cursor
+    @Transactional(readOnly = true)
+    public void streamOrderQueue(Consumer<OrderDto> consumer) {
+        try (Stream<OrderDto> orders = orderRepository.streamOrderDtosByStatus(OrderStatus.RECEIVED)) {
+            orders.forEach(consumer);
+        }
     }
 
-    public OrderDto getNextOrder() {
-        // If nextOrder is called multiple times, first we need to check if an order is actually in PREPARING state
-        Optional<PizzaOrder> currentOrder = orderRepository.findByStatus(OrderStatus.PREPARING);
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "next"}, histogram = true)
+    @Transactional
+    public OrderDto getNextOrder(String station) {
+        // Concurrent calls from the same station wait for each other, so the later ones find the order claimed by the first
+        kitchenStations.lock(station);
+
+        // If nextOrder is called multiple times, first we need to check if the station is already preparing an order
+        Optional<PizzaOrder> currentOrder =
+                orderRepository.findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(OrderStatus.PREPARING, station);
 
         if (currentOrder.isPresent()) {
             return mapToOrderDto(currentOrder.get());
         }
 
-        // If no order is in PREPARING, then get the next RECEIVED order
-        List<PizzaOrder> queuedOrders = orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED);
+        // If the station has no order in PREPARING, then claim the first RECEIVED order in dispatch order that is due
+        LocalDateTime now = LocalDateTime.now();
+        Optional<PizzaOrder> queuedOrder = claimNext(now);
 
-        // If the queue is empty or null, then return null
-        if (queuedOrders == null || queuedOrders.isEmpty()) {
+        // If the queue is empty, then return null
+        if (queuedOrder.isEmpty()) {
             LOGGER.warn("No order in queue");
             return null;
         }
 
-        PizzaOrder nextOrder = queuedOrders.get(0);
-        nextOrder.setStatus(OrderStatus.PREPARING);
-        nextOrder.setUpdateTimestamp(LocalDateTime.now());
+        PizzaOrder nextOrder = startPreparing(queuedOrder.get(), station, now);
+
+        // Flushed now so the event carries the incremented version the outbox orders the changes of the order by
+        PizzaOrder updatedOrder = orderRepository.saveAndFlush(nextOrder);
+        eventPublisher.publishEvent(OrderStatusChangedEvent.of(updatedOrder, OrderStatus.RECEIVED));
 
-        PizzaOrder updatedOrder = orderRepository.save(nextOrder);
         return mapToOrderDto(updatedOrder);
     }
 
+    // Same as getNextOrder, but claims a whole oven batch: the first due order with the due orders of the same type
+    // that fit with it (see BatchPolicy), all moved to PREPARING in the same transaction
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "next_batch"}, histogram = true)
+    @Transactional
+    public OrderBatch getNextBatch(String station) {
+        kitchenStations.lock(station);
+
+        // The batch the station is preparing is returned until it is ready
+        List<PizzaOrder> currentOrders =
+                orderRepository.findByStatusAndAssignedStationOrderByDispatchAtAscIdAsc(OrderStatus.PREPARING, station);
+
+        if (!currentOrders.isEmpty()) {
+            return OrderMapper.toOrderBatch(station, currentOrders);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Optional<PizzaOrder> queuedOrder = claimNext(now);
+
+        if (queuedOrder.isEmpty()) {
+            LOGGER.warn("No order in queue");
+            return null;
+        }
+
+        List<PizzaOrder> batch = fillBatch(queuedOrder.get(), now);
+        batch.forEach(order -> startPreparing(order, station, now));
+
+        List<PizzaOrder> updatedOrders = orderRepository.saveAllAndFlush(batch);
+        updatedOrders.forEach(order -> eventPublisher.publishEvent(OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED)));
+
+        LOGGER.debug("Station {} claimed a batch of {} {} orders", station, updatedOrders.size(), updatedOrders.get(0).getPizzaType());
+        return OrderMapper.toOrderBatch(station, updatedOrders);
+    }
+
+    // Moves every order the station is preparing, a single order or a whole batch, to READY.
+    // Returns an empty list if the station is not preparing anything
+    @Timed(value = OrderMetrics.OPERATION_TIMER, extraTags = {"operation", "ready"}, histogram = true)
+    @Transactional
+    public List<OrderStatusResponse> markStationReady(String station) {
+        List<PizzaOrder> orders = orderRepository.lockByStatusAndAssignedStation(OrderStatus.PREPARING, station);
+
+        if (orders.isEmpty()) {
+            LOGGER.warn("No order in preparation at station {}", station);
+            return List.of();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (PizzaOrder order : orders) {
+            order.setStatus(OrderStatus.READY);
+            order.setUpdateTimestamp(now);
+        }
+
+        List<PizzaOrder> updatedOrders = orderRepository.saveAllAndFlush(orders);
+        updatedOrders.forEach(order -> eventPublisher.publishEvent(OrderStatusChangedEvent.of(order, OrderStatus.PREPARING)));
+
+        return updatedOrders.stream().map(this::mapToOrderStatusResponse).toList();
+    }
+
     //endregion
 
     //region private methods
@@ -112,20 +297,129 @@ public class OrderService {
                 .orElse(null);
     }
 
-    private String generateUniqueOrderCode() {
-        return UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    // Completed orders moved out of the live table by the archiver are looked up in the archive
+    private TwoLevelCache.Versioned<OrderStatusResponse> loadOrderStatus(String orderCode) {
+        PizzaOrder order = getPizzaOrder(orderCode);
+
+        if (order != null) {
+            return new TwoLevelCache.Versioned<>(mapToOrderStatusResponse(order), order.getVersion());
+        }
+
+        // Archived orders never change again, so their status is newer than any version of the live order
+        return archivedOrderRepository.findByOrderCode(orderCode)
+                .map(archived -> new TwoLevelCache.Versioned<>(OrderMapper.toOrderStatusResponse(archived), Long.MAX_VALUE))
+                .orElse(null);
+    }
+
+    private PizzaOrder newOrder(CreateOrderRequest request, String pizzaType, LocalDateTime now) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCodeGenerator.nextCode());
+        order.setPizzaType(pizzaType);
+        order.setQuantity(request.getQuantity());
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(now);
+        order.setUpdateTimestamp(now);
+        order.setExpress(request.isExpress());
+        order.setPickupTime(request.getPickupTime());
+        order.setDispatchAt(dispatchPolicy.dispatchAt(now, request.isExpress(), request.getPickupTime()));
+        return order;
+    }
+
+    // Only the claimed row is read and locked, whatever the size of the queue and the number of pre-orders; orders locked by
+    // concurrent claims of other stations (or other nodes) are skipped, so no order is handed out twice
+    private Optional<PizzaOrder> claimNext(LocalDateTime now) {
+        return menuCatalog.getCapacityLimitedTypes().isEmpty()
+                ? orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(OrderStatus.RECEIVED, now)
+                : claimWithinCapacity(now);
+    }
+
+    private PizzaOrder startPreparing(PizzaOrder order, String station, LocalDateTime now) {
+        order.setStatus(OrderStatus.PREPARING);
+        order.setAssignedStation(station);
+        order.setUpdateTimestamp(now);
+        order.setPreparingTimestamp(now);
+        return order;
+    }
+
+    // Adds to the claimed order the due orders of its type that fit in the batch with it, locking them
+    private List<PizzaOrder> fillBatch(PizzaOrder first, LocalDateTime now) {
+        List<PizzaOrder> batch = new ArrayList<>();
+        batch.add(first);
+
+        int maxOrders = batchPolicy.getMaxOrders();
+        PizzaTypeDto pizzaType = menuCatalog.find(first.getPizzaType());
+
+        if (pizzaType != null && pizzaType.maxPreparing() != null) {
+            // Counted under the lock of the type taken by the claim, so the batch keeps within the limit too
+            long preparing = orderRepository.countByStatusAndPizzaType(OrderStatus.PREPARING, pizzaType.name());
+            maxOrders = (int) Math.min(maxOrders, pizzaType.maxPreparing() - preparing);
+        }
+
+        int pizzas = first.getQuantity();
+        if (maxOrders <= 1 || pizzas >= batchPolicy.getMaxPizzas()) {
+            return batch;
+        }
+
+        List<PizzaOrder> candidates = orderRepository.findBatchCandidates(OrderStatus.RECEIVED, first.getPizzaType(), first.getId(),
+                first.getDispatchAt(), batchPolicy.joinUntil(first.getDispatchAt(), now), Limit.of(maxOrders - 1));
+
+        // Orders too big for the room left stay in the queue, the smaller ones behind them may still fit
+        for (PizzaOrder candidate : candidates) {
+            if (pizzas + candidate.getQuantity() <= batchPolicy.getMaxPizzas()) {
+                batch.add(candidate);
+                pizzas += candidate.getQuantity();
+            }
+        }
+
+        return batch;
+    }
+
+    // Claims the first due RECEIVED order whose type has not reached its limit of orders in preparation
+    private Optional<PizzaOrder> claimWithinCapacity(LocalDateTime now) {
+        Set<String> fullTypes = new HashSet<>();
+
+        for (OrderRepository.PizzaTypeCount preparing : orderRepository.countByStatusGroupByPizzaType(OrderStatus.PREPARING)) {
+            PizzaTypeDto pizzaType = menuCatalog.find(preparing.getPizzaType());
+            if (pizzaType != null && pizzaType.maxPreparing() != null && preparing.getOrders() >= pizzaType.maxPreparing()) {
+                fullTypes.add(pizzaType.name());
+            }
+        }
+
+        // Each round either returns or marks one more type as full, so it ends within the number of types
+        while (true) {
+            Optional<PizzaOrder> queuedOrder = fullTypes.isEmpty()
+                    ? orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(OrderStatus.RECEIVED, now)
+                    : orderRepository.findFirstByStatusAndDispatchAtLessThanEqualAndPizzaTypeNotInOrderByDispatchAtAscIdAsc(
+                            OrderStatus.RECEIVED, now, fullTypes);
+
+            PizzaTypeDto pizzaType = queuedOrder.map(order -> menuCatalog.find(order.getPizzaType())).orElse(null);
+
+            if (pizzaType == null || pizzaType.maxPreparing() == null) {
+                return queuedOrder;
+            }
+
+            // Claims of the type wait for each other on its menu entry and count again, so concurrent claims,
+            // even on other nodes, cannot go over the limit
+            if (pizzaTypeLocks.lockIfRoomLeft(pizzaType)) {
+                return queuedOrder;
+            }
+
+            LOGGER.debug("Pizza type {} at its limit of {} orders in preparation", pizzaType.name(), pizzaType.maxPreparing());
+            fullTypes.add(pizzaType.name());
+        }
+    }
+
+    // Identifies the content of a creation request, to tell a retry from a different request reusing its idempotency key
+    private String fingerprint(CreateOrderRequest request) {
+        return request.getPizzaType() + ":" + request.getQuantity() + ":" + request.isExpress() + ":" + request.getPickupTime();
     }
 
     private OrderStatusResponse mapToOrderStatusResponse(PizzaOrder order) {
-        OrderStatusResponse response = new OrderStatusResponse();
-        BeanUtils.copyProperties(order, response);
-        return response;
+        return OrderMapper.toOrderStatusResponse(order);
     }
 
     private OrderDto mapToOrderDto(PizzaOrder order) {
-        OrderDto dto = new OrderDto();
-        BeanUtils.copyProperties(order, dto);
-        return dto;
+        return OrderMapper.toOrderDto(order);
     }
 
     //endregion
@@ -0,0 +1,32 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.cache.TwoLevelCache;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.function.Function;
+
+/**
+ * Status of the orders by order code, read through the two-level cache.
+ * Every committed transition writes the new status through both tiers, so a status is never served stale
+ * by the node that changed it, and by other nodes for at most the near cache TTL. The entries carry the version of the
+ * order, so a transition whose event is handled late never overwrites the status of a later one.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderStatusCache {
+
+    private final TwoLevelCache<OrderStatusResponse> orderStatusTwoLevelCache;
+
+    public OrderStatusResponse get(String orderCode, Function<String, TwoLevelCache.Versioned<OrderStatusResponse>> loader) {
+        return orderStatusTwoLevelCache.get(orderCode, loader);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        orderStatusTwoLevelCache.put(event.orderCode(), event.toOrderStatusResponse(), event.version());
+    }
+}
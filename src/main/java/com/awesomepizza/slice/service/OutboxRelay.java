@@ -0,0 +1,276 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.entity.OrderOutboxEvent;
+import com.awesomepizza.slice.entity.OutboxConsumerOffset;
+import com.awesomepizza.slice.repository.OrderOutboxRepository;
+import com.awesomepizza.slice.repository.OutboxOffsetRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Moves the committed outbox events into the log and delivers them to the {@link OutboxSink} beans.
+ * Sequencing gives the committed events their position under the lock of the sequencer offset, so only one node sequences
+ * at a time and the log has no gaps. Ids are allocated in blocks per node, so id order is not commit order: across orders
+ * the log follows id order, while the events of one order are placed in the order of its versions.
+ * Each sink is then sent the events after its own offset, in batches, and its offset is moved forward in the same
+ * transaction: a failed delivery is retried from the same position.
+ * A run keeps going while the batches are full, up to max-batches-per-run, so it catches up after a peak of orders.
+ * When the database fails, the next runs are skipped for a back-off that doubles at every failure, up to max-backoff.
+ * The relay only runs where slice.outbox.relay.enabled is true, so a context without the outbox schema does not poll it.
+ */
+@Component
+@ConditionalOnProperty(name = "slice.outbox.relay.enabled", havingValue = "true")
+public class OutboxRelay {
+    private final static Logger LOGGER = LogManager.getLogger(OutboxRelay.class);
+
+    // Offset row holding the last position assigned by the relay
+    public static final String SEQUENCER = "_sequencer";
+
+    private final OrderOutboxRepository outboxRepository;
+    private final OutboxOffsetRepository offsetRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final List<OutboxSink> sinks;
+    private final MeterRegistry registry;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration retention;
+    private final Duration pollInterval;
+    private final Duration maxBackoff;
+
+    private final Counter sequencedEvents;
+
+    // Consecutive failed runs, and the System.nanoTime before which runs are skipped; only touched by the scheduler
+    private int failures;
+    private long resumeAt;
+
+    @Autowired
+    public OutboxRelay(
+            OrderOutboxRepository outboxRepository,
+            OutboxOffsetRepository offsetRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<OutboxSink> sinks,
+            MeterRegistry registry,
+            @Value("${slice.outbox.batch-size:500}") int batchSize,
+            @Value("${slice.outbox.max-batches-per-run:100}") int maxBatchesPerRun,
+            @Value("${slice.outbox.retention:P7D}") Duration retention,
+            @Value("${slice.outbox.poll-interval:PT1S}") Duration pollInterval,
+            @Value("${slice.outbox.max-backoff:PT1M}") Duration maxBackoff
+    ) {
+        this(outboxRepository, offsetRepository, transactionManager, sinks.orderedStream().toList(), registry,
+                batchSize, maxBatchesPerRun, retention, pollInterval, maxBackoff);
+    }
+
+    OutboxRelay(OrderOutboxRepository outboxRepository, OutboxOffsetRepository offsetRepository, PlatformTransactionManager transactionManager,
+                List<OutboxSink> sinks, MeterRegistry registry, int batchSize, int maxBatchesPerRun, Duration retention,
+                Duration pollInterval, Duration maxBackoff) {
+        this.outboxRepository = outboxRepository;
+        this.offsetRepository = offsetRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sinks = sinks;
+        this.registry = registry;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.retention = retention;
+        this.pollInterval = pollInterval;
+        this.maxBackoff = maxBackoff;
+        this.resumeAt = System.nanoTime();
+
+        this.sequencedEvents = Counter.builder("slice.outbox.sequenced")
+                .description("Outbox events given a position in the log")
+                .register(registry);
+    }
+
+    //region public methods
+
+    @Scheduled(
+            initialDelayString = "${slice.outbox.poll-interval:PT1S}",
+            fixedDelayString = "${slice.outbox.poll-interval:PT1S}"
+    )
+    public void relay() {
+        if (System.nanoTime() - resumeAt < 0) {
+            return;
+        }
+
+        try {
+            sequence();
+            sinks.forEach(this::deliver);
+            failures = 0;
+        } catch (DataAccessException e) {
+            Duration backoff = backoff(++failures);
+            resumeAt = System.nanoTime() + backoff.toNanos();
+            LOGGER.warn("Outbox relay failed {} time(s) in a row, next run in {}: {}", failures, backoff, e.getMessage());
+        }
+    }
+
+    // Returns the number of events added to the log
+    public int sequence() {
+        int total = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer sequenced = transactionTemplate.execute(status -> sequenceBatch());
+            sequencedEvents.increment(sequenced);
+            total += sequenced;
+
+            if (sequenced < batchSize) {
+                break;
+            }
+        }
+
+        return total;
+    }
+
+    // Returns the number of events delivered to the sink
+    public int deliver(OutboxSink sink) {
+        Counter delivered = Counter.builder("slice.outbox.delivered")
+                .description("Outbox events delivered to a sink")
+                .tag("consumer", sink.name())
+                .register(registry);
+        int total = 0;
+
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Integer sent = transactionTemplate.execute(status -> deliverBatch(sink));
+                delivered.increment(sent);
+                total += sent;
+
+                if (sent < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // The offset of the failed batch was rolled back with its transaction, the next run retries it
+            LOGGER.error("Delivery of outbox events to {} failed", sink.name(), e);
+        }
+
+        return total;
+    }
+
+    // Deletes the events older than the retention that all the consumers have received
+    @Scheduled(
+            initialDelayString = "${slice.outbox.purge-interval:PT1H}",
+            fixedDelayString = "${slice.outbox.purge-interval:PT1H}"
+    )
+    public int purge() {
+        Integer purged = transactionTemplate.execute(status -> {
+            Long minLogPosition = offsetRepository.findMinLogPosition();
+            return minLogPosition == null ? 0
+                    : outboxRepository.deleteDeliveredBefore(minLogPosition, LocalDateTime.now().minus(retention));
+        });
+
+        if (purged > 0) {
+            LOGGER.info("Purged {} outbox events", purged);
+        }
+
+        return purged;
+    }
+
+    //endregion
+
+    //region private methods
+
+    private Duration backoff(int failures) {
+        Duration backoff = pollInterval.multipliedBy(1L << Math.min(failures, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private int sequenceBatch() {
+        Optional<OutboxConsumerOffset> sequencer = lockOffset(SEQUENCER);
+
+        if (sequencer.isEmpty()) {
+            return 0;
+        }
+
+        List<OrderOutboxEvent> events = withUnsequencedOfSameOrders(outboxRepository.findByLogPositionIsNullOrderByIdAsc(Limit.of(batchSize)));
+        long position = sequencer.get().getLogPosition();
+
+        // The positions of an order, taken in id order, are handed out to its events in version order: a change committed
+        // after another one of the same order always comes after it in the log, whichever node allocated its id
+        Map<Long, Deque<OrderOutboxEvent>> eventsByOrder = events.stream()
+                .sorted(Comparator.comparing(OrderOutboxEvent::getOrderVersion, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .collect(Collectors.groupingBy(OrderOutboxEvent::getOrderId, HashMap::new, Collectors.toCollection(ArrayDeque::new)));
+
+        // Flushed as a batch of updates at commit
+        for (OrderOutboxEvent slot : events) {
+            eventsByOrder.get(slot.getOrderId()).poll().setLogPosition(++position);
+        }
+
+        sequencer.get().setLogPosition(position);
+        sequencer.get().setUpdateTimestamp(LocalDateTime.now());
+
+        return events.size();
+    }
+
+    // Adds the events of the same orders left out by the limit, so a change is never sequenced before an earlier one of its
+    // order with a higher id. The result is in id order
+    private List<OrderOutboxEvent> withUnsequencedOfSameOrders(List<OrderOutboxEvent> events) {
+        if (events.isEmpty()) {
+            return events;
+        }
+
+        Set<Long> orderIds = events.stream().map(OrderOutboxEvent::getOrderId).collect(Collectors.toSet());
+
+        return outboxRepository.findByLogPositionIsNullAndOrderIdIn(orderIds).stream()
+                .sorted(Comparator.comparing(OrderOutboxEvent::getId))
+                .toList();
+    }
+
+    private int deliverBatch(OutboxSink sink) {
+        Optional<OutboxConsumerOffset> offset = lockOffset(sink.name());
+
+        if (offset.isEmpty()) {
+            return 0;
+        }
+
+        List<OrderOutboxEvent> events = outboxRepository
+                .findByLogPositionGreaterThanOrderByLogPositionAsc(offset.get().getLogPosition(), Limit.of(batchSize));
+
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        sink.publish(events.stream().map(OrderMapper::toOutboxEventDto).toList());
+
+        offset.get().setLogPosition(events.get(events.size() - 1).getLogPosition());
+        offset.get().setUpdateTimestamp(LocalDateTime.now());
+
+        return events.size();
+    }
+
+    // Empty when the offset is locked by a relay on another node. A new consumer starts from the beginning of the log
+    private Optional<OutboxConsumerOffset> lockOffset(String consumer) {
+        Optional<OutboxConsumerOffset> offset = offsetRepository.findLockedByConsumer(consumer);
+
+        if (offset.isEmpty() && !offsetRepository.existsById(consumer)) {
+            offset = Optional.of(offsetRepository.save(new OutboxConsumerOffset(consumer, 0, LocalDateTime.now())));
+        }
+
+        return offset;
+    }
+
+    //endregion
+}
@@ -0,0 +1,19 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OutboxEventDto;
+
+import java.util.List;
+
+/**
+ * Destination of the order events relayed from the outbox, e.g. a message broker or a downstream service.
+ * Every sink bean is a consumer of the log with its own offset, named after {@link #name()}.
+ * Delivery is at least once: a batch is delivered again if publish throws, so sinks must tolerate duplicates,
+ * which they can recognize by the event position.
+ */
+public interface OutboxSink {
+
+    String name();
+
+    // Events come in log order
+    void publish(List<OutboxEventDto> events);
+}
@@ -0,0 +1,51 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.repository.OrderRepository;
+import com.awesomepizza.slice.repository.PizzaTypeRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+
+/**
+ * Serializes the claims of each pizza type with a limit of orders in preparation on its menu entry, on any node.
+ * Only the type actually claimed stays locked until the claim commits.
+ */
+@Component
+public class PizzaTypeLocks {
+    private final PizzaTypeRepository pizzaTypeRepository;
+    private final OrderRepository orderRepository;
+    private final EntityManager entityManager;
+
+    public PizzaTypeLocks(PizzaTypeRepository pizzaTypeRepository, OrderRepository orderRepository, EntityManager entityManager) {
+        this.pizzaTypeRepository = pizzaTypeRepository;
+        this.orderRepository = orderRepository;
+        this.entityManager = entityManager;
+    }
+
+    //region public methods
+
+    // Locks the type until the end of the current transaction if it has room for one more order in preparation.
+    // The lock of a type found full is released at once by rolling back to a savepoint taken before it, so the claims
+    // of the type do not wait for this transaction to learn that it is full. Needs an open transaction
+    public boolean lockIfRoomLeft(PizzaTypeDto pizzaType) {
+        Session session = entityManager.unwrap(Session.class);
+        Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+
+        pizzaTypeRepository.lockById(pizzaType.id());
+
+        if (orderRepository.countByStatusAndPizzaType(OrderStatus.PREPARING, pizzaType.name()) < pizzaType.maxPreparing()) {
+            session.doWork(connection -> connection.releaseSavepoint(savepoint));
+            return true;
+        }
+
+        session.doWork(connection -> connection.rollback(savepoint));
+        return false;
+    }
+
+    //endregion
+}
@@ -0,0 +1,20 @@
+package com.awesomepizza.slice.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Legacy strategy: 8 random hex characters. Only 32 bits of entropy, so collisions become likely
+ * after tens of thousands of orders; kept for environments that rely on the short format.
+ */
+@Component
+@ConditionalOnProperty(name = "slice.order-code.strategy", havingValue = "random")
+public class RandomOrderCodeGenerator implements OrderCodeGenerator {
+
+    @Override
+    public String nextCode() {
+        return UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+}
@@ -0,0 +1,121 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Reactive counterpart of {@link OrderEventBroadcaster}: order status transitions are multicast to the server-sent
+ * event streams of the subscribers. Each subscriber has a bounded buffer, and one that falls too far behind is
+ * disconnected and is expected to reconnect.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveOrderEventStream {
+    private final static Logger LOGGER = LogManager.getLogger(ReactiveOrderEventStream.class);
+
+    private final Duration timeout;
+    private final Duration heartbeatInterval;
+    private final int maxPendingEvents;
+    private final int maxSubscribers;
+
+    private final Sinks.Many<OrderStatusChangedEvent> sink = Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public ReactiveOrderEventStream(
+            @Value("${slice.events.timeout:PT30M}") Duration timeout,
+            @Value("${slice.events.heartbeat-interval:PT15S}") Duration heartbeatInterval,
+            @Value("${slice.events.max-pending-events:64}") int maxPendingEvents,
+            @Value("${slice.events.max-subscribers:50000}") int maxSubscribers
+    ) {
+        this.timeout = timeout;
+        this.heartbeatInterval = heartbeatInterval;
+        this.maxPendingEvents = maxPendingEvents;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    //region public methods
+
+    public Flux<ServerSentEvent<Object>> subscribeToOrder(String orderCode, OrderStatusResponse currentStatus) {
+        // The current status is sent straight away, so the client does not need an extra poll
+        ServerSentEvent<Object> current = ServerSentEvent.builder((Object) currentStatus).event("status").build();
+
+        return subscribe(
+                List.of(current),
+                event -> event.orderCode().equals(orderCode),
+                event -> ServerSentEvent.builder((Object) event.toOrderStatusResponse()).event("status").build()
+        );
+    }
+
+    public Flux<ServerSentEvent<Object>> subscribeToQueue() {
+        return subscribe(
+                List.of(),
+                event -> true,
+                event -> ServerSentEvent.builder((Object) event.toOrderDto()).event("order").build()
+        );
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // Listeners may run concurrently on different threads, while the sink accepts one emission at a time
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        sink.tryEmitNext(event);
+    }
+
+    //endregion
+
+    //region private methods
+
+    private Flux<ServerSentEvent<Object>> subscribe(
+            List<ServerSentEvent<Object>> initialEvents,
+            Predicate<OrderStatusChangedEvent> filter,
+            Function<OrderStatusChangedEvent, ServerSentEvent<Object>> mapper
+    ) {
+        return Flux.defer(() -> {
+            if (subscriberCount.incrementAndGet() > maxSubscribers) {
+                subscriberCount.decrementAndGet();
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many event subscribers"));
+            }
+
+            // Backpressure: a subscriber that cannot keep up is dropped instead of buffering without bound
+            Flux<ServerSentEvent<Object>> events = sink.asFlux()
+                    .filter(filter)
+                    .onBackpressureBuffer(maxPendingEvents, dropped -> LOGGER.warn("Event subscriber too slow, disconnecting"),
+                            BufferOverflowStrategy.ERROR)
+                    .map(mapper);
+
+            // Comments keep idle connections open through proxies and let the server detect dead clients
+            Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(heartbeatInterval)
+                    .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+
+            return Flux.merge(events, heartbeats)
+                    .startWith(initialEvents)
+                    .onErrorResume(Exceptions::isOverflow, e -> Flux.empty())
+                    .take(timeout)
+                    .doFinally(signal -> subscriberCount.decrementAndGet());
+        });
+    }
+
+    //endregion
+}
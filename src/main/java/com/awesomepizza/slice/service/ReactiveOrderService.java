@@ -0,0 +1,401 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.dto.OrderPage;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.dto.QueueCursor;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.exception.OrderStatusConflictException;
+import com.awesomepizza.slice.repository.ReactiveOrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Non-blocking implementation of the {@link OrderService} operations over R2DBC, used by the reactive profile.
+ * The transition rules are the ones of {@link OrderStatus} and the same events are published, so the in-memory queue,
+ * the status cache and the metrics are kept up to date as with the servlet stack.
+ * Events are published after the transaction has committed, on the bounded elastic scheduler, since some listeners
+ * (e.g. the Redis tier of the status cache) are blocking. They are also appended to the outbox within the transaction,
+ * as {@link OrderOutbox} does for the servlet stack.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveOrderService {
+    private final static Logger LOGGER = LogManager.getLogger(ReactiveOrderService.class);
+
+    private final ReactiveOrderRepository orderRepository;
+    private final OrderQueue orderQueue;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final MenuCatalog menuCatalog;
+    private final DispatchPolicy dispatchPolicy;
+    private final BatchPolicy batchPolicy;
+    private final OrderEtaEstimator orderEtaEstimator;
+    private final TransactionalOperator transactionalOperator;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Stations already registered in kitchen_stations, which are not inserted again
+    private final Set<String> registeredStations = ConcurrentHashMap.newKeySet();
+
+    //region public methods
+
+    public Mono<OrderStatusResponse> createOrder(CreateOrderRequest request) {
+        // Checked against the in-memory menu, without a DB round-trip
+        Mono<PizzaOrder> insert = Mono.fromCallable(() -> newOrder(request, menuCatalog.resolve(request.getPizzaType()), LocalDateTime.now()))
+                .flatMap(orderRepository::insert)
+                .flatMap(order -> appendToOutbox(order, null).thenReturn(order));
+
+        return transactionalOperator.transactional(insert)
+                .flatMap(order -> publish(List.of(OrderStatusChangedEvent.of(order, null))).thenReturn(order))
+                .map(OrderMapper::toOrderStatusResponse);
+    }
+
+    // All the items are inserted in one transaction: either every order is created or none is
+    public Mono<BulkOrderResponse> createOrders(BulkOrderRequest request) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> requestedTypes = request.getItems().stream().map(CreateOrderRequest::getPizzaType).toList();
+
+        // Every type is checked before anything is created
+        Mono<List<PizzaOrder>> insert = Mono.fromCallable(() -> menuCatalog.resolveAll(requestedTypes))
+                .flatMapMany(pizzaTypes -> Flux.range(0, pizzaTypes.size())
+                        .concatMap(i -> orderRepository.insert(newOrder(request.getItems().get(i), pizzaTypes.get(i), now))))
+                .concatMap(order -> appendToOutbox(order, null).thenReturn(order))
+                .collectList();
+
+        return transactionalOperator.transactional(insert)
+                .flatMap(orders -> publish(orders.stream().map(order -> OrderStatusChangedEvent.of(order, null)).toList())
+                        .thenReturn(orders))
+                .map(orders -> new BulkOrderResponse(request.getReference(),
+                        orders.stream().map(OrderMapper::toOrderStatusResponse).toList()));
+    }
+
+    // Read from the database, falling back to the archive: the status cache is not used, as its Redis tier would block the event loop
+    public Mono<OrderStatusResponse> getOrderStatus(String orderCode) {
+        return orderRepository.findByOrderCode(orderCode)
+                .map(OrderMapper::toOrderStatusResponse)
+                .switchIfEmpty(Mono.defer(() -> orderRepository.findArchivedByOrderCode(orderCode)
+                        .map(OrderMapper::toOrderStatusResponse)))
+                .map(orderEtaEstimator::withEstimatedReadyTime)
+                .switchIfEmpty(Mono.fromRunnable(() -> LOGGER.warn("Order {} not found", orderCode)));
+    }
+
+    // Emits nothing if the order does not exist, and an OrderStatusConflictException if the transition is not allowed
+    public Mono<OrderStatusResponse> updateOrderStatus(String orderCode, OrderStatus newStatus) {
+        // As in OrderService, PREPARING is only entered by a claim
+        if (newStatus.previousStatuses().isEmpty()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, OrderService.CLAIM_ONLY_MESSAGE));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // One conditional update per allowed previous status, as in OrderService, stopping at the first that matches
+        Mono<Optional<OrderStatus>> previousStatus = Flux.fromIterable(newStatus.previousStatuses())
+                .concatMap(expectedStatus -> orderRepository.transitionStatus(orderCode, expectedStatus, newStatus, now)
+                        .filter(rows -> rows > 0)
+                        .map(rows -> expectedStatus))
+                .next()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+
+        Mono<Transition> transition = previousStatus.flatMap(previous -> orderRepository.findByOrderCode(orderCode)
+                .map(order -> new Transition(order, previous.orElse(null))))
+                .flatMap(applied -> applied.previousStatus() == null ? Mono.just(applied)
+                        : appendToOutbox(applied.order(), applied.previousStatus()).thenReturn(applied));
+
+        // An archived order is READY, so it cannot change status any more
+        Mono<Transition> archived = orderRepository.findArchivedByOrderCode(orderCode)
+                .flatMap(order -> {
+                    LOGGER.warn("Order {} archived in {} state, cannot move to {}", orderCode, order.getStatus(), newStatus);
+                    return Mono.<Transition>error(new OrderStatusConflictException(orderCode, order.getStatus(), newStatus));
+                });
+
+        return transactionalOperator.transactional(transition)
+                .switchIfEmpty(archived)
+                .switchIfEmpty(Mono.fromRunnable(() -> LOGGER.warn("Order {} not found", orderCode)))
+                .flatMap(applied -> {
+                    PizzaOrder order = applied.order();
+
+                    if (applied.previousStatus() == null) {
+                        LOGGER.warn("Order {} in {} state, cannot move to {}", orderCode, order.getStatus(), newStatus);
+                        return Mono.error(new OrderStatusConflictException(orderCode, order.getStatus(), newStatus));
+                    }
+
+                    return publish(List.of(OrderStatusChangedEvent.of(order, applied.previousStatus())))
+                            .thenReturn(OrderMapper.toOrderStatusResponse(order));
+                });
+    }
+
+    public List<OrderDto> getOrderQueue() {
+        // Served from the in-memory mirror of the RECEIVED orders, without a DB round-trip
+        return orderQueue.snapshot();
+    }
+
+    public Mono<OrderPage> getOrderQueuePage(String cursor, int size) {
+        int limit = Math.clamp(size, 1, OrderService.MAX_PAGE_SIZE);
+
+        return Flux.defer(() -> cursor == null || cursor.isBlank()
+                        ? orderRepository.findByStatus(OrderStatus.RECEIVED, limit)
+                        : findByStatusAfter(QueueCursor.decode(cursor), limit))
+                .collectList()
+                .map(orders -> {
+                    // A full page may be followed by more orders, the client asks for the next page with the cursor of the last one
+                    String nextCursor = orders.size() < limit ? null : QueueCursor.of(orders.get(orders.size() - 1)).encode();
+                    return new OrderPage(orders.stream().map(OrderMapper::toOrderDto).toList(), nextCursor);
+                });
+    }
+
+    public Flux<OrderDto> streamOrderQueue() {
+        return orderRepository.streamOrderDtosByStatus(OrderStatus.RECEIVED);
+    }
+
+    // Emits nothing if the queue is empty
+    public Mono<OrderDto> getNextOrder(String station) {
+        // If the station is already preparing an order, that order is returned, otherwise the first due RECEIVED order is claimed.
+        // The claim locks only that row, skipping the ones locked by concurrent claims, so no order is handed out twice,
+        // and keeps within the capacity limits of the pizza types like the claims of OrderService.
+        // Concurrent calls from the same station wait for each other on the lock of the station
+        Mono<Claim> claim = orderRepository.lockStation(station)
+                .then(orderRepository.findFirstByStatusAndAssignedStation(OrderStatus.PREPARING, station))
+                .map(order -> new Claim(order, false))
+                .switchIfEmpty(Mono.defer(() -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return claimNext(now)
+                            .flatMap(order -> startPreparing(order, station, now))
+                            .map(order -> new Claim(order, true));
+                }));
+
+        return registerStation(station)
+                .then(transactionalOperator.transactional(claim))
+                .switchIfEmpty(Mono.fromRunnable(() -> LOGGER.warn("No order in queue")))
+                .flatMap(claimed -> claimed.claimed()
+                        ? publish(List.of(OrderStatusChangedEvent.of(claimed.order(), OrderStatus.RECEIVED))).thenReturn(claimed.order())
+                        : Mono.just(claimed.order()))
+                .map(OrderMapper::toOrderDto);
+    }
+
+    // Same as OrderService.getNextBatch, including the caps of the pizza types. Emits nothing if the queue is empty
+    public Mono<OrderBatch> getNextBatch(String station) {
+        // The batch the station is preparing is returned until it is ready
+        Mono<BatchClaim> claim = orderRepository.lockStation(station)
+                .thenMany(orderRepository.findByStatusAndAssignedStation(OrderStatus.PREPARING, station))
+                .collectList()
+                .flatMap(currentOrders -> !currentOrders.isEmpty() ? Mono.just(new BatchClaim(currentOrders, false)) : Mono.defer(() -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return claimNext(now)
+                            .flatMap(first -> fillBatch(first, now))
+                            .flatMap(batch -> Flux.fromIterable(batch)
+                                    .concatMap(order -> startPreparing(order, station, now))
+                                    .collectList())
+                            .map(orders -> new BatchClaim(orders, true));
+                }));
+
+        return registerStation(station)
+                .then(transactionalOperator.transactional(claim))
+                .switchIfEmpty(Mono.fromRunnable(() -> LOGGER.warn("No order in queue")))
+                .flatMap(claimed -> claimed.claimed()
+                        ? publish(claimed.orders().stream().map(order -> OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED)).toList())
+                                .thenReturn(claimed.orders())
+                        : Mono.just(claimed.orders()))
+                .map(orders -> OrderMapper.toOrderBatch(station, orders));
+    }
+
+    // Same as OrderService.markStationReady: emits an empty list if the station is not preparing anything
+    public Mono<List<OrderStatusResponse>> markStationReady(String station) {
+        Mono<List<PizzaOrder>> ready = Mono.defer(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            return orderRepository.lockByStatusAndAssignedStation(OrderStatus.PREPARING, station)
+                    .concatMap(order -> {
+                        order.setStatus(OrderStatus.READY);
+                        order.setUpdateTimestamp(now);
+                        return orderRepository.updateStatus(order);
+                    })
+                    .concatMap(order -> appendToOutbox(order, OrderStatus.PREPARING).thenReturn(order))
+                    .collectList();
+        });
+
+        return transactionalOperator.transactional(ready)
+                .flatMap(orders -> {
+                    if (orders.isEmpty()) {
+                        LOGGER.warn("No order in preparation at station {}", station);
+                        return Mono.just(List.<OrderStatusResponse>of());
+                    }
+
+                    return publish(orders.stream().map(order -> OrderStatusChangedEvent.of(order, OrderStatus.PREPARING)).toList())
+                            .thenReturn(orders.stream().map(OrderMapper::toOrderStatusResponse).toList());
+                });
+    }
+
+    //endregion
+
+    //region private methods
+
+    private PizzaOrder newOrder(CreateOrderRequest request, String pizzaType, LocalDateTime now) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCodeGenerator.nextCode());
+        order.setPizzaType(pizzaType);
+        order.setQuantity(request.getQuantity());
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(now);
+        order.setUpdateTimestamp(now);
+        order.setExpress(request.isExpress());
+        order.setPickupTime(request.getPickupTime());
+        order.setDispatchAt(dispatchPolicy.dispatchAt(now, request.isExpress(), request.getPickupTime()));
+        return order;
+    }
+
+    // Moves a claimed order to PREPARING for the station and appends the change to the outbox, in the transaction of the claim
+    private Mono<PizzaOrder> startPreparing(PizzaOrder order, String station, LocalDateTime now) {
+        order.setStatus(OrderStatus.PREPARING);
+        order.setAssignedStation(station);
+        order.setUpdateTimestamp(now);
+        order.setPreparingTimestamp(now);
+
+        return orderRepository.updateStatus(order)
+                .flatMap(updated -> appendToOutbox(updated, OrderStatus.RECEIVED).thenReturn(updated));
+    }
+
+    // Same as KitchenStations.lock, but the station is registered before the claim transaction starts
+    private Mono<Void> registerStation(String station) {
+        if (registeredStations.contains(station)) {
+            return Mono.empty();
+        }
+
+        return orderRepository.registerStation(station, LocalDateTime.now())
+                .doOnSuccess(ignored -> registeredStations.add(station));
+    }
+
+    // Same as OrderService.claimNext: the first due RECEIVED order, locked, whose type has not reached its limit of orders in preparation
+    private Mono<PizzaOrder> claimNext(LocalDateTime now) {
+        List<PizzaTypeDto> capacityLimited = menuCatalog.getCapacityLimitedTypes();
+
+        if (capacityLimited.isEmpty()) {
+            return orderRepository.lockFirstByStatus(OrderStatus.RECEIVED, now);
+        }
+
+        return orderRepository.countByStatusGroupByPizzaType(OrderStatus.PREPARING)
+                .flatMap(preparing -> {
+                    Set<String> fullTypes = new HashSet<>();
+                    for (PizzaTypeDto pizzaType : capacityLimited) {
+                        if (preparing.getOrDefault(pizzaType.id(), 0L) >= pizzaType.maxPreparing()) {
+                            fullTypes.add(pizzaType.name());
+                        }
+                    }
+                    return claimWithinCapacity(now, fullTypes);
+                });
+    }
+
+    // Each round either emits or marks one more type as full, so it ends within the number of types
+    private Mono<PizzaOrder> claimWithinCapacity(LocalDateTime now, Set<String> fullTypes) {
+        Mono<PizzaOrder> queuedOrder = fullTypes.isEmpty()
+                ? orderRepository.lockFirstByStatus(OrderStatus.RECEIVED, now)
+                : orderRepository.lockFirstByStatusAndPizzaTypeNotIn(OrderStatus.RECEIVED, now, fullTypes);
+
+        return queuedOrder.flatMap(order -> {
+            PizzaTypeDto pizzaType = menuCatalog.find(order.getPizzaType());
+
+            if (pizzaType == null || pizzaType.maxPreparing() == null) {
+                return Mono.just(order);
+            }
+
+            // Waits for the claims of the type on the same row of pizza_types as OrderService, so the limit holds across
+            // nodes and across the two stacks
+            return orderRepository.lockPizzaTypeIfRoomLeft(pizzaType)
+                    .flatMap(locked -> {
+                        if (locked) {
+                            return Mono.just(order);
+                        }
+
+                        LOGGER.debug("Pizza type {} at its limit of {} orders in preparation", pizzaType.name(), pizzaType.maxPreparing());
+                        Set<String> moreFullTypes = new HashSet<>(fullTypes);
+                        moreFullTypes.add(pizzaType.name());
+                        return claimWithinCapacity(now, moreFullTypes);
+                    });
+        });
+    }
+
+    // Adds to the claimed order the due orders of its type that fit in the batch with it, locking them (see BatchPolicy)
+    private Mono<List<PizzaOrder>> fillBatch(PizzaOrder first, LocalDateTime now) {
+        PizzaTypeDto pizzaType = menuCatalog.find(first.getPizzaType());
+
+        // Counted under the lock of the type taken by the claim, so the batch keeps within the limit too
+        Mono<Integer> maxOrders = pizzaType == null || pizzaType.maxPreparing() == null
+                ? Mono.just(batchPolicy.getMaxOrders())
+                : orderRepository.countByStatusAndPizzaType(OrderStatus.PREPARING, pizzaType.name())
+                        .map(preparing -> (int) Math.min(batchPolicy.getMaxOrders(), pizzaType.maxPreparing() - preparing));
+
+        return maxOrders.flatMap(limit -> limit <= 1 || first.getQuantity() >= batchPolicy.getMaxPizzas()
+                ? Mono.just(List.of(first))
+                : fillBatch(first, now, limit));
+    }
+
+    private Mono<List<PizzaOrder>> fillBatch(PizzaOrder first, LocalDateTime now, int maxOrders) {
+        return orderRepository.lockBatchCandidates(OrderStatus.RECEIVED, first.getPizzaType(), first.getId(), first.getDispatchAt(),
+                        batchPolicy.joinUntil(first.getDispatchAt(), now), maxOrders - 1)
+                .collectList()
+                .map(candidates -> {
+                    List<PizzaOrder> batch = new ArrayList<>();
+                    batch.add(first);
+                    int pizzas = first.getQuantity();
+
+                    // Orders too big for the room left stay in the queue, the smaller ones behind them may still fit
+                    for (PizzaOrder candidate : candidates) {
+                        if (pizzas + candidate.getQuantity() <= batchPolicy.getMaxPizzas()) {
+                            batch.add(candidate);
+                            pizzas += candidate.getQuantity();
+                        }
+                    }
+
+                    return batch;
+                });
+    }
+
+    private Flux<PizzaOrder> findByStatusAfter(QueueCursor after, int limit) {
+        return orderRepository.findByStatusAfter(OrderStatus.RECEIVED, after.dispatchAt(), after.id(), limit);
+    }
+
+    private Mono<Void> appendToOutbox(PizzaOrder order, OrderStatus previousStatus) {
+        return orderRepository.insertOutboxEvent(OrderStatusChangedEvent.of(order, previousStatus), LocalDateTime.now());
+    }
+
+    private Mono<Void> publish(List<OrderStatusChangedEvent> events) {
+        return Mono.<Void>fromRunnable(() -> events.forEach(eventPublisher::publishEvent))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //endregion
+
+    private record Transition(PizzaOrder order, OrderStatus previousStatus) {
+    }
+
+    private record Claim(PizzaOrder order, boolean claimed) {
+    }
+
+    private record BatchClaim(List<PizzaOrder> orders, boolean claimed) {
+    }
+}
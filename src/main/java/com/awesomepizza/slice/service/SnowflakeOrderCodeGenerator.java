@@ -0,0 +1,144 @@
+package com.awesomepizza.slice.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Default strategy: Snowflake-like 63-bit ids rendered as 13 Crockford base32 characters.
+ * The id is made of 41 bits of milliseconds since 2024-01-01, 10 bits of node id and a 12-bit per-millisecond sequence,
+ * so codes are unique across up to 1024 nodes without any DB check and sort in creation order,
+ * which keeps the order code index append-only.
+ * Generation is lock-free: the last timestamp and sequence are packed in a single AtomicLong.
+ * A code never carries a millisecond ahead of the clock: when the sequence is exhausted or the clock goes back,
+ * the generator waits for the clock to catch up, up to slice.order-code.max-clock-wait-millis, then fails.
+ * So a node restarted with the same node id only issues codes after the last one of its previous run,
+ * provided its clock is not set back across the restart.
+ * The node id is required unless slice.order-code.require-node-id is false, as in the single-node dev profile,
+ * where it is derived from the host name.
+ */
+@Component
+@ConditionalOnProperty(name = "slice.order-code.strategy", havingValue = "snowflake", matchIfMissing = true)
+public class SnowflakeOrderCodeGenerator implements OrderCodeGenerator {
+    private final static Logger LOGGER = LogManager.getLogger(SnowflakeOrderCodeGenerator.class);
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    static final int CODE_LENGTH = 13;
+    // Crockford base32: no I, L, O or U, and in ascending ASCII order so that codes sort like the ids
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long nodeId;
+    private final Clock clock;
+    private final long maxClockWaitMillis;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence)
+    private final AtomicLong state = new AtomicLong();
+
+    @Autowired
+    public SnowflakeOrderCodeGenerator(
+            @Value("${slice.order-code.node-id:-1}") int nodeId,
+            @Value("${slice.order-code.require-node-id:true}") boolean requireNodeId,
+            @Value("${slice.order-code.max-clock-wait-millis:1000}") long maxClockWaitMillis
+    ) {
+        this(nodeId >= 0 ? nodeId : deriveNodeId(requireNodeId), Clock.systemUTC(), maxClockWaitMillis);
+    }
+
+    SnowflakeOrderCodeGenerator(int nodeId, Clock clock, long maxClockWaitMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Order code node id must be between 0 and " + MAX_NODE_ID);
+        }
+
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.maxClockWaitMillis = maxClockWaitMillis;
+    }
+
+    @Override
+    public String nextCode() {
+        long waitStart = 0;
+
+        while (true) {
+            long current = state.get();
+            long last = current >>> SEQUENCE_BITS;
+            long now = clock.millis() - EPOCH_MILLIS;
+            long next;
+
+            if (now > last) {
+                next = now << SEQUENCE_BITS;
+            } else if (now == last && (current & SEQUENCE_MASK) != SEQUENCE_MASK) {
+                next = current + 1;
+            } else {
+                // Sequence exhausted or clock gone back: wait for the clock rather than borrowing a future millisecond,
+                // which a restart of this node could issue again
+                waitStart = waitStart == 0 ? System.nanoTime() : waitStart;
+                awaitClock(last - now, waitStart);
+                continue;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                long id = (now << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+                return encode(id);
+            }
+        }
+    }
+
+    private void awaitClock(long behindMillis, long waitStart) {
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart);
+
+        if (behindMillis + waitedMillis > maxClockWaitMillis) {
+            throw new IllegalStateException("Clock is " + behindMillis + " ms behind the last order code, refusing to wait more than " + maxClockWaitMillis + " ms");
+        }
+
+        if (behindMillis > 0) {
+            LOGGER.warn("Clock is {} ms behind the last order code, waiting for it", behindMillis);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(behindMillis));
+        } else {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static String encode(long id) {
+        char[] code = new char[CODE_LENGTH];
+
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+
+        return new String(code);
+    }
+
+    // Fallback for single-node setups only: two nodes can derive the same id and then generate the same codes
+    private static int deriveNodeId(boolean requireNodeId) {
+        if (requireNodeId) {
+            throw new IllegalStateException("slice.order-code.node-id is not set: give every node its own SLICE_NODE_ID, between 0 and " + MAX_NODE_ID);
+        }
+
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            hostName = "localhost";
+        }
+
+        int nodeId = (int) (Integer.toUnsignedLong(hostName.hashCode()) % (MAX_NODE_ID + 1));
+        LOGGER.warn("slice.order-code.node-id not set, using node id {} derived from host name {}", nodeId, hostName);
+        return nodeId;
+    }
+}
@@ -3,7 +3,7 @@ package com.awesomepizza.slice;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {"slice.order-code.node-id=0", "slice.outbox.relay.enabled=false"})
 class SliceApplicationTests {
 
 	@Test
@@ -0,0 +1,32 @@
+package com.awesomepizza.slice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {"slice.order-code.node-id=0", "slice.outbox.relay.enabled=false"}
+)
+@ActiveProfiles("reactive")
+class SliceReactiveApplicationTests {
+
+	@Autowired
+	private ReactiveWebServerApplicationContext context;
+
+	@Test
+	void contextLoads() {
+	}
+
+	// Tomcat is on the classpath too, for the servlet stack
+	@Test
+	void webServer_ShouldBeNetty() {
+		assertInstanceOf(NettyWebServer.class, context.getWebServer());
+	}
+
+}
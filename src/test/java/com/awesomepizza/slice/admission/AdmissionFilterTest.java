@@ -0,0 +1,133 @@
+package com.awesomepizza.slice.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionFilterTest {
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void intake_ShouldBeRateLimitedPerClient() throws Exception {
+        AdmissionFilter filter = newFilter(new ClientRateLimiter(1, 3, 1024), newConcurrencyLimiter(100));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, perform(filter, "POST", "/api/orders", "client-1").getStatus());
+        }
+
+        MockHttpServletResponse rejected = perform(filter, "POST", "/api/orders", "client-1");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(rejected.getContentAsString().contains("errors"));
+
+        // Other clients have their own bucket, and the kitchen is not rate limited
+        assertEquals(200, perform(filter, "POST", "/api/orders/bulk", "client-2").getStatus());
+        assertEquals(200, perform(filter, "GET", "/api/orders/next", "client-1").getStatus());
+
+        assertEquals(1.0, registry.get("slice.admission.rejected").tag("reason", "rate_limit").counter().count());
+    }
+
+    @Test
+    void intake_ShouldIgnoreTheClientHeaderOfUntrustedSenders() throws Exception {
+        AdmissionFilter filter = newFilter(new ClientRateLimiter(1, 1, 1024), newConcurrencyLimiter(100));
+
+        // A new client id does not give a new bucket
+        assertEquals(200, perform(filter, "POST", "/api/orders", "client-1", "10.0.0.1").getStatus());
+        assertEquals(429, perform(filter, "POST", "/api/orders", "client-2", "10.0.0.1").getStatus());
+
+        // Nor can the bucket of another client be used up with its id
+        assertEquals(200, perform(filter, "POST", "/api/orders", "client-3", "10.0.0.2").getStatus());
+        assertEquals(200, perform(filter, "POST", "/api/orders", "client-3").getStatus());
+    }
+
+    @Test
+    void kitchen_ShouldBeAdmittedWhenCustomersSaturateTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = newConcurrencyLimiter(10);
+        AdmissionFilter filter = newFilter(new ClientRateLimiter(1000, 1000, 1024), concurrencyLimiter);
+
+        // Customers may only take 80% of the limit
+        for (int i = 0; i < 8; i++) {
+            assertTrue(concurrencyLimiter.tryAcquire(false));
+        }
+
+        assertEquals(429, perform(filter, "GET", "/api/orders/ABC/status", "client-1").getStatus());
+        assertEquals(200, perform(filter, "PATCH", "/api/orders/ABC/status", "kitchen").getStatus());
+        assertEquals(200, perform(filter, "GET", "/api/orders/queue", "kitchen").getStatus());
+
+        // Every admitted request released its slot
+        assertEquals(8, concurrencyLimiter.getInFlight());
+
+        // The kitchen is shed too once the whole limit is taken
+        assertTrue(concurrencyLimiter.tryAcquire(true));
+        assertTrue(concurrencyLimiter.tryAcquire(true));
+        assertEquals(429, perform(filter, "GET", "/api/orders/next", "kitchen").getStatus());
+    }
+
+    @Test
+    void eventStreams_ShouldNotBeLimited() throws Exception {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = newConcurrencyLimiter(1);
+        AdmissionFilter filter = newFilter(new ClientRateLimiter(1, 1, 1024), concurrencyLimiter);
+        AtomicInteger inFlightDuringRequest = new AtomicInteger(-1);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders/queue/events");
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (FilterChain) (req, res) -> inFlightDuringRequest.set(concurrencyLimiter.getInFlight()));
+
+        assertEquals(0, inFlightDuringRequest.get());
+    }
+
+    @Test
+    void limit_ShouldDecreaseWithSlowQueriesAndGrowWhenUsed() {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(20, 2, 100,
+                Duration.ofMillis(50), Duration.ZERO, 0.8);
+
+        concurrencyLimiter.onLatency(Duration.ofMillis(200).toNanos());
+        assertEquals(18, concurrencyLimiter.getLimit());
+
+        for (int i = 0; i < 18; i++) {
+            concurrencyLimiter.tryAcquire(true);
+        }
+        concurrencyLimiter.onLatency(Duration.ofMillis(5).toNanos());
+        assertEquals(19, concurrencyLimiter.getLimit());
+    }
+
+    private MockHttpServletResponse perform(AdmissionFilter filter, String method, String uri, String clientId) throws Exception {
+        return perform(filter, method, uri, clientId, "127.0.0.1");
+    }
+
+    private MockHttpServletResponse perform(AdmissionFilter filter, String method, String uri, String clientId,
+                                            String remoteAddress) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(remoteAddress);
+        request.addHeader("X-Client-Id", clientId);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private AdmissionFilter newFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        return new AdmissionFilter(rateLimiter, concurrencyLimiter, new ObjectMapper(), registry, new ClientIdentity("X-Client-Id", Set.of("127.0.0.1")));
+    }
+
+    private AdaptiveConcurrencyLimiter newConcurrencyLimiter(int limit) {
+        return new AdaptiveConcurrencyLimiter(limit, 1, limit, Duration.ofSeconds(1), Duration.ofMinutes(1), 0.8);
+    }
+}
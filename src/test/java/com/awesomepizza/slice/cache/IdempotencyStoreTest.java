@@ -0,0 +1,198 @@
+package com.awesomepizza.slice.cache;
+
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.exception.IdempotencyKeyMismatchException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private RedisTemplate<String, IdempotencyStore.StoredResult<OrderStatusResponse>> redisTemplate;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(StringRedisSerializer.UTF_8);
+        redisTemplate.setValueSerializer(new Jackson2JsonRedisSerializer<>(objectMapper, objectMapper.getTypeFactory()
+                .constructParametricType(IdempotencyStore.StoredResult.class, OrderStatusResponse.class)));
+        redisTemplate.afterPropertiesSet();
+
+        connectionFactory.getConnection().serverCommands().flushAll();
+        executions.set(0);
+    }
+
+    @Test
+    void execute_ShouldRunConcurrentDuplicatesOnce() throws Exception {
+        IdempotencyStore<OrderStatusResponse> store = newStore(null);
+
+        List<IdempotencyStore.Outcome<OrderStatusResponse>> outcomes = runConcurrently(List.of(store), 16);
+
+        assertEquals(1, executions.get());
+        assertEquals(15, outcomes.stream().filter(IdempotencyStore.Outcome::replayed).count());
+        assertTrue(outcomes.stream().allMatch(outcome -> "ORDER1".equals(outcome.value().orderCode())));
+    }
+
+    @Test
+    void execute_ShouldDeduplicateAcrossNodesThroughRedis() throws Exception {
+        IdempotencyStore<OrderStatusResponse> node1 = newStore(redisTemplate);
+        IdempotencyStore<OrderStatusResponse> node2 = newStore(redisTemplate);
+
+        List<IdempotencyStore.Outcome<OrderStatusResponse>> outcomes = runConcurrently(List.of(node1, node2), 16);
+
+        assertEquals(1, executions.get());
+        assertEquals(15, outcomes.stream().filter(IdempotencyStore.Outcome::replayed).count());
+    }
+
+    @Test
+    void execute_ShouldRejectADifferentRequestWithTheSameKey() {
+        IdempotencyStore<OrderStatusResponse> node1 = newStore(redisTemplate);
+        IdempotencyStore<OrderStatusResponse> node2 = newStore(redisTemplate);
+
+        node1.execute("client-1", "key", "Margherita:1", this::create);
+
+        assertThrows(IdempotencyKeyMismatchException.class, () -> node1.execute("client-1", "key", "Margherita:2", this::create));
+        assertThrows(IdempotencyKeyMismatchException.class, () -> node2.execute("client-1", "key", "Margherita:2", this::create));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldReleaseTheKeyWhenTheActionFails() {
+        IdempotencyStore<OrderStatusResponse> store = newStore(redisTemplate);
+
+        assertThrows(IllegalStateException.class, () -> store.execute("client-1", "key", "Margherita:1", () -> {
+            throw new IllegalStateException("Database unavailable");
+        }));
+
+        IdempotencyStore.Outcome<OrderStatusResponse> retry = store.execute("client-1", "key", "Margherita:1", this::create);
+
+        assertFalse(retry.replayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldScopeTheKeysByClient() {
+        IdempotencyStore<OrderStatusResponse> node1 = newStore(redisTemplate);
+        IdempotencyStore<OrderStatusResponse> node2 = newStore(redisTemplate);
+
+        IdempotencyStore.Outcome<OrderStatusResponse> first = node1.execute("client-1", "key", "Margherita:1", this::create);
+        IdempotencyStore.Outcome<OrderStatusResponse> otherClient = node2.execute("client-2", "key", "Margherita:2", this::create);
+
+        assertFalse(otherClient.replayed());
+        assertNotEquals(first.value(), otherClient.value());
+        assertTrue(node2.execute("client-1", "key", "Margherita:1", this::create).replayed());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void execute_ShouldOnlyKeepTheClaimForTheInFlightTtlUntilTheResultIsStored() {
+        IdempotencyStore<OrderStatusResponse> store = newStore(redisTemplate);
+        String redisKey = "slice:idempotency:order-create:8:client-1:key";
+        AtomicLong inFlightExpire = new AtomicLong();
+
+        store.execute("client-1", "key", "Margherita:1", () -> {
+            inFlightExpire.set(redisTemplate.getExpire(redisKey, TimeUnit.SECONDS));
+            return create();
+        });
+
+        assertTrue(inFlightExpire.get() > 0 && inFlightExpire.get() <= 30);
+        assertTrue(redisTemplate.getExpire(redisKey, TimeUnit.SECONDS) > 30);
+    }
+
+    private List<IdempotencyStore.Outcome<OrderStatusResponse>> runConcurrently(
+            List<IdempotencyStore<OrderStatusResponse>> nodes, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<IdempotencyStore.Outcome<OrderStatusResponse>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                IdempotencyStore<OrderStatusResponse> node = nodes.get(i % nodes.size());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return node.execute("client-1", "key", "Margherita:1", () -> {
+                        sleep(100);
+                        return create();
+                    });
+                }));
+            }
+            start.countDown();
+
+            List<IdempotencyStore.Outcome<OrderStatusResponse>> outcomes = new ArrayList<>();
+            for (Future<IdempotencyStore.Outcome<OrderStatusResponse>> future : futures) {
+                outcomes.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IdempotencyStore<OrderStatusResponse> newStore(
+            RedisTemplate<String, IdempotencyStore.StoredResult<OrderStatusResponse>> remote) {
+        return new IdempotencyStore<>("order-create", 100, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5), remote);
+    }
+
+    private OrderStatusResponse create() {
+        return new OrderStatusResponse("ORDER" + executions.incrementAndGet(), OrderStatus.RECEIVED);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
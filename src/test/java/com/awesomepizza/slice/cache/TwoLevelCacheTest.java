@@ -0,0 +1,226 @@
+package com.awesomepizza.slice.cache;
+
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoLevelCacheTest {
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private RedisTemplate<String, OrderStatusResponse> redisTemplate;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(StringRedisSerializer.UTF_8);
+        redisTemplate.setValueSerializer(new Jackson2JsonRedisSerializer<>(
+                new ObjectMapper().registerModule(new JavaTimeModule()), OrderStatusResponse.class));
+        redisTemplate.afterPropertiesSet();
+
+        connectionFactory.getConnection().serverCommands().flushAll();
+        loads.set(0);
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndThenServeFromNearCache() {
+        TwoLevelCache<OrderStatusResponse> cache = newCache(redisTemplate);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(OrderStatus.RECEIVED, cache.get("TEST123", this::load).status());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(9, cache.getLocalHits());
+    }
+
+    @Test
+    void get_ShouldShareValuesAcrossNodesThroughRedis() {
+        TwoLevelCache<OrderStatusResponse> node1 = newCache(redisTemplate);
+        TwoLevelCache<OrderStatusResponse> node2 = newCache(redisTemplate);
+
+        node1.get("TEST123", this::load);
+        OrderStatusResponse response = node2.get("TEST123", this::load);
+
+        assertEquals("TEST123", response.orderCode());
+        assertEquals(1, loads.get());
+        assertEquals(1, node2.getRemoteHits());
+    }
+
+    @Test
+    void put_ShouldOverwriteBothTiers() {
+        TwoLevelCache<OrderStatusResponse> node1 = newCache(redisTemplate);
+        TwoLevelCache<OrderStatusResponse> node2 = newCache(redisTemplate);
+
+        node1.get("TEST123", this::load);
+        node1.put("TEST123", response("TEST123", OrderStatus.READY), 2);
+
+        assertEquals(OrderStatus.READY, node1.get("TEST123", this::load).status());
+        assertEquals(OrderStatus.READY, node2.get("TEST123", this::load).status());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void put_ShouldNotOverwriteANewerVersion() {
+        TwoLevelCache<OrderStatusResponse> node1 = newCache(redisTemplate);
+        TwoLevelCache<OrderStatusResponse> node2 = newCache(redisTemplate);
+        TwoLevelCache<OrderStatusResponse> node3 = newCache(redisTemplate);
+
+        // The event of the READY transition is handled on node1 before the one of the earlier PREPARING transition on node2
+        node1.put("TEST123", response("TEST123", OrderStatus.READY), 2);
+        node2.put("TEST123", response("TEST123", OrderStatus.PREPARING), 1);
+        node1.put("TEST123", response("TEST123", OrderStatus.PREPARING), 1);
+
+        assertEquals(OrderStatus.READY, node1.get("TEST123", this::load).status());
+        assertEquals(OrderStatus.READY, node3.get("TEST123", this::load).status());
+        assertEquals(1, node3.getRemoteHits());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void get_ShouldNotOverwriteAValuePutWhileLoading() {
+        TwoLevelCache<OrderStatusResponse> node1 = newCache(redisTemplate);
+        TwoLevelCache<OrderStatusResponse> node2 = newCache(redisTemplate);
+        TwoLevelCache<OrderStatusResponse> node3 = newCache(redisTemplate);
+
+        // node1 reads the order, then the transition commits on node2 before node1 writes its value through
+        node1.get("TEST123", code -> {
+            TwoLevelCache.Versioned<OrderStatusResponse> stale = load(code);
+            node2.put(code, response(code, OrderStatus.PREPARING), 1);
+            return stale;
+        });
+
+        assertEquals(OrderStatus.PREPARING, node3.get("TEST123", this::load).status());
+        assertEquals(1, node3.getRemoteHits());
+    }
+
+    @Test
+    void get_ShouldCollapseConcurrentMissesIntoOneLoad() throws Exception {
+        TwoLevelCache<OrderStatusResponse> cache = newCache(redisTemplate);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            ConcurrentLinkedQueue<Future<OrderStatusResponse>> futures = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get("TEST123", code -> {
+                        sleep(50);
+                        return load(code);
+                    });
+                }));
+            }
+            start.countDown();
+
+            for (Future<OrderStatusResponse> future : futures) {
+                assertNotNull(future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_ShouldFallBackToLoaderWhenRedisIsDown() {
+        LettuceConnectionFactory unreachable = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", 1));
+        unreachable.afterPropertiesSet();
+        unreachable.start();
+
+        RedisTemplate<String, OrderStatusResponse> template = new RedisTemplate<>();
+        template.setConnectionFactory(unreachable);
+        template.setKeySerializer(StringRedisSerializer.UTF_8);
+        template.afterPropertiesSet();
+
+        try {
+            TwoLevelCache<OrderStatusResponse> cache = newCache(template);
+
+            assertEquals("TEST123", cache.get("TEST123", this::load).orderCode());
+            assertEquals("TEST456", cache.get("TEST456", this::load).orderCode());
+
+            // The failing tier is skipped after the first error instead of being retried on every miss
+            assertEquals(1, cache.getRemoteErrors());
+            assertEquals(2, loads.get());
+        } finally {
+            unreachable.destroy();
+        }
+    }
+
+    @Test
+    void get_ShouldNotCacheMissingValues() {
+        TwoLevelCache<OrderStatusResponse> cache = newCache(redisTemplate);
+
+        assertNull(cache.get("MISSING", code -> null));
+        assertEquals(OrderStatus.RECEIVED, cache.get("MISSING", this::load).status());
+    }
+
+    private TwoLevelCache<OrderStatusResponse> newCache(RedisTemplate<String, OrderStatusResponse> remote) {
+        return new TwoLevelCache<>("order-status", 100, Duration.ofSeconds(2), Duration.ofSeconds(60), remote);
+    }
+
+    private TwoLevelCache.Versioned<OrderStatusResponse> load(String orderCode) {
+        loads.incrementAndGet();
+        return new TwoLevelCache.Versioned<>(response(orderCode, OrderStatus.RECEIVED), 0);
+    }
+
+    private static OrderStatusResponse response(String orderCode, OrderStatus status) {
+        return new OrderStatusResponse(orderCode, status);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,30 +1,50 @@
 package com.awesomepizza.slice.controller;
 
+import com.awesomepizza.slice.admission.ClientIdentity;
+import com.awesomepizza.slice.cache.IdempotencyStore;
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
 import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
 import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderPage;
 import com.awesomepizza.slice.dto.OrderStatusResponse;
 import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.exception.OrderStatusConflictException;
+import com.awesomepizza.slice.service.OrderEventBroadcaster;
 import com.awesomepizza.slice.service.OrderService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(OrderController.class)
+@Import(ClientIdentity.class)
 public class OrderControllerTest {
 
     @Autowired
@@ -33,6 +53,9 @@ public class OrderControllerTest {
     @MockitoBean
     private OrderService orderService;
 
+    @MockitoBean
+    private OrderEventBroadcaster orderEventBroadcaster;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -44,9 +67,7 @@ public class OrderControllerTest {
         request.setQuantity(1);
 
         // Create new mock response
-        OrderStatusResponse response = new OrderStatusResponse();
-        response.setStatus(OrderStatus.RECEIVED);
-        response.setOrderCode("TEST123");
+        OrderStatusResponse response = new OrderStatusResponse("TEST123", OrderStatus.RECEIVED);
 
         // Set what to receive when mocked service is called
         when(orderService.createOrder(request)).thenReturn(response);
@@ -61,6 +82,28 @@ public class OrderControllerTest {
                 .andExpect(jsonPath("$.status").value("RECEIVED"));
     }
 
+    @Test
+    void createOrder_ShouldMarkReplayedResponsesOfAnIdempotencyKey() throws Exception {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setPizzaType("Margherita");
+        request.setQuantity(1);
+
+        OrderStatusResponse response = new OrderStatusResponse("TEST123", OrderStatus.RECEIVED);
+
+        when(orderService.createOrder(request, "127.0.0.1", "key-1")).thenReturn(new IdempotencyStore.Outcome<>(response, true));
+
+        mockMvc.perform(
+                post("/api/orders")
+                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(OrderController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.orderCode").value("TEST123"));
+
+        verify(orderService, never()).createOrder(any(CreateOrderRequest.class));
+    }
+
     @Test
     void createOrder_ShouldReturnBadRequest() throws Exception {
         // Create new mock request
@@ -84,15 +127,66 @@ public class OrderControllerTest {
                 .andExpect(jsonPath("$.errors").value("quantity should be positive"));
     }
 
+    @Test
+    void createOrders_ShouldReturnAllOrderCodes() throws Exception {
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setReference("AGG-42");
+        request.setItems(List.of(newItem("Margherita", 2), newItem("Capricciosa", 1)));
+
+        BulkOrderResponse response = new BulkOrderResponse("AGG-42", List.of(
+                new OrderStatusResponse("TEST123", OrderStatus.RECEIVED),
+                new OrderStatusResponse("TEST456", OrderStatus.RECEIVED)));
+
+        when(orderService.createOrders(request)).thenReturn(response);
+
+        mockMvc.perform(
+                        post("/api/orders/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.reference").value("AGG-42"))
+                .andExpect(jsonPath("$.orders.length()").value(2))
+                .andExpect(jsonPath("$.orders[1].orderCode").value("TEST456"));
+    }
+
+    @Test
+    void createOrders_ShouldReportInvalidItemsByIndex() throws Exception {
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setItems(List.of(newItem("Margherita", 1), newItem("Capricciosa", -1), newItem(" ", 1)));
+
+        mockMvc.perform(
+                        post("/api/orders/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors.length()").value(2))
+                .andExpect(jsonPath("$.itemErrors['1'][0]").value("quantity should be positive"))
+                .andExpect(jsonPath("$.itemErrors['2'][0]").value("pizzaType should not be empty, null or whitespace"))
+                .andExpect(jsonPath("$.itemErrors['0']").doesNotExist());
+
+        verify(orderService, never()).createOrders(any());
+    }
+
+    @Test
+    void createOrders_ShouldRejectEmptyRequest() throws Exception {
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setItems(List.of());
+
+        mockMvc.perform(
+                        post("/api/orders/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors").value("items should not be empty"));
+    }
+
     @Test
     void getOrderStatus_ShoudlReturnOrderStatus() throws Exception {
         // Create new mock response
         String orderCode = "TEST123";
         OrderStatus status = OrderStatus.RECEIVED;
 
-        OrderStatusResponse response = new OrderStatusResponse();
-        response.setOrderCode(orderCode);
-        response.setStatus(status);
+        OrderStatusResponse response = new OrderStatusResponse(orderCode, status);
 
         // Set what to receive when mocked service is called
         when(orderService.getOrderStatus(orderCode)).thenReturn(response);
@@ -106,15 +200,39 @@ public class OrderControllerTest {
 
     // TODO test for get on order not found
 
+    @Test
+    void streamOrderStatus_ShouldSubscribeToOrderEvents() throws Exception {
+        String orderCode = "TEST123";
+
+        OrderStatusResponse response = new OrderStatusResponse(orderCode, OrderStatus.RECEIVED);
+
+        when(orderService.getOrderStatus(orderCode)).thenReturn(response);
+        when(orderEventBroadcaster.subscribeToOrder(orderCode, response)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/orders/{orderCode}/events", orderCode))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(orderEventBroadcaster).subscribeToOrder(eq(orderCode), any(OrderStatusResponse.class));
+    }
+
+    @Test
+    void streamOrderStatus_ShouldReturnNotFound() throws Exception {
+        when(orderService.getOrderStatus("MISSING")).thenReturn(null);
+
+        mockMvc.perform(get("/api/orders/{orderCode}/events", "MISSING"))
+                .andExpect(status().isNotFound());
+
+        verify(orderEventBroadcaster, never()).subscribeToOrder(any(), any());
+    }
+
     @Test
     void updateOrderStatus_ShouldReturnUpdatedOrderStatus() throws Exception {
         // Create new mock response
         String orderCode = "TEST123";
-        OrderStatus status = OrderStatus.PREPARING;
+        OrderStatus status = OrderStatus.READY;
 
-        OrderStatusResponse response = new OrderStatusResponse();
-        response.setOrderCode(orderCode);
-        response.setStatus(status);
+        OrderStatusResponse response = new OrderStatusResponse(orderCode, status);
 
         // Set what to receive when mocked service is called
         when(orderService.updateOrderStatus(orderCode, status)).thenReturn(response);
@@ -125,27 +243,32 @@ public class OrderControllerTest {
                         .param("status", status.toString()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.orderCode").value("TEST123"))
-                .andExpect(jsonPath("$.status").value("PREPARING"));
+                .andExpect(jsonPath("$.status").value("READY"));
     }
 
     // TODO test for patch on order not found
 
+    @Test
+    void updateOrderStatus_ShouldReturnConflictOnInvalidTransition() throws Exception {
+        when(orderService.updateOrderStatus("TEST123", OrderStatus.RECEIVED))
+                .thenThrow(new OrderStatusConflictException("TEST123", OrderStatus.READY, OrderStatus.RECEIVED));
+
+        mockMvc.perform(
+                patch("/api/orders/{orderCode}/status", "TEST123")
+                        .param("status", OrderStatus.RECEIVED.toString()))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.errors").value("Order TEST123 cannot move from READY to RECEIVED"))
+                .andExpect(jsonPath("$.currentStatus").value("READY"));
+    }
+
     @Test
     void getOrderQueue_ShouldReturnQueuedOrders() throws Exception {
         // Create existing orders
-        OrderDto order1 = new OrderDto();
-        order1.setOrderCode("TEST123");
-        order1.setStatus(OrderStatus.RECEIVED);
-        order1.setQuantity(1);
-        order1.setPizzaType("Margherita");
-        order1.setInsertTimestamp(LocalDateTime.now().minusMinutes(10));
-
-        OrderDto order2 = new OrderDto();
-        order2.setOrderCode("TEST456");
-        order2.setStatus(OrderStatus.RECEIVED);
-        order2.setQuantity(2);
-        order2.setPizzaType("Capricciosa");
-        order2.setInsertTimestamp(LocalDateTime.now().minusMinutes(5));
+        OrderDto order1 = new OrderDto("TEST123", "Margherita", 1, OrderStatus.RECEIVED,
+                null, LocalDateTime.now().minusMinutes(10));
+
+        OrderDto order2 = new OrderDto("TEST456", "Capricciosa", 2, OrderStatus.RECEIVED,
+                null, LocalDateTime.now().minusMinutes(5));
 
         // Set what to receive when mocked service is called
         when(orderService.getOrderQueue()).thenReturn(Arrays.asList(order1, order2));
@@ -171,21 +294,112 @@ public class OrderControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
+    @Test
+    void getOrderQueuePage_ShouldReturnOrdersAndNextCursor() throws Exception {
+        OrderDto order1 = new OrderDto("TEST123", "Margherita", 1, OrderStatus.RECEIVED,
+                null, LocalDateTime.now().minusMinutes(10));
+
+        when(orderService.getOrderQueuePage("CURSOR1", 1)).thenReturn(new OrderPage(List.of(order1), "CURSOR2"));
+
+        mockMvc.perform(get("/api/orders/queue/page").param("cursor", "CURSOR1").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders.length()").value(1))
+                .andExpect(jsonPath("$.orders[0].orderCode").value("TEST123"))
+                .andExpect(jsonPath("$.nextCursor").value("CURSOR2"));
+    }
+
+    @Test
+    void streamOrderQueueJson_ShouldWriteJsonArray() throws Exception {
+        OrderDto order1 = new OrderDto("TEST123", "Margherita", 1, OrderStatus.RECEIVED,
+                null, LocalDateTime.now().minusMinutes(10));
+        OrderDto order2 = new OrderDto("TEST456", "Capricciosa", 2, OrderStatus.RECEIVED,
+                null, LocalDateTime.now().minusMinutes(5));
+
+        doAnswer(invocation -> {
+            Consumer<OrderDto> consumer = invocation.getArgument(0);
+            consumer.accept(order1);
+            consumer.accept(order2);
+            return null;
+        }).when(orderService).streamOrderQueue(any());
+
+        MvcResult result = mockMvc.perform(get("/api/orders/queue/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].orderCode").value("TEST123"))
+                .andExpect(jsonPath("$[1].orderCode").value("TEST456"));
+    }
+
     @Test
     void getNextOrder_ShouldReturnNextOrder() throws Exception {
         // Create existing orders
-        OrderDto order1 = new OrderDto();
-        order1.setOrderCode("TEST123");
-        order1.setStatus(OrderStatus.PREPARING);
-        order1.setQuantity(1);
-        order1.setPizzaType("Margherita");
-        order1.setInsertTimestamp(LocalDateTime.now().minusMinutes(10));
+        OrderDto order1 = new OrderDto("TEST123", "Margherita", 1, OrderStatus.PREPARING,
+                null, LocalDateTime.now().minusMinutes(10));
 
-        when(orderService.getNextOrder()).thenReturn(order1);
+        when(orderService.getNextOrder(OrderService.DEFAULT_STATION)).thenReturn(order1);
 
         mockMvc.perform(get("/api/orders/next"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.orderCode").value("TEST123"))
                 .andExpect(jsonPath("$.status").value("PREPARING"));
     }
+
+    @Test
+    void getNextOrder_ShouldClaimForGivenStation() throws Exception {
+        OrderDto order1 = new OrderDto("TEST123", "Margherita", 1, OrderStatus.PREPARING,
+                "oven-2", LocalDateTime.now().minusMinutes(10));
+
+        when(orderService.getNextOrder("oven-2")).thenReturn(order1);
+
+        mockMvc.perform(get("/api/orders/next").param("station", "oven-2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderCode").value("TEST123"))
+                .andExpect(jsonPath("$.assignedStation").value("oven-2"));
+    }
+
+    @Test
+    void getNextBatch_ShouldReturnTheBatchOfTheStation() throws Exception {
+        OrderDto order1 = new OrderDto("TEST123", "Margherita", 2, OrderStatus.PREPARING,
+                "oven-2", LocalDateTime.now().minusMinutes(10));
+        OrderDto order2 = new OrderDto("TEST456", "Margherita", 3, OrderStatus.PREPARING,
+                "oven-2", LocalDateTime.now().minusMinutes(8));
+
+        when(orderService.getNextBatch("oven-2")).thenReturn(new OrderBatch("oven-2", "Margherita", 5, List.of(order1, order2)));
+
+        mockMvc.perform(get("/api/orders/next/batch").param("station", "oven-2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(5))
+                .andExpect(jsonPath("$.orders.length()").value(2))
+                .andExpect(jsonPath("$.orders[1].orderCode").value("TEST456"));
+    }
+
+    @Test
+    void markStationReady_ShouldCompleteTheOrdersOfTheStation() throws Exception {
+        when(orderService.markStationReady("oven-2")).thenReturn(List.of(
+                new OrderStatusResponse("TEST123", OrderStatus.READY),
+                new OrderStatusResponse("TEST456", OrderStatus.READY)));
+
+        mockMvc.perform(post("/api/orders/ready").param("station", "oven-2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].status").value("READY"));
+    }
+
+    @Test
+    void markStationReady_ShouldReturnNotFoundWhenNothingIsPreparing() throws Exception {
+        when(orderService.markStationReady(OrderService.DEFAULT_STATION)).thenReturn(List.of());
+
+        mockMvc.perform(post("/api/orders/ready"))
+                .andExpect(status().isNotFound());
+    }
+
+    private CreateOrderRequest newItem(String pizzaType, int quantity) {
+        CreateOrderRequest item = new CreateOrderRequest();
+        item.setPizzaType(pizzaType);
+        item.setQuantity(quantity);
+        return item;
+    }
 }
@@ -0,0 +1,271 @@
+package com.awesomepizza.slice.controller;
+
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.dto.UpdatePizzaTypeRequest;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.repository.OrderRepository;
+import com.awesomepizza.slice.repository.ReactiveOrderRepository;
+import com.awesomepizza.slice.service.MenuCatalog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// End-to-end tests of the reactive profile: WebFlux on a random port, over R2DBC-H2
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"dev", "reactive"})
+class ReactiveOrderControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private ReactiveOrderRepository reactiveOrderRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Test
+    void createOrder_ShouldReturnOrderStatus() {
+        OrderStatusResponse created = createOrder("Margherita", 2);
+
+        assertNotNull(created.orderCode());
+        assertEquals(OrderStatus.RECEIVED, created.status());
+
+        webTestClient.get().uri("/api/orders/{orderCode}/status", created.orderCode())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.orderCode").isEqualTo(created.orderCode())
+                .jsonPath("$.status").isEqualTo("RECEIVED");
+    }
+
+    @Test
+    void createOrder_ShouldReturnBadRequest() {
+        CreateOrderRequest request = newItem("", 0);
+
+        webTestClient.post().uri("/api/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errors.length()").isEqualTo(2);
+    }
+
+    @Test
+    void createOrders_ShouldReportInvalidItemsByIndex() {
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setItems(List.of(newItem("Margherita", 1), newItem("Diavola", -1)));
+
+        webTestClient.post().uri("/api/orders/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.itemErrors['1'][0]").isEqualTo("quantity should be positive");
+    }
+
+    @Test
+    void getOrderStatus_ShouldReturnNotFound() {
+        webTestClient.get().uri("/api/orders/{orderCode}/status", "MISSING")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void updateOrderStatus_ShouldReturnConflictOnInvalidTransition() {
+        OrderStatusResponse created = createOrder("Capricciosa", 1);
+
+        webTestClient.patch().uri("/api/orders/{orderCode}/status?status=READY", created.orderCode())
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.currentStatus").isEqualTo("RECEIVED");
+    }
+
+    @Test
+    void updateOrderStatus_ShouldRejectPreparing() {
+        OrderStatusResponse created = createOrder("Capricciosa", 1);
+
+        webTestClient.patch().uri("/api/orders/{orderCode}/status?status=PREPARING", created.orderCode())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getNextOrder_ShouldClaimAnOrderForTheStation() {
+        createOrder("Diavola", 1);
+        String station = "station-" + UUID.randomUUID();
+
+        OrderDto claimed = getNextOrder(station);
+
+        assertEquals(OrderStatus.PREPARING, claimed.status());
+        assertEquals(station, claimed.assignedStation());
+
+        // The station keeps getting its current order until it is completed
+        assertEquals(claimed.orderCode(), getNextOrder(station).orderCode());
+
+        webTestClient.patch().uri("/api/orders/{orderCode}/status?status=READY", claimed.orderCode())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("READY");
+    }
+
+    @Test
+    void getNextBatch_ShouldClaimABatchUntilTheStationMarksItReady() {
+        createOrder("Quattro Formaggi", 2);
+        createOrder("Quattro Formaggi", 2);
+        String station = "oven-" + UUID.randomUUID();
+
+        OrderBatch batch = getNextBatch(station);
+
+        assertFalse(batch.orders().isEmpty());
+        assertEquals(station, batch.station());
+        assertTrue(batch.orders().stream().allMatch(order -> order.status() == OrderStatus.PREPARING
+                && station.equals(order.assignedStation()) && order.pizzaType().equals(batch.pizzaType())));
+
+        // The station keeps getting its batch until it is ready
+        assertEquals(batch.orders().stream().map(OrderDto::orderCode).toList(),
+                getNextBatch(station).orders().stream().map(OrderDto::orderCode).toList());
+
+        List<OrderStatusResponse> ready = webTestClient.post().uri("/api/orders/ready?station={station}", station)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(OrderStatusResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(batch.orders().size(), ready.size());
+        assertTrue(ready.stream().allMatch(response -> response.status() == OrderStatus.READY));
+
+        webTestClient.post().uri("/api/orders/ready?station={station}", station)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void lockPizzaTypeIfRoomLeft_ShouldNotKeepTheLockOfAFullType() {
+        PizzaTypeDto pizzaType = menuCatalog.update("Bianca", new UpdatePizzaTypeRequest());
+        // No room left: nothing can be in preparation
+        PizzaTypeDto full = new PizzaTypeDto(pizzaType.id(), pizzaType.name(), true, 0);
+        PizzaTypeDto withRoom = new PizzaTypeDto(pizzaType.id(), pizzaType.name(), true, 1);
+
+        // Subscribed outside of the context of the first claim, so it runs in a transaction of its own
+        Mono<Boolean> otherClaim = Mono.fromFuture(() ->
+                transactionalOperator.transactional(reactiveOrderRepository.lockPizzaTypeIfRoomLeft(withRoom)).toFuture());
+
+        // The first claim finds the type full and, with its transaction still open, waits for the other claim to lock it
+        Boolean otherClaimLocked = transactionalOperator.transactional(reactiveOrderRepository.lockPizzaTypeIfRoomLeft(full)
+                        .flatMap(locked -> {
+                            assertFalse(locked);
+                            return otherClaim.timeout(Duration.ofSeconds(5));
+                        }))
+                .block(Duration.ofSeconds(20));
+
+        assertEquals(Boolean.TRUE, otherClaimLocked);
+    }
+
+    @Test
+    void getNextOrder_ShouldKeepWithinTheCapOfThePizzaType() {
+        UpdatePizzaTypeRequest cap = new UpdatePizzaTypeRequest();
+        cap.setMaxPreparing(1);
+        menuCatalog.update("Ortolana", cap);
+
+        createOrder("Ortolana", 1);
+        createOrder("Ortolana", 1);
+
+        // Drains the queue: only one of the two orders can be in preparation
+        List<OrderDto> claimed = new ArrayList<>();
+        OrderDto next;
+        while ((next = getNextOrder("station-" + UUID.randomUUID())) != null) {
+            claimed.add(next);
+        }
+
+        assertEquals(1, claimed.stream().filter(order -> order.pizzaType().equals("Ortolana")).count());
+        assertEquals(1, orderRepository.countByStatusAndPizzaType(OrderStatus.RECEIVED, "Ortolana"));
+    }
+
+    @Test
+    void createOrder_ShouldNotReuseIdsAllocatedByJpa() {
+        Set<Long> ids = new HashSet<>();
+
+        for (int i = 0; i < 3; i++) {
+            PizzaOrder order = new PizzaOrder();
+            order.setOrderCode("JPA" + UUID.randomUUID().toString().substring(0, 8));
+            order.setPizzaType("Marinara");
+            order.setQuantity(1);
+            order.setStatus(OrderStatus.RECEIVED);
+            order.setInsertTimestamp(LocalDateTime.now());
+            order.setUpdateTimestamp(LocalDateTime.now());
+            assertTrue(ids.add(orderRepository.save(order).getId()));
+
+            String orderCode = createOrder("Marinara", 1).orderCode();
+            assertTrue(ids.add(orderRepository.findByOrderCode(orderCode).orElseThrow().getId()));
+        }
+    }
+
+    private OrderStatusResponse createOrder(String pizzaType, int quantity) {
+        return webTestClient.post().uri("/api/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newItem(pizzaType, quantity))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(OrderStatusResponse.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private OrderDto getNextOrder(String station) {
+        return webTestClient.get().uri("/api/orders/next?station={station}", station)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(OrderDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private OrderBatch getNextBatch(String station) {
+        return webTestClient.get().uri("/api/orders/next/batch?station={station}", station)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(OrderBatch.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private CreateOrderRequest newItem(String pizzaType, int quantity) {
+        CreateOrderRequest item = new CreateOrderRequest();
+        item.setPizzaType(pizzaType);
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,192 @@
+package com.awesomepizza.slice.repository;
+
+import com.awesomepizza.slice.dto.QueuedOrder;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.service.MenuCatalog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("dev")
+@Import(MenuCatalog.class)
+class OrderRepositoryTest {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void findFirstByStatus_ShouldClaimFirstDueReceivedOrder() {
+        LocalDateTime now = LocalDateTime.now();
+
+        orderRepository.save(newOrder("PREP001", OrderStatus.PREPARING, now.minusMinutes(30)));
+        orderRepository.save(newOrder("TEST456", OrderStatus.RECEIVED, now.minusMinutes(5)));
+        orderRepository.save(newOrder("TEST123", OrderStatus.RECEIVED, now.minusMinutes(10)));
+        orderRepository.save(newOrder("TEST789", OrderStatus.RECEIVED, now.minusMinutes(1)));
+
+        Optional<PizzaOrder> claimed = orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(
+                OrderStatus.RECEIVED, LocalDateTime.now());
+
+        assertTrue(claimed.isPresent());
+        assertEquals("TEST123", claimed.get().getOrderCode());
+    }
+
+    @Test
+    void findFirstByStatus_ShouldReturnEmptyWhenQueueIsEmpty() {
+        orderRepository.save(newOrder("PREP001", OrderStatus.PREPARING, LocalDateTime.now()));
+
+        Optional<PizzaOrder> claimed = orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(
+                OrderStatus.RECEIVED, LocalDateTime.now());
+
+        assertTrue(claimed.isEmpty());
+    }
+
+    @Test
+    void findFirstByStatusAndDispatchAt_ShouldServeExpressAheadAndSkipPreOrdersNotDue() {
+        // Whole seconds: the database rounds the stored timestamps, which would break the comparison at the exact dispatch time
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        PizzaOrder normal = orderRepository.save(newOrder("TEST123", OrderStatus.RECEIVED, now.minusMinutes(5)));
+        PizzaOrder express = newOrder("TEST456", OrderStatus.RECEIVED, now.minusMinutes(1));
+        express.setExpress(true);
+        express.setDispatchAt(now.minusMinutes(11));
+        orderRepository.save(express);
+        PizzaOrder preOrder = newOrder("TEST789", OrderStatus.RECEIVED, now.minusMinutes(30));
+        preOrder.setPickupTime(now.plusHours(2));
+        preOrder.setDispatchAt(now.plusHours(1));
+        orderRepository.save(preOrder);
+
+        assertEquals(List.of("TEST456", "TEST123", "TEST789"),
+                orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED).stream().map(queued -> queued.order().orderCode()).toList());
+
+        // The express order is ahead of the older normal one
+        assertEquals("TEST456", orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(
+                OrderStatus.RECEIVED, now).orElseThrow().getOrderCode());
+
+        express.setStatus(OrderStatus.PREPARING);
+        normal.setStatus(OrderStatus.PREPARING);
+        orderRepository.saveAll(List.of(express, normal));
+
+        // The pre-order can only be claimed once due
+        assertTrue(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(
+                OrderStatus.RECEIVED, now).isEmpty());
+        assertEquals("TEST789", orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(
+                OrderStatus.RECEIVED, now.plusHours(1)).orElseThrow().getOrderCode());
+    }
+
+    @Test
+    void findFirstByStatusAndPizzaTypeNotIn_ShouldSkipExcludedTypes() {
+        LocalDateTime now = LocalDateTime.now();
+
+        orderRepository.save(newOrder("TEST123", OrderStatus.RECEIVED, now.minusMinutes(10)));
+        PizzaOrder diavola = newOrder("TEST456", OrderStatus.RECEIVED, now.minusMinutes(5));
+        diavola.setPizzaType("Diavola");
+        orderRepository.save(diavola);
+
+        Optional<PizzaOrder> claimed = orderRepository.findFirstByStatusAndDispatchAtLessThanEqualAndPizzaTypeNotInOrderByDispatchAtAscIdAsc(
+                OrderStatus.RECEIVED, LocalDateTime.now(), List.of("Margherita"));
+
+        assertTrue(claimed.isPresent());
+        assertEquals("TEST456", claimed.get().getOrderCode());
+        assertEquals("Diavola", claimed.get().getPizzaType());
+    }
+
+    @Test
+    void save_ShouldStoreTheIdOfThePizzaType() {
+        orderRepository.save(newOrder("TEST123", OrderStatus.RECEIVED, LocalDateTime.now()));
+        entityManager.flush();
+
+        Number storedId = (Number) entityManager.getEntityManager()
+                .createNativeQuery("select pizza_type_id from pizza_orders where order_code = 'TEST123'")
+                .getSingleResult();
+
+        assertEquals(menuCatalog.idOf("Margherita"), storedId.shortValue());
+    }
+
+    @Test
+    void findQueuedOrdersByStatus_ShouldProjectQueuedOrdersInDispatchOrder() {
+        LocalDateTime now = LocalDateTime.now();
+
+        orderRepository.save(newOrder("PREP001", OrderStatus.PREPARING, now.minusMinutes(30)));
+        orderRepository.save(newOrder("TEST456", OrderStatus.RECEIVED, now.minusMinutes(5)));
+        PizzaOrder first = orderRepository.save(newOrder("TEST123", OrderStatus.RECEIVED, now.minusMinutes(10)));
+
+        List<QueuedOrder> queue = orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED);
+
+        assertEquals(2, queue.size());
+        assertEquals(first.getId(), queue.get(0).id());
+        assertEquals("TEST123", queue.get(0).order().orderCode());
+        assertEquals("Margherita", queue.get(0).order().pizzaType());
+        assertEquals(OrderStatus.RECEIVED, queue.get(0).order().status());
+        assertEquals("TEST456", queue.get(1).order().orderCode());
+    }
+
+    @Test
+    void findByStatusAfter_ShouldSeekPastTheCursorOnTimestampAndId() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        // Two orders share the same timestamp: the id breaks the tie
+        PizzaOrder first = orderRepository.save(newOrder("TEST123", OrderStatus.RECEIVED, now.minusMinutes(10)));
+        PizzaOrder second = orderRepository.save(newOrder("TEST456", OrderStatus.RECEIVED, now.minusMinutes(10)));
+        orderRepository.save(newOrder("TEST789", OrderStatus.RECEIVED, now.minusMinutes(1)));
+        orderRepository.save(newOrder("PREP001", OrderStatus.PREPARING, now.minusMinutes(5)));
+
+        List<PizzaOrder> firstPage = orderRepository.findByStatusOrderByDispatchAtAscIdAsc(OrderStatus.RECEIVED, Limit.of(1));
+        List<PizzaOrder> nextPage = orderRepository.findByStatusAfter(
+                OrderStatus.RECEIVED, first.getDispatchAt(), first.getId(), Limit.of(2));
+        List<PizzaOrder> lastPage = orderRepository.findByStatusAfter(
+                OrderStatus.RECEIVED, now.minusMinutes(1), Long.MAX_VALUE, Limit.of(2));
+
+        assertEquals(List.of("TEST123"), firstPage.stream().map(PizzaOrder::getOrderCode).toList());
+        assertEquals(List.of(second.getOrderCode(), "TEST789"), nextPage.stream().map(PizzaOrder::getOrderCode).toList());
+        assertTrue(lastPage.isEmpty());
+    }
+
+    @Test
+    void transitionStatus_ShouldOnlyUpdateFromTheExpectedStatus() {
+        PizzaOrder order = newOrder("TEST123", OrderStatus.PREPARING, LocalDateTime.now());
+        order.setAssignedStation("oven-1");
+        orderRepository.save(order);
+
+        // Not in READY: nothing is updated
+        assertEquals(0, orderRepository.transitionStatus("TEST123", OrderStatus.READY, OrderStatus.RECEIVED, LocalDateTime.now()));
+
+        // Sent back to the queue: the station is released and the version bumped
+        assertEquals(1, orderRepository.transitionStatus("TEST123", OrderStatus.PREPARING, OrderStatus.RECEIVED, LocalDateTime.now()));
+
+        PizzaOrder updated = orderRepository.findByOrderCode("TEST123").orElseThrow();
+        assertEquals(OrderStatus.RECEIVED, updated.getStatus());
+        assertNull(updated.getAssignedStation());
+        assertEquals(order.getVersion() + 1, updated.getVersion());
+    }
+
+    private PizzaOrder newOrder(String orderCode, OrderStatus status, LocalDateTime insertTimestamp) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCode);
+        order.setPizzaType("Margherita");
+        order.setQuantity(1);
+        order.setStatus(status);
+        order.setInsertTimestamp(insertTimestamp);
+        order.setUpdateTimestamp(insertTimestamp);
+        order.setDispatchAt(insertTimestamp);
+        return order;
+    }
+}
@@ -0,0 +1,125 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.KitchenStats;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KitchenAnalyticsTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T12:30:00Z"));
+
+    @Test
+    void getStats_ShouldReportQueueWaitAndPrepTimePercentiles() {
+        KitchenAnalytics analytics = new KitchenAnalytics(clock, Duration.ofHours(1), null);
+
+        for (int i = 1; i <= 100; i++) {
+            completeOrder(analytics, "Margherita", Duration.ofSeconds(i), Duration.ofMinutes(10));
+        }
+        completeOrder(analytics, "Diavola", Duration.ofSeconds(30), Duration.ofMinutes(5));
+
+        KitchenStats stats = analytics.getStats();
+
+        assertEquals(101, stats.queueWait().count());
+        assertEquals(50, stats.queueWait().p50Millis() / 1000.0, 1);
+        assertEquals(95, stats.queueWait().p95Millis() / 1000.0, 1);
+
+        assertEquals(100, stats.prepTimeByPizzaType().get("Margherita").count());
+        assertEquals(600, stats.prepTimeByPizzaType().get("Margherita").p50Millis() / 1000.0, 6);
+        assertEquals(1, stats.prepTimeByPizzaType().get("Diavola").count());
+
+        KitchenStats.HourlyThroughput currentHour = stats.throughputPerHour().get(stats.throughputPerHour().size() - 1);
+        assertEquals(24, stats.throughputPerHour().size());
+        assertEquals(101, currentHour.created());
+        assertEquals(101, currentHour.completed());
+    }
+
+    @Test
+    void getStats_ShouldDropMinutesThatLeftTheWindow() {
+        KitchenAnalytics analytics = new KitchenAnalytics(clock, Duration.ofMinutes(10), null);
+
+        completeOrder(analytics, "Margherita", Duration.ofSeconds(10), Duration.ofMinutes(10));
+        clock.advance(Duration.ofMinutes(11));
+        completeOrder(analytics, "Margherita", Duration.ofSeconds(20), Duration.ofMinutes(10));
+
+        KitchenStats stats = analytics.getStats();
+
+        assertEquals(1, stats.queueWait().count());
+        assertEquals(1, stats.prepTimeByPizzaType().get("Margherita").count());
+        // The hourly counts keep both orders
+        assertEquals(2, stats.throughputPerHour().get(23).completed());
+    }
+
+    @Test
+    void checkpoint_ShouldBeRestoredAfterRestart(@TempDir Path directory) {
+        Path checkpointFile = directory.resolve("analytics.bin");
+
+        KitchenAnalytics analytics = new KitchenAnalytics(clock, Duration.ofHours(1), checkpointFile);
+        completeOrder(analytics, "Margherita", Duration.ofSeconds(45), Duration.ofMinutes(8));
+        analytics.checkpoint();
+
+        KitchenAnalytics restarted = new KitchenAnalytics(clock, Duration.ofHours(1), checkpointFile);
+        restarted.restore();
+
+        KitchenStats stats = restarted.getStats();
+        assertEquals(1, stats.queueWait().count());
+        assertEquals(1, stats.prepTimeByPizzaType().get("Margherita").count());
+        assertEquals(1, stats.throughputPerHour().get(23).created());
+    }
+
+    private void completeOrder(KitchenAnalytics analytics, String pizzaType, Duration queueWait, Duration prepTime) {
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(pizzaType + queueWait);
+        order.setPizzaType(pizzaType);
+        order.setQuantity(1);
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(now.minus(queueWait).minus(prepTime));
+        order.setUpdateTimestamp(order.getInsertTimestamp());
+        analytics.onOrderStatusChanged(OrderStatusChangedEvent.of(order, null));
+
+        order.setStatus(OrderStatus.PREPARING);
+        order.setPreparingTimestamp(now.minus(prepTime));
+        order.setUpdateTimestamp(order.getPreparingTimestamp());
+        analytics.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED));
+
+        order.setStatus(OrderStatus.READY);
+        order.setUpdateTimestamp(now);
+        analytics.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.PREPARING));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
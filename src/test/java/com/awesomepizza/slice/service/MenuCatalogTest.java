@@ -0,0 +1,88 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.entity.PizzaType;
+import com.awesomepizza.slice.exception.UnknownPizzaTypeException;
+import com.awesomepizza.slice.repository.PizzaTypeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class MenuCatalogTest {
+
+    @Mock
+    private PizzaTypeRepository pizzaTypeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MenuCatalog menuCatalog;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        menuCatalog = new MenuCatalog(pizzaTypeRepository, transactionManager, List.of("Margherita", "Diavola"));
+    }
+
+    @Test
+    void load_ShouldSeedAnEmptyMenu() {
+        when(pizzaTypeRepository.count()).thenReturn(0L);
+
+        menuCatalog.load();
+
+        verify(pizzaTypeRepository).saveAll(argThatNames("Margherita", "Diavola"));
+        verify(pizzaTypeRepository).findAll();
+    }
+
+    @Test
+    void resolve_ShouldOnlyAcceptAvailableTypes() {
+        PizzaType diavola = pizzaType(2, "Diavola");
+        diavola.setAvailable(false);
+        when(pizzaTypeRepository.findAll()).thenReturn(List.of(pizzaType(1, "Margherita"), diavola));
+        menuCatalog.refresh();
+
+        assertEquals("Margherita", menuCatalog.resolve("margherita"));
+        assertThrows(UnknownPizzaTypeException.class, () -> menuCatalog.resolve("Diavola"));
+        assertThrows(UnknownPizzaTypeException.class, () -> menuCatalog.resolve("Hawaiian"));
+
+        // Orders of a type taken off the menu can still be read
+        assertEquals("Diavola", menuCatalog.nameOf((short) 2));
+        assertEquals(2, menuCatalog.idOf("Diavola"));
+    }
+
+    @Test
+    void nameOf_ShouldReloadTheMenuForATypeAddedOnAnotherNode() {
+        when(pizzaTypeRepository.findAll())
+                .thenReturn(List.of(pizzaType(1, "Margherita")))
+                .thenReturn(List.of(pizzaType(1, "Margherita"), pizzaType(7, "Hawaiian")));
+        menuCatalog.refresh();
+
+        // The lookup of the snapshot alone never reloads it
+        assertNull(menuCatalog.findName((short) 7));
+        verify(pizzaTypeRepository, times(1)).findAll();
+
+        assertEquals("Hawaiian", menuCatalog.nameOf((short) 7));
+        assertEquals("Hawaiian", menuCatalog.findName((short) 7));
+        assertEquals("Hawaiian", menuCatalog.resolve("Hawaiian"));
+        assertThrows(IllegalStateException.class, () -> menuCatalog.nameOf((short) 8));
+    }
+
+    private List<PizzaType> argThatNames(String... names) {
+        return argThat(pizzaTypes -> pizzaTypes.stream().map(PizzaType::getName).toList().equals(List.of(names)));
+    }
+
+    private PizzaType pizzaType(int id, String name) {
+        PizzaType pizzaType = new PizzaType();
+        pizzaType.setId((short) id);
+        pizzaType.setName(name);
+        pizzaType.setAvailable(true);
+        return pizzaType;
+    }
+}
@@ -0,0 +1,96 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.entity.ArchivedPizzaOrder;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.repository.ArchivedOrderRepository;
+import com.awesomepizza.slice.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("dev")
+@Import(MenuCatalog.class)
+class OrderArchiverTest {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void archive_ShouldMoveOnlyOldReadyOrders() {
+        LocalDateTime now = LocalDateTime.now();
+
+        orderRepository.save(newOrder("READY01", OrderStatus.READY, now.minusDays(2)));
+        orderRepository.save(newOrder("READY02", OrderStatus.READY, now.minusMinutes(5)));
+        orderRepository.save(newOrder("PREP001", OrderStatus.PREPARING, now.minusDays(2)));
+
+        int archived = newArchiver(500).archive();
+
+        assertEquals(1, archived);
+        assertTrue(orderRepository.findByOrderCode("READY01").isEmpty());
+        assertTrue(orderRepository.findByOrderCode("READY02").isPresent());
+        assertTrue(orderRepository.findByOrderCode("PREP001").isPresent());
+
+        Optional<ArchivedPizzaOrder> archivedOrder = archivedOrderRepository.findByOrderCode("READY01");
+        assertTrue(archivedOrder.isPresent());
+        assertEquals(OrderStatus.READY, archivedOrder.get().getStatus());
+        assertNotNull(archivedOrder.get().getArchiveTimestamp());
+    }
+
+    @Test
+    void archive_ShouldMoveOrdersInBatchesAndRecordMetrics() {
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < 5; i++) {
+            orderRepository.save(newOrder("READY0" + i, OrderStatus.READY, now.minusDays(2).plusMinutes(i)));
+        }
+
+        int archived = newArchiver(2).archive();
+
+        assertEquals(5, archived);
+        assertEquals(5, archivedOrderRepository.count());
+        assertEquals(5.0, registry.get("slice.orders.archived").counter().count());
+        assertEquals(1, registry.get("slice.orders.archive.run").timer().count());
+    }
+
+    private OrderArchiver newArchiver(int batchSize) {
+        return new OrderArchiver(orderRepository, archivedOrderRepository, transactionManager, registry,
+                Duration.ofDays(1), batchSize, 100);
+    }
+
+    private PizzaOrder newOrder(String orderCode, OrderStatus status, LocalDateTime updateTimestamp) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCode);
+        order.setPizzaType("Margherita");
+        order.setQuantity(1);
+        order.setStatus(status);
+        order.setInsertTimestamp(updateTimestamp.minusMinutes(20));
+        order.setUpdateTimestamp(updateTimestamp);
+        return order;
+    }
+}
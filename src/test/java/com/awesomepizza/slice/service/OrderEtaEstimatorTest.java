@@ -0,0 +1,126 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class OrderEtaEstimatorTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T12:00:00Z"), ZoneOffset.UTC);
+    private final LocalDateTime now = LocalDateTime.now(clock);
+
+    private OrderQueue orderQueue;
+    private OrderEtaEstimator estimator;
+
+    @BeforeEach
+    void setUp() {
+        orderQueue = new OrderQueue(clock, mock(OrderRepository.class));
+        estimator = new OrderEtaEstimator(clock, orderQueue, Duration.ofMinutes(8), 0.5, Duration.ofMinutes(15));
+    }
+
+    @Test
+    void estimateReadyTime_ShouldUseTheDefaultBeforeLearning() {
+        receive("FIRST", "Margherita", 1);
+        receive("SECOND", "Margherita", 1);
+
+        // One order ahead, then its own preparation
+        assertEquals(now.plusMinutes(16), estimator.estimateReadyTime("SECOND", OrderStatus.RECEIVED));
+        assertEquals(now.plusMinutes(8), estimator.estimateReadyTime("FIRST", OrderStatus.RECEIVED));
+    }
+
+    @Test
+    void estimateReadyTime_ShouldLearnPrepTimesPerPizzaTypeAndQuantity() {
+        complete("DONE1", "Diavola", 2, Duration.ofMinutes(10));
+        complete("DONE2", "Diavola", 2, Duration.ofMinutes(20));
+
+        receive("NEXT", "Diavola", 2);
+
+        // Moving average with smoothing 0.5: 10, then 15
+        assertEquals(now.plusMinutes(15), estimator.estimateReadyTime("NEXT", OrderStatus.RECEIVED));
+    }
+
+    @Test
+    void estimateReadyTime_ShouldShareTheQueueAmongActiveStations() {
+        complete("DONE1", "Margherita", 1, Duration.ofMinutes(4));
+        claim(newOrder("BUSY", "Margherita", 1), "oven-2", now);
+
+        receive("FIRST", "Margherita", 1);
+        receive("SECOND", "Margherita", 1);
+        receive("THIRD", "Margherita", 1);
+
+        // Two stations: the two orders ahead take one round of 4 minutes
+        assertEquals(now.plusMinutes(8), estimator.estimateReadyTime("THIRD", OrderStatus.RECEIVED));
+    }
+
+    @Test
+    void estimateReadyTime_ShouldCountFromThePreparationStart() {
+        claim(newOrder("PREP", "Margherita", 1), "main", now.minusMinutes(3));
+
+        assertEquals(now.plusMinutes(5), estimator.estimateReadyTime("PREP", OrderStatus.PREPARING));
+        assertNull(estimator.estimateReadyTime("PREP", OrderStatus.READY));
+        assertNull(estimator.estimateReadyTime("UNKNOWN", OrderStatus.RECEIVED));
+    }
+
+    @Test
+    void estimateReadyTime_ShouldCountFromTheDispatchTimeOfAPreOrder() {
+        receive("FIRST", "Margherita", 1);
+
+        PizzaOrder preOrder = newOrder("LATER", "Margherita", 1);
+        preOrder.setPickupTime(now.plusMinutes(80));
+        preOrder.setDispatchAt(now.plusHours(1));
+        receive(preOrder);
+
+        // Not in the queue yet: due in an hour, then its own preparation
+        assertEquals(now.plusMinutes(68), estimator.estimateReadyTime("LATER", OrderStatus.RECEIVED));
+        assertEquals(now.plusMinutes(8), estimator.estimateReadyTime("FIRST", OrderStatus.RECEIVED));
+    }
+
+    private void receive(String orderCode, String pizzaType, int quantity) {
+        receive(newOrder(orderCode, pizzaType, quantity));
+    }
+
+    private void receive(PizzaOrder order) {
+        OrderStatusChangedEvent event = OrderStatusChangedEvent.of(order, null);
+        orderQueue.onOrderStatusChanged(event);
+        estimator.onOrderStatusChanged(event);
+    }
+
+    private void claim(PizzaOrder order, String station, LocalDateTime preparingTimestamp) {
+        order.setStatus(OrderStatus.PREPARING);
+        order.setAssignedStation(station);
+        order.setPreparingTimestamp(preparingTimestamp);
+        order.setUpdateTimestamp(preparingTimestamp);
+        OrderStatusChangedEvent event = OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED);
+        orderQueue.onOrderStatusChanged(event);
+        estimator.onOrderStatusChanged(event);
+    }
+
+    private void complete(String orderCode, String pizzaType, int quantity, Duration prepTime) {
+        PizzaOrder order = newOrder(orderCode, pizzaType, quantity);
+        claim(order, "main", now.minus(prepTime));
+
+        order.setStatus(OrderStatus.READY);
+        order.setUpdateTimestamp(now);
+        estimator.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.PREPARING));
+    }
+
+    private PizzaOrder newOrder(String orderCode, String pizzaType, int quantity) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCode);
+        order.setPizzaType(pizzaType);
+        order.setQuantity(quantity);
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(now);
+        order.setUpdateTimestamp(now);
+        order.setDispatchAt(now);
+        return order;
+    }
+}
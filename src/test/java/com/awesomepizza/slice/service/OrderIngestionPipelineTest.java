@@ -0,0 +1,166 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class OrderIngestionPipelineTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    private OrderIngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        // Simulate the repository assigning ids, failing any batch containing an order coded "BAD"
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<PizzaOrder> orders = invocation.getArgument(0);
+            batchSizes.add(orders.size());
+            if (orders.stream().anyMatch(order -> order.getOrderCode().equals("BAD"))) {
+                throw new DataIntegrityViolationException("duplicate order code");
+            }
+            orders.forEach(order -> order.setId(ids.incrementAndGet()));
+            return orders;
+        });
+
+        pipeline = new OrderIngestionPipeline(orderRepository, transactionManager, eventPublisher,
+                10, Duration.ofMillis(50), 1000, Duration.ofSeconds(5), Duration.ofSeconds(10));
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    @Test
+    void submit_ShouldPersistConcurrentOrdersInBatches() throws Exception {
+        int orders = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(orders);
+
+        try {
+            List<Future<PizzaOrder>> futures = new ArrayList<>();
+            for (int i = 0; i < orders; i++) {
+                PizzaOrder order = newOrder("ORDER" + i);
+                futures.add(executor.submit(() -> pipeline.submit(order)));
+            }
+
+            for (Future<PizzaOrder> future : futures) {
+                assertNotNull(future.get(10, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Orders were grouped: fewer transactions than orders, none larger than the batch size
+        assertTrue(batchSizes.size() < orders);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+        verify(eventPublisher, times(orders)).publishEvent(any(OrderStatusChangedEvent.class));
+    }
+
+    @Test
+    void submit_ShouldOnlyFailTheBadOrderOfABatch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            Future<PizzaOrder> good1 = executor.submit(() -> pipeline.submit(newOrder("GOOD1")));
+            Future<PizzaOrder> bad = executor.submit(() -> pipeline.submit(newOrder("BAD")));
+            Future<PizzaOrder> good2 = executor.submit(() -> pipeline.submit(newOrder("GOOD2")));
+
+            assertNotNull(good1.get(10, TimeUnit.SECONDS).getId());
+            assertNotNull(good2.get(10, TimeUnit.SECONDS).getId());
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(DataIntegrityViolationException.class, exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void submit_ShouldNotPersistAnOrderAbandonedOnTimeout() throws InterruptedException {
+        // The batch waits longer to fill up than the caller waits for its order
+        OrderIngestionPipeline slowPipeline = new OrderIngestionPipeline(orderRepository, transactionManager, eventPublisher,
+                10, Duration.ofMillis(500), 1000, Duration.ofMillis(50), Duration.ofSeconds(10));
+        slowPipeline.start();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> slowPipeline.submit(newOrder("LATE")));
+        assertEquals(503, exception.getStatusCode().value());
+
+        slowPipeline.stop();
+
+        verify(orderRepository, never()).saveAll(anyList());
+        verify(eventPublisher, never()).publishEvent(any(OrderStatusChangedEvent.class));
+    }
+
+    @Test
+    void submit_ShouldBoundTheWaitForATransactionAlreadyRunning() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+
+        // The transaction takes the order before the caller times out, then outlasts both timeouts
+        OrderIngestionPipeline stuckPipeline = new OrderIngestionPipeline(orderRepository, transactionManager, eventPublisher,
+                1, Duration.ZERO, 1000, Duration.ofMillis(50), Duration.ofMillis(100));
+        stuckPipeline.start();
+
+        try {
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> stuckPipeline.submit(newOrder("STUCK")));
+            assertEquals(503, exception.getStatusCode().value());
+        } finally {
+            release.countDown();
+            stuckPipeline.stop();
+        }
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertEquals(1, definition.getValue().getTimeout());
+    }
+
+    private PizzaOrder newOrder(String orderCode) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCode);
+        order.setPizzaType("Margherita");
+        order.setQuantity(1);
+        order.setStatus(OrderStatus.RECEIVED);
+        return order;
+    }
+}
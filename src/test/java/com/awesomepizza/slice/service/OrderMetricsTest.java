@@ -0,0 +1,96 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.cache.TwoLevelCache;
+import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderMetricsTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private SimpleMeterRegistry registry;
+
+    private OrderQueue orderQueue;
+
+    private TwoLevelCache<OrderStatusResponse> orderStatusCache;
+
+    private OrderMetrics orderMetrics;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        orderQueue = new OrderQueue(orderRepository);
+        orderStatusCache = new TwoLevelCache<>("order-status", 100, Duration.ofSeconds(2), Duration.ofSeconds(60), null);
+        orderMetrics = new OrderMetrics(registry, orderQueue, orderStatusCache);
+    }
+
+    @Test
+    void onOrderStatusChanged_ShouldCountOrdersPerStatus() {
+        PizzaOrder order = newOrder("TEST123", LocalDateTime.now());
+
+        publish(order, null);
+        order.setStatus(OrderStatus.PREPARING);
+        publish(order, OrderStatus.RECEIVED);
+        order.setStatus(OrderStatus.READY);
+        publish(order, OrderStatus.PREPARING);
+
+        for (OrderStatus status : OrderStatus.values()) {
+            assertEquals(1, registry.get("slice.orders.transitions").tag("status", status.name()).counter().count());
+        }
+    }
+
+    @Test
+    void queueGauges_ShouldReflectTheWaitingOrders() {
+        assertEquals(0, registry.get("slice.orders.queue.depth").gauge().value());
+        assertEquals(0, registry.get("slice.orders.queue.oldest.age").timeGauge().value(TimeUnit.SECONDS));
+
+        publish(newOrder("TEST123", LocalDateTime.now().minusMinutes(10)), null);
+        publish(newOrder("TEST456", LocalDateTime.now().minusMinutes(1)), null);
+
+        assertEquals(2, registry.get("slice.orders.queue.depth").gauge().value());
+        assertTrue(registry.get("slice.orders.queue.oldest.age").timeGauge().value(TimeUnit.MINUTES) >= 10);
+    }
+
+    @Test
+    void cacheCounters_ShouldReportHitsAndMisses() {
+        orderStatusCache.get("TEST123", code -> new TwoLevelCache.Versioned<>(new OrderStatusResponse(code, OrderStatus.RECEIVED), 0));
+        orderStatusCache.get("TEST123", code -> new TwoLevelCache.Versioned<>(new OrderStatusResponse(code, OrderStatus.RECEIVED), 0));
+
+        assertEquals(1, registry.get("slice.cache.gets").tag("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("slice.cache.gets").tag("result", "local_hit").functionCounter().count());
+    }
+
+    private void publish(PizzaOrder order, OrderStatus previousStatus) {
+        OrderStatusChangedEvent event = OrderStatusChangedEvent.of(order, previousStatus);
+        orderQueue.onOrderStatusChanged(event);
+        orderMetrics.onOrderStatusChanged(event);
+    }
+
+    private PizzaOrder newOrder(String orderCode, LocalDateTime insertTimestamp) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCode);
+        order.setPizzaType("Margherita");
+        order.setQuantity(1);
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(insertTimestamp);
+        order.setUpdateTimestamp(insertTimestamp);
+        order.setDispatchAt(insertTimestamp);
+        return order;
+    }
+}
@@ -0,0 +1,132 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderPage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads a queue of one million orders in H2 through the streaming and the paginated paths.
+ * Slow and memory hungry, so it only runs with -Dslice.heavy-tests=true.
+ */
+@SpringBootTest(properties = "slice.queue.resync-interval=PT1H")
+@ActiveProfiles("dev")
+@EnabledIfSystemProperty(named = "slice.heavy-tests", matches = "true")
+class OrderQueueStreamingHeavyTest {
+
+    private static final int ORDERS = 1_000_000;
+
+    // A list of one million OrderDto takes a few hundred MB, the streaming read must stay far below
+    private static final long MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from pizza_orders");
+        jdbcTemplate.update("""
+                insert into pizza_orders (id, order_code, pizza_type_id, quantity, status, insert_timestamp, update_timestamp, dispatch_at)
+                select x, 'HEAVY' || x, (select id from pizza_types where name = 'Margherita'), 1, 'RECEIVED',
+                       dateadd('MILLISECOND', x, timestamp '2024-01-01 00:00:00'),
+                       dateadd('MILLISECOND', x, timestamp '2024-01-01 00:00:00'),
+                       dateadd('MILLISECOND', x, timestamp '2024-01-01 00:00:00')
+                from system_range(1, ?)
+                """, ORDERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from pizza_orders");
+    }
+
+    @Test
+    void streamOrderQueue_ShouldKeepHeapBoundedWithOneMillionOrders() throws IOException {
+        long baseline = usedHeapAfterGc();
+        AtomicInteger streamed = new AtomicInteger();
+        AtomicLong maxRetained = new AtomicLong();
+        CountingOutputStream output = new CountingOutputStream();
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.writeStartArray();
+            orderService.streamOrderQueue(order -> {
+                try {
+                    generator.writeObject(order);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                // Sample the live heap a few times along the way
+                if (streamed.incrementAndGet() % 200_000 == 0) {
+                    maxRetained.accumulateAndGet(usedHeapAfterGc() - baseline, Math::max);
+                }
+            });
+            generator.writeEndArray();
+        }
+
+        assertEquals(ORDERS, streamed.get());
+        assertTrue(output.bytes > ORDERS * 50L);
+        assertTrue(maxRetained.get() < MAX_RETAINED_BYTES, "Retained " + maxRetained.get() + " bytes while streaming");
+    }
+
+    @Test
+    void getOrderQueuePage_ShouldWalkOneMillionOrders() {
+        int read = 0;
+        String lastOrderCode = null;
+        String cursor = null;
+
+        do {
+            OrderPage page = orderService.getOrderQueuePage(cursor, OrderService.MAX_PAGE_SIZE);
+            read += page.orders().size();
+            if (!page.orders().isEmpty()) {
+                lastOrderCode = page.orders().get(page.orders().size() - 1).orderCode();
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(ORDERS, read);
+        assertEquals("HEAVY" + ORDERS, lastOrderCode);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.OrderMapper;
+import com.awesomepizza.slice.dto.QueuedOrder;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+class OrderQueueTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private Instant instant = Instant.parse("2026-01-01T12:00:00Z");
+
+    // Moved forward by the tests to release the pre-orders
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    };
+
+    private final LocalDateTime now = LocalDateTime.now(clock);
+
+    private OrderQueue orderQueue;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        orderQueue = new OrderQueue(clock, orderRepository);
+    }
+
+    @Test
+    void onOrderStatusChanged_ShouldKeepOnlyReceivedOrdersInDispatchOrder() {
+        PizzaOrder order1 = newOrder("TEST123", now.minusMinutes(10));
+        PizzaOrder order2 = newOrder("TEST456", now.minusMinutes(5));
+        PizzaOrder order3 = newOrder("TEST789", now.minusMinutes(1));
+
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order3, null));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order1, null));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order2, null));
+
+        // The oldest order is claimed
+        order1.setStatus(OrderStatus.PREPARING);
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order1, OrderStatus.RECEIVED));
+
+        List<OrderDto> queue = orderQueue.snapshot();
+
+        assertEquals(2, queue.size());
+        assertEquals("TEST456", queue.get(0).orderCode());
+        assertEquals("TEST789", queue.get(1).orderCode());
+    }
+
+    @Test
+    void onOrderStatusChanged_ShouldPutExpressOrdersAheadAndUpdatePositions() {
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("TEST123", now.minusMinutes(15)), null));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("TEST456", now.minusMinutes(5)), null));
+
+        // Boosted by 10 minutes: ahead of the order received 5 minutes ago, not of the one waiting for 15
+        PizzaOrder express = newOrder("TEST789", now);
+        express.setExpress(true);
+        express.setDispatchAt(now.minusMinutes(10));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(express, null));
+
+        assertEquals(List.of("TEST123", "TEST789", "TEST456"), orderQueue.snapshot().stream().map(OrderDto::orderCode).toList());
+        assertEquals(1, orderQueue.position("TEST789"));
+        assertEquals(2, orderQueue.position("TEST456"));
+    }
+
+    @Test
+    void onOrderStatusChanged_ShouldBreakTiesOfDispatchTimeById() {
+        PizzaOrder later = newOrder("AAA111", now.minusMinutes(5));
+        later.setId(2L);
+        PizzaOrder earlier = newOrder("ZZZ999", now.minusMinutes(5));
+        earlier.setId(1L);
+
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(later, null));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(earlier, null));
+
+        // The claims take the lower id first, whatever the order codes
+        assertEquals(List.of("ZZZ999", "AAA111"), orderQueue.snapshot().stream().map(OrderDto::orderCode).toList());
+        assertEquals(1, orderQueue.position("AAA111"));
+    }
+
+    @Test
+    void releaseDue_ShouldMovePreOrdersIntoTheQueueWhenDue() {
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("TEST123", now.minusMinutes(5)), null));
+
+        PizzaOrder preOrder = newOrder("TEST456", now.minusMinutes(30));
+        preOrder.setPickupTime(now.plusMinutes(40));
+        preOrder.setDispatchAt(now.plusMinutes(20));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(preOrder, null));
+
+        orderQueue.releaseDue();
+
+        assertEquals(1, orderQueue.size());
+        assertEquals(1, orderQueue.scheduledSize());
+        assertEquals(-1, orderQueue.position("TEST456"));
+        assertEquals("TEST456", orderQueue.find("TEST456").orderCode());
+
+        instant = instant.plusSeconds(20 * 60);
+        orderQueue.releaseDue();
+
+        assertEquals(0, orderQueue.scheduledSize());
+        assertEquals(List.of("TEST123", "TEST456"), orderQueue.snapshot().stream().map(OrderDto::orderCode).toList());
+        assertEquals(1, orderQueue.position("TEST456"));
+    }
+
+    @Test
+    void snapshot_ShouldBeReusedUntilTheQueueChanges() {
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("TEST123", now), null));
+
+        List<OrderDto> first = orderQueue.snapshot();
+        List<OrderDto> second = orderQueue.snapshot();
+
+        assertSame(first, second);
+
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("TEST456", now), null));
+        List<OrderDto> third = orderQueue.snapshot();
+
+        // Earlier snapshots are immutable and unaffected by the change
+        assertEquals(1, first.size());
+        assertEquals(2, third.size());
+        assertThrows(UnsupportedOperationException.class, () -> third.remove(0));
+    }
+
+    @Test
+    void rebuild_ShouldMirrorReceivedOrdersInRepository() {
+        // A stale order that is no longer RECEIVED in the database
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("STALE01", now.minusMinutes(20)), null));
+
+        when(orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED)).thenReturn(List.of(
+                queued(newOrder("TEST123", now.minusMinutes(10))),
+                queued(newOrder("TEST456", now.minusMinutes(5)))));
+
+        orderQueue.rebuild();
+
+        List<OrderDto> queue = orderQueue.snapshot();
+
+        assertEquals(2, orderQueue.size());
+        assertEquals("TEST123", queue.get(0).orderCode());
+        assertEquals("TEST456", queue.get(1).orderCode());
+    }
+
+    @Test
+    void rebuild_ShouldNotRestoreAnOrderClaimedDuringTheLoad() {
+        PizzaOrder order = newOrder("TEST123", now.minusMinutes(10));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order, null));
+
+        // The load reads the order as RECEIVED, then its claim commits before the load is applied
+        when(orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED)).thenAnswer(invocation -> {
+            QueuedOrder loaded = queued(order);
+            order.setStatus(OrderStatus.PREPARING);
+            orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED));
+            return List.of(loaded);
+        });
+
+        orderQueue.rebuild();
+
+        assertEquals(0, orderQueue.size());
+        assertNull(orderQueue.find("TEST123"));
+        assertEquals(-1, orderQueue.position("TEST123"));
+
+        // Sent back to the queue later: the next resync mirrors it again
+        instant = instant.plusSeconds(30);
+        order.setStatus(OrderStatus.RECEIVED);
+        doReturn(List.of(queued(order))).when(orderRepository).findQueuedOrdersByStatus(OrderStatus.RECEIVED);
+
+        orderQueue.rebuild();
+
+        assertEquals(1, orderQueue.size());
+    }
+
+    @Test
+    void rebuild_ShouldKeepAnOldOrderSentBackToTheQueueDuringTheLoad() {
+        PizzaOrder order = newOrder("TEST123", now.minusMinutes(10));
+        order.setStatus(OrderStatus.PREPARING);
+
+        // The load reads the order while it is still PREPARING, then it is sent back to the queue
+        when(orderRepository.findQueuedOrdersByStatus(OrderStatus.RECEIVED)).thenAnswer(invocation -> {
+            order.setStatus(OrderStatus.RECEIVED);
+            orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.PREPARING));
+            return List.of();
+        });
+
+        orderQueue.rebuild();
+
+        assertEquals(1, orderQueue.size());
+        assertEquals(0, orderQueue.position("TEST123"));
+
+        // The next resync finds it in the database again; an order missing from it is dropped
+        doReturn(List.of(queued(order))).when(orderRepository).findQueuedOrdersByStatus(OrderStatus.RECEIVED);
+        orderQueue.rebuild();
+        assertEquals(1, orderQueue.size());
+
+        doReturn(List.of()).when(orderRepository).findQueuedOrdersByStatus(OrderStatus.RECEIVED);
+        orderQueue.rebuild();
+        assertEquals(0, orderQueue.size());
+    }
+
+    private QueuedOrder queued(PizzaOrder order) {
+        return new QueuedOrder(order.getId(), OrderMapper.toOrderDto(order));
+    }
+
+    private PizzaOrder newOrder(String orderCode, LocalDateTime insertTimestamp) {
+        PizzaOrder order = new PizzaOrder();
+        order.setOrderCode(orderCode);
+        order.setPizzaType("Margherita");
+        order.setQuantity(1);
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(insertTimestamp);
+        order.setUpdateTimestamp(insertTimestamp);
+        order.setDispatchAt(insertTimestamp);
+        return order;
+    }
+}
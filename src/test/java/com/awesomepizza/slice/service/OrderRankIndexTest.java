@@ -0,0 +1,74 @@
+package com.awesomepizza.slice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderRankIndexTest {
+
+    @Test
+    void rank_ShouldCountTheOrdersAhead() {
+        OrderRankIndex<String> index = new OrderRankIndex<>(Comparator.naturalOrder());
+        index.add("A");
+        index.add("B");
+        index.add("C");
+
+        assertEquals(0, index.rank("A"));
+        assertEquals(2, index.rank("C"));
+
+        index.remove("A");
+
+        assertEquals(0, index.rank("B"));
+        assertEquals(1, index.rank("C"));
+        assertEquals(-1, index.rank("A"));
+    }
+
+    @Test
+    void add_ShouldInsertAtThePlaceInTheQueue() {
+        OrderRankIndex<String> index = new OrderRankIndex<>(Comparator.naturalOrder());
+        index.add("B");
+        index.add("D");
+
+        // An order jumping the queue moves the ones behind it back
+        index.add("A");
+        index.add("C");
+        index.add("C");
+
+        assertEquals(0, index.rank("A"));
+        assertEquals(2, index.rank("C"));
+        assertEquals(3, index.rank("D"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void rank_ShouldMatchASortedListUnderRandomChanges() {
+        OrderRankIndex<Integer> index = new OrderRankIndex<>(Comparator.naturalOrder());
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            if (!expected.isEmpty() && random.nextInt(3) == 0) {
+                Integer removed = expected.remove(random.nextInt(expected.size()));
+                index.remove(removed);
+            } else {
+                int key = random.nextInt(1_000_000);
+                int position = Collections.binarySearch(expected, key);
+                if (position < 0) {
+                    expected.add(-position - 1, key);
+                }
+                index.add(key);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(i, index.rank(expected.get(i)));
+        }
+    }
+}
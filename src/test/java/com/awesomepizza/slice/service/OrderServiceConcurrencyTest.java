@@ -0,0 +1,240 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderDto;
+import com.awesomepizza.slice.dto.PizzaTypeDto;
+import com.awesomepizza.slice.dto.UpdatePizzaTypeRequest;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.exception.OrderStatusConflictException;
+import com.awesomepizza.slice.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("dev")
+class OrderServiceConcurrencyTest {
+
+    private static final int STATIONS = 8;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MenuCatalog menuCatalog;
+
+    @Autowired
+    private PizzaTypeLocks pizzaTypeLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void getNextOrder_ConcurrentStationsShouldClaimDistinctOrders() throws Exception {
+        createOrders(STATIONS * 2);
+
+        List<OrderDto> claimed = runOnStations(station -> orderService.getNextOrder(station));
+
+        Set<String> orderCodes = new HashSet<>();
+        for (OrderDto order : claimed) {
+            assertNotNull(order);
+            assertEquals(OrderStatus.PREPARING, order.status());
+            orderCodes.add(order.orderCode());
+        }
+        assertEquals(STATIONS, orderCodes.size());
+    }
+
+    @Test
+    void getNextOrder_StationShouldKeepItsInFlightOrder() throws Exception {
+        createOrders(2);
+
+        OrderDto first = orderService.getNextOrder("oven-1");
+        OrderDto again = orderService.getNextOrder("oven-1");
+        OrderDto other = orderService.getNextOrder("oven-2");
+
+        assertEquals(first.orderCode(), again.orderCode());
+        assertNotEquals(first.orderCode(), other.orderCode());
+    }
+
+    @Test
+    void getNextOrder_ConcurrentCallsOfOneStationShouldClaimOneOrder() throws Exception {
+        createOrders(STATIONS);
+
+        // The calls also race to register the station, which has never claimed an order
+        List<OrderDto> claimed = runOnStations(station -> orderService.getNextOrder("counter"));
+
+        Set<String> orderCodes = new HashSet<>();
+        for (OrderDto order : claimed) {
+            assertNotNull(order);
+            orderCodes.add(order.orderCode());
+        }
+        assertEquals(1, orderCodes.size());
+        assertEquals(STATIONS - 1, orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED).size());
+    }
+
+    @Test
+    void getNextOrder_StressShouldHandOutEveryOrderExactlyOnce() throws Exception {
+        int orders = 400;
+        createOrders(orders);
+
+        Map<String, String> claimedBy = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+
+        runOnStations(station -> {
+            while (claimedBy.size() < orders && System.nanoTime() < deadline) {
+                OrderDto order = orderService.getNextOrder(station);
+                if (order == null) {
+                    continue;
+                }
+
+                if (claimedBy.putIfAbsent(order.orderCode(), station) != null) {
+                    duplicates.incrementAndGet();
+                }
+                orderService.updateOrderStatus(order.orderCode(), OrderStatus.READY);
+            }
+            return null;
+        });
+
+        assertEquals(0, duplicates.get());
+        assertEquals(orders, claimedBy.size());
+        assertTrue(orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED).isEmpty());
+    }
+
+    @Test
+    void updateOrderStatus_ConcurrentTransitionsShouldNotLoseUpdates() throws Exception {
+        createOrders(1);
+        String orderCode = orderService.getNextOrder("oven-0").orderCode();
+        long initialVersion = orderRepository.findByOrderCode(orderCode).orElseThrow().getVersion();
+
+        // Every station sends the claimed order back to the queue at the same time, then it is claimed again:
+        // the request is valid from PREPARING only, so a single one applies in each round and the others conflict
+        int rounds = 20;
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        for (int round = 0; round < rounds; round++) {
+            runOnStations(station -> {
+                try {
+                    orderService.updateOrderStatus(orderCode, OrderStatus.RECEIVED);
+                    applied.incrementAndGet();
+                } catch (OrderStatusConflictException | ConcurrencyFailureException e) {
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            });
+            assertEquals(orderCode, orderService.getNextOrder("oven-0").orderCode());
+        }
+
+        // Each applied transition and claim bumped the version exactly once, and none was applied twice from the same status
+        PizzaOrder order = orderRepository.findByOrderCode(orderCode).orElseThrow();
+        assertEquals(rounds, applied.get());
+        assertEquals(rounds * (STATIONS - 1), conflicts.get());
+        assertEquals(initialVersion + 2L * rounds, order.getVersion());
+        assertEquals(OrderStatus.PREPARING, order.getStatus());
+
+        // Once READY the order is final
+        orderService.updateOrderStatus(orderCode, OrderStatus.READY);
+        assertThrows(OrderStatusConflictException.class, () -> orderService.updateOrderStatus(orderCode, OrderStatus.RECEIVED));
+    }
+
+    @Test
+    void lockIfRoomLeft_ShouldNotKeepTheLockOfAFullType() throws Exception {
+        UpdatePizzaTypeRequest request = new UpdatePizzaTypeRequest();
+        PizzaTypeDto pizzaType = menuCatalog.update("Bianca", request);
+        // No room left: nothing can be in preparation
+        PizzaTypeDto full = new PizzaTypeDto(pizzaType.id(), pizzaType.name(), true, 0);
+        PizzaTypeDto withRoom = new PizzaTypeDto(pizzaType.id(), pizzaType.name(), true, 1);
+
+        CountDownLatch fullTypeChecked = new CountDownLatch(1);
+        CountDownLatch otherClaimLocked = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // A claim finds the type full and goes on in its transaction, e.g. with the orders of other types
+            Future<Boolean> claim = executor.submit(() -> transactionTemplate.execute(status -> {
+                assertFalse(pizzaTypeLocks.lockIfRoomLeft(full));
+                fullTypeChecked.countDown();
+                try {
+                    return otherClaimLocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+
+            assertTrue(fullTypeChecked.await(10, TimeUnit.SECONDS));
+            transactionTemplate.executeWithoutResult(status -> {
+                assertTrue(pizzaTypeLocks.lockIfRoomLeft(withRoom));
+                otherClaimLocked.countDown();
+            });
+
+            // The other claim got the lock while the first transaction was still open
+            assertTrue(claim.get(20, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void createOrders(int count) {
+        for (int i = 0; i < count; i++) {
+            CreateOrderRequest request = new CreateOrderRequest();
+            request.setPizzaType("Margherita");
+            request.setQuantity(1);
+            orderService.createOrder(request);
+        }
+    }
+
+    // Runs the task once per station, all stations starting at the same time
+    private <T> List<T> runOnStations(StationTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(STATIONS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < STATIONS; i++) {
+                String station = "oven-" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(station);
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(90, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StationTask<T> {
+        T run(String station) throws Exception;
+    }
+}
@@ -1,23 +1,47 @@
 package com.awesomepizza.slice.service;
 
+import com.awesomepizza.slice.cache.IdempotencyStore;
+import com.awesomepizza.slice.cache.TwoLevelCache;
+import com.awesomepizza.slice.dto.BulkOrderRequest;
+import com.awesomepizza.slice.dto.BulkOrderResponse;
 import com.awesomepizza.slice.dto.CreateOrderRequest;
+import com.awesomepizza.slice.dto.OrderBatch;
 import com.awesomepizza.slice.dto.OrderDto;
 import com.awesomepizza.slice.dto.OrderStatusResponse;
+import com.awesomepizza.slice.entity.ArchivedPizzaOrder;
 import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.entity.PizzaType;
 import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.exception.IdempotencyKeyMismatchException;
+import com.awesomepizza.slice.exception.OrderStatusConflictException;
+import com.awesomepizza.slice.exception.UnknownPizzaTypeException;
+import com.awesomepizza.slice.repository.ArchivedOrderRepository;
 import com.awesomepizza.slice.repository.OrderRepository;
+import com.awesomepizza.slice.repository.PizzaTypeRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class OrderServiceTest {
@@ -25,12 +49,48 @@ class OrderServiceTest {
     @Mock
     private OrderRepository orderRepository;
 
+    @Mock
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private OrderIngestionPipeline orderIngestionPipeline;
+
+    @Mock
+    private PizzaTypeRepository pizzaTypeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private KitchenStations kitchenStations;
+
+    @Mock
+    private PizzaTypeLocks pizzaTypeLocks;
+
+    private MenuCatalog menuCatalog;
+
+    private OrderQueue orderQueue;
+
+    private OrderStatusCache orderStatusCache;
+
     private OrderService orderService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        orderService = new OrderService(orderRepository);
+        orderQueue = new OrderQueue(orderRepository);
+        orderStatusCache = new OrderStatusCache(
+                new TwoLevelCache<>("order-status", 100, Duration.ofSeconds(2), Duration.ofSeconds(60), null));
+        menuCatalog = new MenuCatalog(pizzaTypeRepository, transactionManager, List.of());
+        setMenu(pizzaType(1, "Margherita", null), pizzaType(2, "Capricciosa", null), pizzaType(3, "Diavola", null));
+        orderService = new OrderService(orderRepository, archivedOrderRepository, kitchenStations, pizzaTypeLocks, orderQueue, orderIngestionPipeline,
+                new SnowflakeOrderCodeGenerator(1, Clock.systemUTC(), 1000), menuCatalog,
+                new DispatchPolicy(Duration.ofMinutes(10), Duration.ofMinutes(20)), new BatchPolicy(6, 8, Duration.ofMinutes(5)), orderStatusCache,
+                new OrderEtaEstimator(Clock.systemUTC(), orderQueue, Duration.ofMinutes(8), 0.2, Duration.ofMinutes(15)),
+                new IdempotencyStore<>("order-create", 100, Duration.ofHours(24), Duration.ofSeconds(30), Duration.ofSeconds(10), null), eventPublisher);
     }
 
     @Test
@@ -45,21 +105,140 @@ class OrderServiceTest {
         savedOrder.setOrderCode("TEST123");
         savedOrder.setStatus(OrderStatus.RECEIVED);
 
-        // Set what to save when repository save is invoked
-        when(orderRepository.save(any(PizzaOrder.class))).thenReturn(savedOrder);
+        // Set what to return when the order is persisted by the ingestion pipeline
+        when(orderIngestionPipeline.submit(any(PizzaOrder.class))).thenReturn(savedOrder);
 
-        // Call service (which will invoke mock repository) to create new order
+        // Call service (which will invoke mock pipeline) to create new order
         OrderStatusResponse response = orderService.createOrder(request);
 
         assertNotNull(response);
-        assertEquals(OrderStatus.RECEIVED, response.getStatus());
-        assertNotNull(response.getOrderCode());
+        assertEquals(OrderStatus.RECEIVED, response.status());
+        assertNotNull(response.orderCode());
 
-        verify(orderRepository, times(1)).save(any(PizzaOrder.class));
+        verify(orderIngestionPipeline, times(1)).submit(any(PizzaOrder.class));
+        verify(orderRepository, never()).save(any(PizzaOrder.class));
+    }
+
+    @Test
+    void createOrder_ShouldReplayRequestWithSameIdempotencyKey() {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setPizzaType("Margherita");
+        request.setQuantity(1);
+
+        PizzaOrder savedOrder = new PizzaOrder();
+        savedOrder.setOrderCode("TEST123");
+        savedOrder.setStatus(OrderStatus.RECEIVED);
+
+        when(orderIngestionPipeline.submit(any(PizzaOrder.class))).thenReturn(savedOrder);
+
+        IdempotencyStore.Outcome<OrderStatusResponse> first = orderService.createOrder(request, "client-1", "key-1");
+        IdempotencyStore.Outcome<OrderStatusResponse> retry = orderService.createOrder(request, "client-1", "key-1");
+
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertEquals(first.value(), retry.value());
+        verify(orderIngestionPipeline, times(1)).submit(any(PizzaOrder.class));
+
+        // The same key with a different request is rejected
+        request.setQuantity(2);
+        assertThrows(IdempotencyKeyMismatchException.class, () -> orderService.createOrder(request, "client-1", "key-1"));
+    }
+
+    @Test
+    void createOrder_ShouldScheduleExpressAndPreOrders() {
+        CreateOrderRequest express = new CreateOrderRequest();
+        express.setPizzaType("Margherita");
+        express.setQuantity(1);
+        express.setExpress(true);
+
+        CreateOrderRequest preOrder = new CreateOrderRequest();
+        preOrder.setPizzaType("Margherita");
+        preOrder.setQuantity(1);
+        preOrder.setPickupTime(LocalDateTime.now().plusHours(2));
+
+        when(orderIngestionPipeline.submit(any(PizzaOrder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderService.createOrder(express);
+        orderService.createOrder(preOrder);
+
+        // The express order goes ahead of the normal orders of the last 10 minutes, the pre-order is due 20 minutes before its pickup
+        verify(orderIngestionPipeline).submit(argThat(order -> order.isExpress()
+                && order.getDispatchAt().equals(order.getInsertTimestamp().minusMinutes(10))));
+        verify(orderIngestionPipeline).submit(argThat(order -> order.getPickupTime() != null
+                && order.getDispatchAt().equals(preOrder.getPickupTime().minusMinutes(20))));
     }
 
     // TODO test for createOrder with non valid params
 
+    @Test
+    void createOrder_ShouldRejectPizzaTypeNotOnTheMenu() {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setPizzaType("Hawaiian");
+        request.setQuantity(1);
+
+        assertThrows(UnknownPizzaTypeException.class, () -> orderService.createOrder(request));
+
+        verify(orderIngestionPipeline, never()).submit(any(PizzaOrder.class));
+    }
+
+    @Test
+    void createOrder_ShouldStoreTheNameWrittenOnTheMenu() {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setPizzaType(" MARGHERITA ");
+        request.setQuantity(1);
+
+        when(orderIngestionPipeline.submit(any(PizzaOrder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderService.createOrder(request);
+
+        verify(orderIngestionPipeline).submit(argThat(order -> "Margherita".equals(order.getPizzaType())));
+    }
+
+    @Test
+    void createOrders_ShouldRejectAllItemsWhenATypeIsNotOnTheMenu() {
+        CreateOrderRequest item1 = new CreateOrderRequest();
+        item1.setPizzaType("Margherita");
+        item1.setQuantity(1);
+        CreateOrderRequest item2 = new CreateOrderRequest();
+        item2.setPizzaType("Hawaiian");
+        item2.setQuantity(1);
+
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setItems(List.of(item1, item2));
+
+        UnknownPizzaTypeException exception = assertThrows(UnknownPizzaTypeException.class, () -> orderService.createOrders(request));
+
+        assertEquals(Set.of(1), exception.getItemErrors().keySet());
+        verify(orderRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void createOrders_ShouldSaveAllItemsInOneBatch() {
+        CreateOrderRequest item1 = new CreateOrderRequest();
+        item1.setPizzaType("Margherita");
+        item1.setQuantity(2);
+        CreateOrderRequest item2 = new CreateOrderRequest();
+        item2.setPizzaType("Capricciosa");
+        item2.setQuantity(1);
+
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setReference("AGG-42");
+        request.setItems(List.of(item1, item2));
+
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BulkOrderResponse response = orderService.createOrders(request);
+
+        assertEquals("AGG-42", response.reference());
+        assertEquals(2, response.orders().size());
+        assertNotEquals(response.orders().get(0).orderCode(), response.orders().get(1).orderCode());
+        assertTrue(response.orders().stream().allMatch(order -> order.status() == OrderStatus.RECEIVED));
+
+        verify(orderRepository, times(1)).saveAll(anyList());
+        verify(orderIngestionPipeline, never()).submit(any(PizzaOrder.class));
+        verify(eventPublisher, times(2)).publishEvent(any(OrderStatusChangedEvent.class));
+    }
+
     @Test
     void getOrderStatus_ShoudlReturnOrderStatus() {
         // Create an existing order
@@ -73,36 +252,122 @@ class OrderServiceTest {
         // Call service
         OrderStatusResponse response = orderService.getOrderStatus("TEST123");
 
-        assertEquals(OrderStatus.RECEIVED, response.getStatus());
-        assertEquals("TEST123", response.getOrderCode());
+        assertEquals(OrderStatus.RECEIVED, response.status());
+        assertEquals("TEST123", response.orderCode());
     }
 
-    // TODO test for getOrder with no order found
-
     @Test
-    void updateOrderStatus_ShouldUpdateOrderStatus() {
-        // Create an existing order
+    void getOrderStatus_ShouldServeRepeatedLookupsFromCache() {
         PizzaOrder existingOrder = new PizzaOrder();
         existingOrder.setOrderCode("TEST123");
         existingOrder.setStatus(OrderStatus.RECEIVED);
 
-        // Set what to return when the order is searched in the repository
         when(orderRepository.findByOrderCode("TEST123")).thenReturn(Optional.of(existingOrder));
 
-        // Set what to save when repository save is invoked
-        when(orderRepository.save(any(PizzaOrder.class))).thenReturn(existingOrder);
+        orderService.getOrderStatus("TEST123");
+        orderService.getOrderStatus("TEST123");
+
+        verify(orderRepository, times(1)).findByOrderCode("TEST123");
+
+        // A transition updates the cached status
+        existingOrder.setStatus(OrderStatus.PREPARING);
+        existingOrder.setVersion(existingOrder.getVersion() + 1);
+        orderStatusCache.onOrderStatusChanged(OrderStatusChangedEvent.of(existingOrder, OrderStatus.RECEIVED));
+
+        assertEquals(OrderStatus.PREPARING, orderService.getOrderStatus("TEST123").status());
+        verify(orderRepository, times(1)).findByOrderCode("TEST123");
+    }
+
+    @Test
+    void getOrderStatus_ShouldFallBackToArchive() {
+        ArchivedPizzaOrder archivedOrder = new ArchivedPizzaOrder();
+        archivedOrder.setOrderCode("TEST123");
+        archivedOrder.setStatus(OrderStatus.READY);
+
+        when(orderRepository.findByOrderCode("TEST123")).thenReturn(Optional.empty());
+        when(archivedOrderRepository.findByOrderCode("TEST123")).thenReturn(Optional.of(archivedOrder));
+
+        OrderStatusResponse response = orderService.getOrderStatus("TEST123");
+
+        assertEquals(OrderStatus.READY, response.status());
+    }
+
+    // TODO test for getOrder with no order found
+
+    @Test
+    void updateOrderStatus_ShouldUpdateOrderStatus() {
+        // Create the order as read back after the update
+        PizzaOrder updatedOrder = new PizzaOrder();
+        updatedOrder.setOrderCode("TEST123");
+        updatedOrder.setStatus(OrderStatus.READY);
+
+        // The conditional update from PREPARING matches the order
+        when(orderRepository.transitionStatus(eq("TEST123"), eq(OrderStatus.PREPARING), eq(OrderStatus.READY), any()))
+                .thenReturn(1);
+        when(orderRepository.findByOrderCode("TEST123")).thenReturn(Optional.of(updatedOrder));
 
         // Call service (which will invoke mock repository) to update existing order
-        OrderStatusResponse response = orderService.updateOrderStatus("TEST123", OrderStatus.PREPARING);
+        OrderStatusResponse response = orderService.updateOrderStatus("TEST123", OrderStatus.READY);
 
-        assertEquals(OrderStatus.PREPARING, response.getStatus());
+        assertEquals(OrderStatus.READY, response.status());
 
-        verify(orderRepository, times(1)).save(any(PizzaOrder.class));
+        // No read-modify-write of the entity
+        verify(orderRepository, never()).save(any(PizzaOrder.class));
+        verify(eventPublisher, times(1)).publishEvent(any(OrderStatusChangedEvent.class));
     }
 
-    // TODO test for updateOrder with no order found
+    @Test
+    void updateOrderStatus_ShouldRejectPreparing() {
+        // Only a claim can move an order to PREPARING, as it assigns a station
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> orderService.updateOrderStatus("TEST123", OrderStatus.PREPARING));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verify(orderRepository, never()).transitionStatus(any(), any(), any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
 
-    // TODO test for updateOrder with order in READY status
+    @Test
+    void updateOrderStatus_ShouldReturnNullWhenOrderNotFound() {
+        when(orderRepository.transitionStatus(any(), any(), any(), any())).thenReturn(0);
+        when(orderRepository.findByOrderCode("MISSING")).thenReturn(Optional.empty());
+
+        assertNull(orderService.updateOrderStatus("MISSING", OrderStatus.READY));
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void updateOrderStatus_ShouldRejectTransitionFromReady() {
+        PizzaOrder readyOrder = new PizzaOrder();
+        readyOrder.setOrderCode("TEST123");
+        readyOrder.setStatus(OrderStatus.READY);
+
+        when(orderRepository.transitionStatus(any(), any(), any(), any())).thenReturn(0);
+        when(orderRepository.findByOrderCode("TEST123")).thenReturn(Optional.of(readyOrder));
+
+        OrderStatusConflictException exception = assertThrows(OrderStatusConflictException.class,
+                () -> orderService.updateOrderStatus("TEST123", OrderStatus.RECEIVED));
+
+        assertEquals(OrderStatus.READY, exception.getCurrentStatus());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void updateOrderStatus_ShouldRejectTransitionOfArchivedOrder() {
+        ArchivedPizzaOrder archivedOrder = new ArchivedPizzaOrder();
+        archivedOrder.setOrderCode("TEST123");
+        archivedOrder.setStatus(OrderStatus.READY);
+
+        when(orderRepository.transitionStatus(any(), any(), any(), any())).thenReturn(0);
+        when(orderRepository.findByOrderCode("TEST123")).thenReturn(Optional.empty());
+        when(archivedOrderRepository.findByOrderCode("TEST123")).thenReturn(Optional.of(archivedOrder));
+
+        OrderStatusConflictException exception = assertThrows(OrderStatusConflictException.class,
+                () -> orderService.updateOrderStatus("TEST123", OrderStatus.RECEIVED));
+
+        assertEquals(OrderStatus.READY, exception.getCurrentStatus());
+    }
 
     @Test
     void getOrderQueue_ShouldReturnQueuedOrders() {
@@ -113,6 +378,7 @@ class OrderServiceTest {
         order1.setQuantity(1);
         order1.setPizzaType("Margherita");
         order1.setInsertTimestamp(LocalDateTime.now().minusMinutes(10));
+        order1.setDispatchAt(order1.getInsertTimestamp());
 
         PizzaOrder order2 = new PizzaOrder();
         order2.setOrderCode("TEST456");
@@ -120,25 +386,25 @@ class OrderServiceTest {
         order2.setQuantity(2);
         order2.setPizzaType("Capricciosa");
         order2.setInsertTimestamp(LocalDateTime.now().minusMinutes(5));
+        order2.setDispatchAt(order2.getInsertTimestamp());
 
-        // Set what to save when repository search is invoked
-        when(orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED))
-                .thenReturn(Arrays.asList(order1, order2));
+        // Feed the in-memory queue with the creation events, the newest first
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order2, null));
+        orderQueue.onOrderStatusChanged(OrderStatusChangedEvent.of(order1, null));
 
         // Call service
         List<OrderDto> queue = orderService.getOrderQueue();
 
         assertEquals(2, queue.size());
-        assertEquals("TEST123", queue.get(0).getOrderCode());
-        assertEquals("TEST456", queue.get(1).getOrderCode());
+        assertEquals("TEST123", queue.get(0).orderCode());
+        assertEquals("TEST456", queue.get(1).orderCode());
+
+        // The queue is served from memory
+        verify(orderRepository, never()).findQueuedOrdersByStatus(any());
     }
 
     @Test
     void getOrderQueue_ShouldReturnEmptyList() {
-        // Set what to save when repository search is invoked
-        when(orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED))
-                .thenReturn(List.of());
-
         // Call service
         List<OrderDto> queue = orderService.getOrderQueue();
 
@@ -158,33 +424,31 @@ class OrderServiceTest {
         PizzaOrder savedOrder = new PizzaOrder();
         savedOrder.setOrderCode("TEST123");
         savedOrder.setStatus(OrderStatus.PREPARING);
+        savedOrder.setAssignedStation(OrderService.DEFAULT_STATION);
         savedOrder.setQuantity(1);
         savedOrder.setPizzaType("Margherita");
         savedOrder.setInsertTimestamp(LocalDateTime.now().minusMinutes(10));
 
-        PizzaOrder order2 = new PizzaOrder();
-        order2.setOrderCode("TEST456");
-        order2.setStatus(OrderStatus.RECEIVED);
-        order2.setQuantity(2);
-        order2.setPizzaType("Capricciosa");
-        order2.setInsertTimestamp(LocalDateTime.now().minusMinutes(5));
-
-        // Set what to save when repository search is invoked
-        when(orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED))
-                .thenReturn(Arrays.asList(order1, order2));
+        // Set what to return when the first due RECEIVED order is claimed
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(eq(OrderStatus.RECEIVED), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(order1));
 
-        when(orderRepository.findByStatus(OrderStatus.PREPARING))
+        when(orderRepository.findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(
+                OrderStatus.PREPARING, OrderService.DEFAULT_STATION))
                 .thenReturn(Optional.empty());
 
-        when(orderRepository.save(any(PizzaOrder.class))).thenReturn(savedOrder);
+        when(orderRepository.saveAndFlush(any(PizzaOrder.class))).thenReturn(savedOrder);
 
         // Call service
-        OrderDto orderDto = orderService.getNextOrder();
+        OrderDto orderDto = orderService.getNextOrder(OrderService.DEFAULT_STATION);
 
-        assertEquals("TEST123", orderDto.getOrderCode());
-        assertEquals(OrderStatus.PREPARING, orderDto.getStatus());
-        assertEquals(1, orderDto.getQuantity());
-        assertEquals("Margherita", orderDto.getPizzaType());
+        assertEquals("TEST123", orderDto.orderCode());
+        assertEquals(OrderStatus.PREPARING, orderDto.status());
+        assertEquals(1, orderDto.quantity());
+        assertEquals("Margherita", orderDto.pizzaType());
+        assertEquals(OrderService.DEFAULT_STATION, orderDto.assignedStation());
+
+        verify(orderRepository, never()).findQueuedOrdersByStatus(any());
     }
 
     @Test
@@ -204,34 +468,196 @@ class OrderServiceTest {
         order2.setPizzaType("Capricciosa");
         order2.setInsertTimestamp(LocalDateTime.now().minusMinutes(5));
 
-        // Set what to save when repository search is invoked
-        when(orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED))
-                .thenReturn(List.of(order2));
+        // Set what to return when the first due RECEIVED order is claimed
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(eq(OrderStatus.RECEIVED), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(order2));
 
-        when(orderRepository.findByStatus(OrderStatus.PREPARING))
+        when(orderRepository.findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(
+                OrderStatus.PREPARING, OrderService.DEFAULT_STATION))
                 .thenReturn(Optional.of(order1));
 
         // Call service
-        OrderDto orderDto = orderService.getNextOrder();
+        OrderDto orderDto = orderService.getNextOrder(OrderService.DEFAULT_STATION);
+
+        assertEquals("TEST123", orderDto.orderCode());
+        assertEquals(OrderStatus.PREPARING, orderDto.status());
+        assertEquals(1, orderDto.quantity());
+        assertEquals("Margherita", orderDto.pizzaType());
+    }
+
+    @Test
+    void getNextOrder_ShouldSkipPizzaTypesAtCapacity() {
+        setMenu(pizzaType(1, "Margherita", 2), pizzaType(3, "Diavola", null));
+
+        PizzaOrder diavola = new PizzaOrder();
+        diavola.setOrderCode("TEST456");
+        diavola.setStatus(OrderStatus.RECEIVED);
+        diavola.setQuantity(1);
+        diavola.setPizzaType("Diavola");
+
+        // Two Margherita are already in the oven
+        when(orderRepository.countByStatusGroupByPizzaType(OrderStatus.PREPARING)).thenReturn(List.of(preparing("Margherita", 2)));
+        when(orderRepository.findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(
+                OrderStatus.PREPARING, OrderService.DEFAULT_STATION))
+                .thenReturn(Optional.empty());
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualAndPizzaTypeNotInOrderByDispatchAtAscIdAsc(
+                eq(OrderStatus.RECEIVED), any(LocalDateTime.class), eq(Set.of("Margherita"))))
+                .thenReturn(Optional.of(diavola));
+        when(orderRepository.saveAndFlush(any(PizzaOrder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrderDto orderDto = orderService.getNextOrder(OrderService.DEFAULT_STATION);
 
-        assertEquals("TEST123", orderDto.getOrderCode());
-        assertEquals(OrderStatus.PREPARING, orderDto.getStatus());
-        assertEquals(1, orderDto.getQuantity());
-        assertEquals("Margherita", orderDto.getPizzaType());
+        assertEquals("TEST456", orderDto.orderCode());
+        verify(orderRepository, never()).findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(any(), any());
+        verify(pizzaTypeLocks, never()).lockIfRoomLeft(any());
+    }
+
+    @Test
+    void getNextOrder_ShouldRecountUnderLockBeforeClaimingALimitedType() {
+        setMenu(pizzaType(1, "Margherita", 1));
+
+        PizzaOrder margherita = new PizzaOrder();
+        margherita.setOrderCode("TEST123");
+        margherita.setStatus(OrderStatus.RECEIVED);
+        margherita.setQuantity(1);
+        margherita.setPizzaType("Margherita");
+
+        // The oven looked free, but a concurrent claim took it before the lock
+        when(orderRepository.countByStatusGroupByPizzaType(OrderStatus.PREPARING)).thenReturn(List.of());
+        when(orderRepository.findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(
+                OrderStatus.PREPARING, OrderService.DEFAULT_STATION))
+                .thenReturn(Optional.empty());
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(eq(OrderStatus.RECEIVED), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(margherita));
+        when(pizzaTypeLocks.lockIfRoomLeft(menuCatalog.find("Margherita"))).thenReturn(false);
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualAndPizzaTypeNotInOrderByDispatchAtAscIdAsc(
+                eq(OrderStatus.RECEIVED), any(LocalDateTime.class), eq(Set.of("Margherita"))))
+                .thenReturn(Optional.empty());
+
+        assertNull(orderService.getNextOrder(OrderService.DEFAULT_STATION));
+
+        verify(pizzaTypeLocks).lockIfRoomLeft(menuCatalog.find("Margherita"));
+        verify(orderRepository, never()).saveAndFlush(any(PizzaOrder.class));
     }
 
     @Test
     void getNextOrder_ShouldReturnNull() {
-        // Set what to save when repository search is invoked
-        when(orderRepository.findByStatusOrderByInsertTimestampAsc(OrderStatus.RECEIVED))
-                .thenReturn(null);
+        // Set what to return when the first due RECEIVED order is claimed
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(eq(OrderStatus.RECEIVED), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
 
-        when(orderRepository.findByStatus(OrderStatus.PREPARING))
+        when(orderRepository.findFirstByStatusAndAssignedStationOrderByUpdateTimestampAsc(
+                OrderStatus.PREPARING, OrderService.DEFAULT_STATION))
                 .thenReturn(Optional.empty());
 
         // Call service
-        OrderDto order = orderService.getNextOrder();
+        OrderDto order = orderService.getNextOrder(OrderService.DEFAULT_STATION);
         assertNull(order);
     }
 
+    @Test
+    void getNextBatch_ShouldClaimOrdersOfTheSameTypeThatFitInTheOven() {
+        LocalDateTime now = LocalDateTime.now();
+        PizzaOrder first = newQueuedOrder(1L, "TEST123", 3, now.minusMinutes(10));
+        PizzaOrder tooBig = newQueuedOrder(3L, "TEST789", 5, now.minusMinutes(8));
+        PizzaOrder second = newQueuedOrder(2L, "TEST456", 4, now.minusMinutes(9));
+        PizzaOrder third = newQueuedOrder(4L, "TEST999", 1, now.minusMinutes(7));
+
+        when(orderRepository.findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(eq(OrderStatus.RECEIVED), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(first));
+        when(orderRepository.findBatchCandidates(eq(OrderStatus.RECEIVED), eq("Margherita"), eq(1L), eq(first.getDispatchAt()),
+                any(LocalDateTime.class), any(Limit.class)))
+                .thenReturn(List.of(second, tooBig, third));
+        when(orderRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrderBatch batch = orderService.getNextBatch("oven-1");
+
+        // 3 + 4 + 1 pizzas fill the oven of 8, the order of 5 waits for the next batch
+        assertEquals(List.of("TEST123", "TEST456", "TEST999"), batch.orders().stream().map(OrderDto::orderCode).toList());
+        assertEquals(8, batch.quantity());
+        assertEquals("Margherita", batch.pizzaType());
+        assertTrue(batch.orders().stream().allMatch(order -> order.status() == OrderStatus.PREPARING
+                && "oven-1".equals(order.assignedStation())));
+        assertEquals(OrderStatus.RECEIVED, tooBig.getStatus());
+        verify(eventPublisher, times(3)).publishEvent(any(OrderStatusChangedEvent.class));
+    }
+
+    @Test
+    void getNextBatch_ShouldReturnTheBatchTheStationIsPreparing() {
+        PizzaOrder preparing = newQueuedOrder(1L, "TEST123", 2, LocalDateTime.now().minusMinutes(10));
+        preparing.setStatus(OrderStatus.PREPARING);
+        preparing.setAssignedStation("oven-1");
+
+        when(orderRepository.findByStatusAndAssignedStationOrderByDispatchAtAscIdAsc(OrderStatus.PREPARING, "oven-1"))
+                .thenReturn(List.of(preparing));
+
+        OrderBatch batch = orderService.getNextBatch("oven-1");
+
+        assertEquals(List.of("TEST123"), batch.orders().stream().map(OrderDto::orderCode).toList());
+        verify(orderRepository, never()).findFirstByStatusAndDispatchAtLessThanEqualOrderByDispatchAtAscIdAsc(any(), any());
+        verify(orderRepository, never()).saveAllAndFlush(anyList());
+    }
+
+    @Test
+    void markStationReady_ShouldCompleteEveryOrderOfTheStation() {
+        PizzaOrder first = newQueuedOrder(1L, "TEST123", 2, LocalDateTime.now().minusMinutes(10));
+        PizzaOrder second = newQueuedOrder(2L, "TEST456", 1, LocalDateTime.now().minusMinutes(9));
+        first.setStatus(OrderStatus.PREPARING);
+        second.setStatus(OrderStatus.PREPARING);
+
+        when(orderRepository.lockByStatusAndAssignedStation(OrderStatus.PREPARING, "oven-1")).thenReturn(List.of(first, second));
+        when(orderRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<OrderStatusResponse> responses = orderService.markStationReady("oven-1");
+
+        assertEquals(2, responses.size());
+        assertTrue(responses.stream().allMatch(response -> response.status() == OrderStatus.READY));
+        verify(eventPublisher, times(2)).publishEvent(ArgumentMatchers.<Object>argThat(event -> event instanceof OrderStatusChangedEvent changed
+                && changed.previousStatus() == OrderStatus.PREPARING));
+
+        // Nothing left in preparation at the station
+        when(orderRepository.lockByStatusAndAssignedStation(OrderStatus.PREPARING, "oven-1")).thenReturn(List.of());
+
+        assertTrue(orderService.markStationReady("oven-1").isEmpty());
+    }
+
+    private PizzaOrder newQueuedOrder(Long id, String orderCode, int quantity, LocalDateTime dispatchAt) {
+        PizzaOrder order = new PizzaOrder();
+        order.setId(id);
+        order.setOrderCode(orderCode);
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setQuantity(quantity);
+        order.setPizzaType("Margherita");
+        order.setInsertTimestamp(dispatchAt);
+        order.setDispatchAt(dispatchAt);
+        return order;
+    }
+
+    private void setMenu(PizzaType... pizzaTypes) {
+        when(pizzaTypeRepository.findAll()).thenReturn(List.of(pizzaTypes));
+        menuCatalog.refresh();
+    }
+
+    private PizzaType pizzaType(int id, String name, Integer maxPreparing) {
+        PizzaType pizzaType = new PizzaType();
+        pizzaType.setId((short) id);
+        pizzaType.setName(name);
+        pizzaType.setAvailable(true);
+        pizzaType.setMaxPreparing(maxPreparing);
+        return pizzaType;
+    }
+
+    private OrderRepository.PizzaTypeCount preparing(String pizzaType, long orders) {
+        return new OrderRepository.PizzaTypeCount() {
+            @Override
+            public String getPizzaType() {
+                return pizzaType;
+            }
+
+            @Override
+            public long getOrders() {
+                return orders;
+            }
+        };
+    }
 }
@@ -0,0 +1,175 @@
+package com.awesomepizza.slice.service;
+
+import com.awesomepizza.slice.dto.OutboxEventDto;
+import com.awesomepizza.slice.entity.PizzaOrder;
+import com.awesomepizza.slice.enums.OrderStatus;
+import com.awesomepizza.slice.event.OrderStatusChangedEvent;
+import com.awesomepizza.slice.repository.OrderOutboxRepository;
+import com.awesomepizza.slice.repository.OutboxOffsetRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@ActiveProfiles("dev")
+class OutboxRelayTest {
+
+    @Autowired
+    private OrderOutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxOffsetRepository offsetRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry registry;
+    private OrderOutbox orderOutbox;
+    private long lastOrderId;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        orderOutbox = new OrderOutbox(outboxRepository, offsetRepository);
+    }
+
+    @Test
+    void relay_ShouldDeliverEachEventOnceInLogOrder() {
+        InMemoryOutboxSink sink = new InMemoryOutboxSink("delivery");
+        OutboxRelay relay = newRelay(List.of(sink), 2);
+
+        PizzaOrder order = newOrder("ORDER01");
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(order, null));
+        order.setStatus(OrderStatus.PREPARING);
+        order.setVersion(1);
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED));
+        order.setStatus(OrderStatus.READY);
+        order.setVersion(2);
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.PREPARING));
+
+        relay.relay();
+        relay.relay();
+
+        List<OutboxEventDto> events = sink.events();
+        assertEquals(3, events.size());
+        assertEquals(List.of(1L, 2L, 3L), events.stream().map(OutboxEventDto::position).toList());
+        assertEquals(List.of(OrderStatus.RECEIVED, OrderStatus.PREPARING, OrderStatus.READY),
+                events.stream().map(OutboxEventDto::status).toList());
+        assertNull(events.get(0).previousStatus());
+
+        assertEquals(3L, orderOutbox.getOffsets().get("delivery"));
+        assertEquals(3.0, registry.get("slice.outbox.delivered").tag("consumer", "delivery").counter().count());
+    }
+
+    @Test
+    void sequence_ShouldPlaceTheEventsOfAnOrderInVersionOrder() {
+        InMemoryOutboxSink sink = new InMemoryOutboxSink("delivery");
+        OutboxRelay relay = newRelay(List.of(sink), 1);
+
+        // The READY change got a lower id than the PREPARING one, as when they are committed by nodes with different id blocks
+        PizzaOrder order = newOrder("ORDER01");
+        order.setStatus(OrderStatus.READY);
+        order.setVersion(2);
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.PREPARING));
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("ORDER02"), null));
+        order.setStatus(OrderStatus.PREPARING);
+        order.setVersion(1);
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(order, OrderStatus.RECEIVED));
+
+        // The first batch is limited to the READY change, but takes the earlier change of its order with it
+        relay.relay();
+
+        List<OutboxEventDto> events = sink.events();
+        assertEquals(List.of("ORDER01", "ORDER01", "ORDER02"), events.stream().map(OutboxEventDto::orderCode).toList());
+        assertEquals(List.of(OrderStatus.PREPARING, OrderStatus.READY, OrderStatus.RECEIVED),
+                events.stream().map(OutboxEventDto::status).toList());
+        assertEquals(List.of(1L, 2L, 3L), events.stream().map(OutboxEventDto::position).toList());
+    }
+
+    @Test
+    void relay_ShouldKeepAnOffsetPerConsumerAndReplay() {
+        InMemoryOutboxSink receipts = new InMemoryOutboxSink("receipts");
+        InMemoryOutboxSink displays = new InMemoryOutboxSink("displays");
+        OutboxRelay relay = newRelay(List.of(receipts, displays), 500);
+
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("ORDER01"), null));
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("ORDER02"), null));
+        relay.relay();
+
+        // Replay from the second event for one consumer only
+        orderOutbox.setOffset("receipts", 1);
+        relay.relay();
+
+        assertEquals(List.of("ORDER01", "ORDER02", "ORDER02"), receipts.events().stream().map(OutboxEventDto::orderCode).toList());
+        assertEquals(List.of("ORDER01", "ORDER02"), displays.events().stream().map(OutboxEventDto::orderCode).toList());
+
+        // Pull consumers read the same log
+        assertEquals(1, orderOutbox.getEvents(1, 100).size());
+    }
+
+    @Test
+    void relay_ShouldNotMoveTheOffsetWhenDeliveryFails() {
+        OutboxSink failing = new OutboxSink() {
+            @Override
+            public String name() {
+                return "failing";
+            }
+
+            @Override
+            public void publish(List<OutboxEventDto> events) {
+                throw new IllegalStateException("Broker unavailable");
+            }
+        };
+        OutboxRelay relay = newRelay(List.of(failing), 500);
+
+        orderOutbox.onOrderStatusChanged(OrderStatusChangedEvent.of(newOrder("ORDER01"), null));
+
+        assertEquals(1, relay.sequence());
+        assertEquals(0, relay.deliver(failing));
+        assertEquals(0L, orderOutbox.getOffsets().get("failing"));
+    }
+
+    @Test
+    void relay_ShouldBackOffWhenTheDatabaseFails() {
+        OrderOutboxRepository failingRepository = mock(OrderOutboxRepository.class);
+        when(failingRepository.findByLogPositionIsNullOrderByIdAsc(any())).thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        OutboxRelay relay = new OutboxRelay(failingRepository, offsetRepository, transactionManager, List.of(), registry,
+                500, 100, Duration.ofDays(7), Duration.ofSeconds(1), Duration.ofMinutes(1));
+
+        assertDoesNotThrow(relay::relay);
+
+        // Skipped during the back-off, instead of failing again on every tick
+        relay.relay();
+        verify(failingRepository, times(1)).findByLogPositionIsNullOrderByIdAsc(any());
+    }
+
+    private OutboxRelay newRelay(List<OutboxSink> sinks, int batchSize) {
+        return new OutboxRelay(outboxRepository, offsetRepository, transactionManager, sinks, registry,
+                batchSize, 100, Duration.ofDays(7), Duration.ofSeconds(1), Duration.ofMinutes(1));
+    }
+
+    private PizzaOrder newOrder(String orderCode) {
+        PizzaOrder order = new PizzaOrder();
+        order.setId(++lastOrderId);
+        order.setOrderCode(orderCode);
+        order.setPizzaType("Margherita");
+        order.setQuantity(1);
+        order.setStatus(OrderStatus.RECEIVED);
+        order.setInsertTimestamp(LocalDateTime.now());
+        order.setUpdateTimestamp(order.getInsertTimestamp());
+        return order;
+    }
+}
@@ -0,0 +1,172 @@
+package com.awesomepizza.slice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeOrderCodeGeneratorTest {
+
+    @Test
+    void nextCode_ShouldBeCompactCrockfordBase32() {
+        OrderCodeGenerator generator = new SnowflakeOrderCodeGenerator(1, Clock.systemUTC(), 1000);
+
+        String code = generator.nextCode();
+
+        assertEquals(SnowflakeOrderCodeGenerator.CODE_LENGTH, code.length());
+        assertTrue(code.matches("[0-9A-HJKMNP-TV-Z]+"), code);
+    }
+
+    @Test
+    void nextCode_ShouldSortInCreationOrder() {
+        OrderCodeGenerator generator = new SnowflakeOrderCodeGenerator(1, Clock.systemUTC(), 1000);
+
+        String previous = generator.nextCode();
+        for (int i = 0; i < 100_000; i++) {
+            String next = generator.nextCode();
+            assertTrue(next.compareTo(previous) > 0, next + " should sort after " + previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void nextCode_ShouldWaitForTheClockWhenItGoesBack() {
+        Instant now = Instant.now();
+        MutableClock clock = new MutableClock(now);
+        OrderCodeGenerator generator = new SnowflakeOrderCodeGenerator(1, clock, 1000);
+
+        String last = generator.nextCode();
+        clock.lag = Duration.ofMillis(50);
+
+        String next = generator.nextCode();
+        assertTrue(next.compareTo(last) > 0, next + " should sort after " + last);
+        assertTrue(clock.instant().isAfter(now), "the code should be issued once the clock is past " + now);
+    }
+
+    @Test
+    void nextCode_ShouldFailRatherThanRunAheadOfTheClock() {
+        Instant now = Instant.now();
+        MutableClock clock = new MutableClock(now);
+        OrderCodeGenerator generator = new SnowflakeOrderCodeGenerator(1, clock, 10);
+
+        // The per-millisecond sequence holds 4096 codes: the next one would need a future millisecond
+        for (int i = 0; i < 4096; i++) {
+            generator.nextCode();
+        }
+        assertThrows(IllegalStateException.class, generator::nextCode);
+
+        // Going back further than the allowed wait fails straight away
+        clock.instant = now.minusSeconds(1);
+        assertThrows(IllegalStateException.class, generator::nextCode);
+    }
+
+    @Test
+    void nextCode_ShouldNotRepeatCodesAfterARestartOfTheSameNode() {
+        Instant now = Instant.now();
+        MutableClock clock = new MutableClock(now);
+        OrderCodeGenerator beforeRestart = new SnowflakeOrderCodeGenerator(1, clock, 10);
+
+        // A burst that exhausts the sequence of the last millisecond before the restart
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 4096; i++) {
+            codes.add(beforeRestart.nextCode());
+        }
+        assertThrows(IllegalStateException.class, beforeRestart::nextCode);
+
+        // The restarted node starts from its clock, which is not behind the codes issued before
+        clock.instant = now.plusMillis(1);
+        OrderCodeGenerator afterRestart = new SnowflakeOrderCodeGenerator(1, clock, 10);
+        for (int i = 0; i < 4096; i++) {
+            assertTrue(codes.add(afterRestart.nextCode()));
+        }
+    }
+
+    @Test
+    void nextCode_ShouldDifferAcrossNodesAtTheSameInstant() {
+        Clock clock = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+
+        String node1 = new SnowflakeOrderCodeGenerator(1, clock, 1000).nextCode();
+        String node2 = new SnowflakeOrderCodeGenerator(2, clock, 1000).nextCode();
+
+        assertNotEquals(node1, node2);
+    }
+
+    @Test
+    void constructor_ShouldRequireANodeIdUnlessDerivingItIsAllowed() {
+        assertThrows(IllegalStateException.class, () -> new SnowflakeOrderCodeGenerator(-1, true, 1000));
+
+        // Single-node fallback: the node id is derived from the host name
+        assertEquals(SnowflakeOrderCodeGenerator.CODE_LENGTH, new SnowflakeOrderCodeGenerator(-1, false, 1000).nextCode().length());
+    }
+
+    @Test
+    void nextCode_ShouldBeUniqueAcrossThreadsAndNodes() throws Exception {
+        int threads = 8;
+        int codesPerThread = 50_000;
+        List<OrderCodeGenerator> nodes = List.of(
+                new SnowflakeOrderCodeGenerator(1, Clock.systemUTC(), 1000),
+                new SnowflakeOrderCodeGenerator(2, Clock.systemUTC(), 1000)
+        );
+
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                OrderCodeGenerator generator = nodes.get(t % nodes.size());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < codesPerThread; i++) {
+                        codes.add(generator.nextCode());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * codesPerThread, codes.size());
+    }
+
+    private static class MutableClock extends Clock {
+        private volatile Instant instant;
+        // When set, the clock runs this far behind the system clock
+        private volatile Duration lag;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return lag != null ? Instant.now().minus(lag) : instant;
+        }
+    }
+}